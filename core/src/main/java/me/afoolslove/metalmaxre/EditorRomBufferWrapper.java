@@ -18,11 +18,68 @@ import java.nio.file.Path;
 public class EditorRomBufferWrapper extends RomBufferWrapper {
     private final IRomEditor editor;
 
+    /**
+     * 覆盖层启用前的RomBuffer，未启用时为null
+     */
+    private RomBuffer source;
+
     public EditorRomBufferWrapper(@NotNull RomBuffer romBuffer, @NotNull IRomEditor editor) {
         super(romBuffer);
         this.editor = editor;
     }
 
+    /**
+     * 之后的读取和写入都在覆盖层中进行，被写入的范围即为该编辑器的写入范围
+     * <p>
+     * *不要在写入数据的同时启用覆盖层
+     *
+     * @return 覆盖层
+     * @see RomBuffer#overlay()
+     */
+    @NotNull
+    public synchronized RomBuffer beginOverlay() {
+        if (source != null) {
+            throw new IllegalStateException("overlay already begun");
+        }
+        return beginOverlay(getRomBuffer().overlay());
+    }
+
+    /**
+     * 之后的读取和写入都在指定的覆盖层中进行，如：基于同一个快照创建的覆盖层
+     * <p>
+     * *不要在写入数据的同时启用覆盖层
+     *
+     * @param overlay 覆盖层
+     * @return 覆盖层
+     */
+    @NotNull
+    public synchronized RomBuffer beginOverlay(@NotNull RomBuffer overlay) {
+        if (source != null) {
+            throw new IllegalStateException("overlay already begun");
+        }
+        source = getRomBuffer();
+        setRomBuffer(overlay);
+        return overlay;
+    }
+
+    /**
+     * 停止使用覆盖层，恢复读取和写入原来的RomBuffer
+     * <p>
+     * *覆盖层中的数据需要通过 {@link RomBuffer#merge(RomBuffer)} 合并
+     *
+     * @return 覆盖层，未启用时为null
+     */
+    @Nullable
+    public synchronized RomBuffer endOverlay() {
+        if (source == null) {
+            return null;
+        }
+        var overlay = getRomBuffer();
+        setRomBuffer(source);
+        source = null;
+        return overlay;
+    }
+
     public synchronized void get(byte[] bytes, int offset, int length) {
         get(editor.position(), bytes, offset, length);
         editor.offsetPosition(length);
@@ -57,6 +114,33 @@ public class EditorRomBufferWrapper extends RomBufferWrapper {
         return b;
     }
 
+    public synchronized int getU8() {
+        final int b = getU8(editor.position());
+        editor.offsetPosition(1);
+        return b;
+    }
+
+    public synchronized int getU16LE() {
+        final int b = getU16LE(editor.position());
+        editor.offsetPosition(2);
+        return b;
+    }
+
+    /**
+     * 以小端序读取连续的2字节数据
+     */
+    public synchronized void readU16Array(char[] chars) {
+        for (int i = 0, index = editor.position(); i < chars.length; i++, index += 2) {
+            chars[i] = (char) getU16LE(index);
+        }
+        editor.offsetPosition(chars.length * 2);
+    }
+
+    public synchronized void putU16LE(int value) {
+        putU16LE(editor.position(), value);
+        editor.offsetPosition(2);
+    }
+
     public synchronized void put(byte[] bytes, int offset, int length) {
         put(editor.position(), bytes, offset, length);
         editor.offsetPosition(length);
@@ -83,14 +83,24 @@ public class GameHeader {
      * 设置 PRG ROM大小(KB)
      */
     public void setPrgRom(@Range(from = 0x00, to = 0xFF) int prgRom) {
+        var oldValue = header[0x04];
         header[0x04] = (byte) (prgRom & 0xFF);
+
+        for (PrgRomChangeListener listener : prgRomChangeListeners) {
+            listener.onPrgRomChange(this, oldValue, header[0x04]);
+        }
     }
 
     /**
      * 设置 CHR ROM大小(KB)
      */
     public void setChrRom(@Range(from = 0x00, to = 0xFF) int chrRom) {
+        var oldValue = header[0x05];
         header[0x05] = (byte) (chrRom & 0xFF);
+
+        for (ChrRomChangeListener listener : chrRomChangeListeners) {
+            listener.onChrRomChange(this, oldValue, header[0x05]);
+        }
     }
 
     /**
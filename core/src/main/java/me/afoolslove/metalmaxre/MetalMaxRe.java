@@ -10,9 +10,11 @@ import org.jetbrains.annotations.NotNull;
 import java.util.Map;
 
 /**
+ * *使用完毕后需要调用 {@link #close()}，同时关闭编辑器管理器和ROM
+ *
  * @author AFoolLove
  */
-public class MetalMaxRe {
+public class MetalMaxRe implements AutoCloseable {
     private RomBuffer romBuffer;
     private IEditorManager editorManager;
 
@@ -79,4 +81,17 @@ public class MetalMaxRe {
     public Map<Class<? extends IRomEditor>, IRomEditor> getEditors() {
         return getEditorManager().getEditors();
     }
+
+    /**
+     * 关闭编辑器管理器和ROM
+     */
+    @Override
+    public void close() {
+        if (editorManager != null) {
+            editorManager.close();
+        }
+        if (romBuffer != null) {
+            romBuffer.close();
+        }
+    }
 }
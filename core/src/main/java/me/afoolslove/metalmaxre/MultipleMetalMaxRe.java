@@ -3,6 +3,8 @@ package me.afoolslove.metalmaxre;
 import me.afoolslove.metalmaxre.editors.EditorManagerImpl;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.file.Path;
@@ -11,8 +13,12 @@ import java.util.List;
 
 /**
  * 多MetalMaxRe实例管理
+ * <p>
+ * *所有实例共用 {@link me.afoolslove.metalmaxre.editors.EditorExecutors#shared()} 加载或应用编辑器
  */
-public class MultipleMetalMaxRe {
+public class MultipleMetalMaxRe implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MultipleMetalMaxRe.class);
+
     private final List<MetalMaxRe> metalMaxRes = new ArrayList<>();
 
     /**
@@ -26,12 +32,23 @@ public class MultipleMetalMaxRe {
     /**
      * 读取文件并创建一个实例
      *
-     * @param version       rom版本，默认{@link RomVersion#getChinese()}
+     * @param version       rom版本，为null时通过 {@link RomFingerprint} 识别，无法识别时使用 {@link RomVersion#getChinese()}
      * @param path          rom路径
      * @param useDefEditors 使用默认提供的编辑器和管理器
      * @return 实例
      */
     public MetalMaxRe create(@Nullable RomVersion version, @Nullable Path path, boolean useDefEditors) throws IOException {
+        if (version == null && path != null) {
+            var match = RomFingerprint.match(path);
+            if (match != null) {
+                version = match.getVersion();
+                if (!match.isExact()) {
+                    LOGGER.warn("未知的ROM({})，使用最接近的版本：{}，相似度：{}", path, version.getName(), String.format("%.2f", match.getSimilarity()));
+                }
+            } else {
+                LOGGER.warn("无法识别ROM({})的版本", path);
+            }
+        }
         if (version == null) {
             version = RomVersion.getChinese();
         }
@@ -80,6 +97,30 @@ public class MultipleMetalMaxRe {
         metalMaxRes.remove(metalMaxRe);
     }
 
+    /**
+     * 移除并关闭一个实例
+     *
+     * @param metalMaxRe 被关闭的实例
+     */
+    public void close(@Nullable MetalMaxRe metalMaxRe) {
+        remove(metalMaxRe);
+        if (metalMaxRe != null) {
+            metalMaxRe.close();
+        }
+    }
+
+    /**
+     * 关闭所有实例
+     */
+    @Override
+    public synchronized void close() {
+        for (MetalMaxRe metalMaxRe : metalMaxRes) {
+            metalMaxRe.close();
+        }
+        metalMaxRes.clear();
+        currentIndex = -1;
+    }
+
     /**
      * @return 是否存在一个或多个实例
      */
@@ -0,0 +1,119 @@
+package me.afoolslove.metalmaxre;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * 一个ROM的堆外内存，只分配一次，按页（0x2000）分给 {@link RomPages}
+ * <p>
+ * 共享这些页的数据（快照、覆盖层）都会被记录，{@link #free()} 时先释放它们的页，再立即释放堆外内存
+ * <p>
+ * *之后扩容和写入时复制的页不在这里，仍由GC回收
+ *
+ * @author AFoolLove
+ */
+final class OffHeapRegion {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapRegion.class);
+
+    /**
+     * sun.misc.Unsafe#invokeCleaner(ByteBuffer)，不可用时为null，由GC回收
+     */
+    @Nullable
+    private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+    private final ByteBuffer region;
+    /**
+     * 共享这些页的数据
+     */
+    private final Set<RomPages> attached = Collections.newSetFromMap(new WeakHashMap<>());
+    private boolean freed;
+
+    private OffHeapRegion(int pageCount) {
+        this.region = ByteBuffer.allocateDirect(pageCount << RomPages.PAGE_SHIFT);
+    }
+
+    /**
+     * 分配指定页数的堆外内存
+     *
+     * @param pageCount 页数
+     */
+    static OffHeapRegion allocate(int pageCount) {
+        return new OffHeapRegion(pageCount);
+    }
+
+    /**
+     * 获取一页
+     *
+     * @param page 页的位置
+     * @return 页
+     */
+    @NotNull
+    ByteBuffer page(int page) {
+        return region.slice(page << RomPages.PAGE_SHIFT, RomPages.PAGE_SIZE);
+    }
+
+    /**
+     * 记录共享这些页的数据
+     *
+     * @throws IllegalStateException 已经被释放
+     */
+    synchronized void attach(@NotNull RomPages pages) {
+        if (freed) {
+            throw new IllegalStateException("off-heap region has been freed");
+        }
+        attached.add(pages);
+    }
+
+    /**
+     * 释放所有共享这些页的数据，然后释放堆外内存
+     * <p>
+     * *之后这些数据都不能再读写
+     */
+    void free() {
+        ArrayList<RomPages> pages;
+        synchronized (this) {
+            if (freed) {
+                return;
+            }
+            freed = true;
+            pages = new ArrayList<>(attached);
+            attached.clear();
+        }
+        for (RomPages romPages : pages) {
+            romPages.release();
+        }
+        if (INVOKE_CLEANER != null) {
+            try {
+                INVOKE_CLEANER.invokeExact(region);
+            } catch (Throwable e) {
+                LOGGER.warn("释放堆外内存失败，由GC回收", e);
+            }
+        }
+    }
+
+    @Nullable
+    private static MethodHandle findInvokeCleaner() {
+        try {
+            var unsafeClass = Class.forName("sun.misc.Unsafe");
+            var theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.warn("无法立即释放堆外内存，由GC回收", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package me.afoolslove.metalmaxre;
+
+import me.afoolslove.metalmaxre.utils.DataAddress;
+import me.afoolslove.metalmaxre.utils.RangeSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ROM访问追踪器，记录每个所有者（如编辑器）读取和写入过的PRG ROM和CHR ROM字节
+ * <p>
+ * 需要使用启动参数 -Dmetalmaxre.tracer=true 开启，未开启时不会产生额外的开销
+ * <p>
+ * *通过 {@link #setOwner(String)} 设置当前线程的所有者，未设置时记录到 {@link #UNKNOWN_OWNER}
+ *
+ * @author AFoolLove
+ * @see RomBuffer#setTracer(RomAccessTracer)
+ */
+public class RomAccessTracer {
+    /**
+     * 是否开启追踪，关闭后所有追踪代码都会被JIT移除
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("metalmaxre.tracer");
+
+    public static final String UNKNOWN_OWNER = "unknown";
+
+    private static final ThreadLocal<String> OWNER = new ThreadLocal<>();
+
+    /**
+     * key: 所有者
+     * value: 访问记录
+     */
+    private final Map<String, Coverage> coverages = new ConcurrentHashMap<>();
+
+    /**
+     * 设置当前线程的所有者，之后的访问都会记录到该所有者
+     *
+     * @param owner 所有者，为null时记录到 {@link #UNKNOWN_OWNER}
+     */
+    public static void setOwner(@Nullable String owner) {
+        if (owner == null) {
+            OWNER.remove();
+        } else {
+            OWNER.set(owner);
+        }
+    }
+
+    @NotNull
+    private static String getOwner() {
+        var owner = OWNER.get();
+        return owner == null ? UNKNOWN_OWNER : owner;
+    }
+
+    void onRead(@NotNull DataAddress.Type type, int index, int length) {
+        coverages.computeIfAbsent(getOwner(), k -> new Coverage()).mark(type, false, index, length);
+    }
+
+    void onWrite(@NotNull DataAddress.Type type, int index, int length) {
+        coverages.computeIfAbsent(getOwner(), k -> new Coverage()).mark(type, true, index, length);
+    }
+
+    /**
+     * @return 所有所有者的访问记录
+     */
+    public Map<String, Coverage> getCoverages() {
+        return Collections.unmodifiableMap(coverages);
+    }
+
+    /**
+     * @return 所有者的访问记录，没有访问时为null
+     */
+    @Nullable
+    public Coverage getCoverage(@NotNull String owner) {
+        return coverages.get(owner);
+    }
+
+    /**
+     * 清空所有访问记录
+     */
+    public void clear() {
+        coverages.clear();
+    }
+
+    /**
+     * 获取所有者都没有读取或写入过的范围
+     * <p>
+     * *只代表追踪期间没有被访问，不一定是空闲的数据
+     *
+     * @param type   PRG ROM或CHR ROM
+     * @param length 数据的长度
+     * @return 没有被访问过的范围
+     */
+    public RangeSet getUntouched(@NotNull DataAddress.Type type, int length) {
+        var touched = new BitSet(length);
+        for (Coverage coverage : coverages.values()) {
+            synchronized (coverage) {
+                touched.or(coverage.get(type, false));
+                touched.or(coverage.get(type, true));
+            }
+        }
+        touched.flip(0, length);
+        return toRangeSet(touched);
+    }
+
+    /**
+     * 以文本的方式输出所有所有者访问过的范围
+     * <p>
+     * 格式：所有者 类型 R/W 字节数量 [范围...]
+     *
+     * @param writer 输出
+     */
+    public void writeRanges(@NotNull Writer writer) throws IOException {
+        for (Map.Entry<String, Coverage> entry : new TreeMap<>(coverages).entrySet()) {
+            for (DataAddress.Type type : DataAddress.Type.values()) {
+                for (boolean write : new boolean[]{false, true}) {
+                    var ranges = entry.getValue().getRanges(type, write);
+                    if (ranges.isEmpty()) {
+                        continue;
+                    }
+                    writer.write(String.format("%s %s %s %05X %s%n", entry.getKey(), type, write ? "W" : "R", ranges.length(), ranges));
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * 以CSV的方式输出访问热度图，每个块为一行
+     * <p>
+     * 格式：起始地址,读取的字节数量,写入的字节数量,访问的所有者数量
+     *
+     * @param writer    输出
+     * @param type      PRG ROM或CHR ROM
+     * @param length    数据的长度
+     * @param blockSize 块的大小
+     */
+    public void writeHeatmap(@NotNull Writer writer, @NotNull DataAddress.Type type, int length, int blockSize) throws IOException {
+        var read = new BitSet(length);
+        var write = new BitSet(length);
+        var owners = new int[(length + blockSize - 1) / blockSize];
+        for (Coverage coverage : coverages.values()) {
+            synchronized (coverage) {
+                var ownerRead = coverage.get(type, false);
+                var ownerWrite = coverage.get(type, true);
+                read.or(ownerRead);
+                write.or(ownerWrite);
+                for (int block = 0; block < owners.length; block++) {
+                    int start = block * blockSize;
+                    int end = Math.min(start + blockSize, length);
+                    if (hasSetBit(ownerRead, start, end) || hasSetBit(ownerWrite, start, end)) {
+                        owners[block]++;
+                    }
+                }
+            }
+        }
+
+        writer.write("address,read,write,owners\n");
+        for (int block = 0; block < owners.length; block++) {
+            int start = block * blockSize;
+            int end = Math.min(start + blockSize, length);
+            writer.write(String.format("%05X,%d,%d,%d%n", start,
+                    read.get(start, end).cardinality(),
+                    write.get(start, end).cardinality(),
+                    owners[block]));
+        }
+        writer.flush();
+    }
+
+    private static boolean hasSetBit(@NotNull BitSet bitSet, int start, int end) {
+        int next = bitSet.nextSetBit(start);
+        return next != -1 && next < end;
+    }
+
+    private static RangeSet toRangeSet(@NotNull BitSet bitSet) {
+        var rangeSet = new RangeSet();
+        for (int start = bitSet.nextSetBit(0); start != -1; ) {
+            int end = bitSet.nextClearBit(start);
+            rangeSet.add(start, end);
+            start = bitSet.nextSetBit(end);
+        }
+        return rangeSet;
+    }
+
+    /**
+     * 一个所有者的访问记录
+     */
+    public static class Coverage {
+        private final BitSet prgRead = new BitSet();
+        private final BitSet prgWrite = new BitSet();
+        private final BitSet chrRead = new BitSet();
+        private final BitSet chrWrite = new BitSet();
+        /**
+         * 读取和写入的字节总数，重复访问的字节会重复计算
+         */
+        private long readBytes = 0L;
+        private long writeBytes = 0L;
+
+        private BitSet get(@NotNull DataAddress.Type type, boolean write) {
+            return switch (type) {
+                case PRG -> write ? prgWrite : prgRead;
+                case CHR -> write ? chrWrite : chrRead;
+            };
+        }
+
+        private synchronized void mark(@NotNull DataAddress.Type type, boolean write, int index, int length) {
+            get(type, write).set(index, index + length);
+            if (write) {
+                writeBytes += length;
+            } else {
+                readBytes += length;
+            }
+        }
+
+        /**
+         * 获取访问过的范围
+         *
+         * @param type  PRG ROM或CHR ROM
+         * @param write true为写入，false为读取
+         * @return 访问过的范围
+         */
+        public synchronized RangeSet getRanges(@NotNull DataAddress.Type type, boolean write) {
+            return toRangeSet(get(type, write));
+        }
+
+        /**
+         * 获取读取或写入的字节总数，重复访问的字节会重复计算
+         *
+         * @param write true为写入，false为读取
+         * @return 字节总数
+         */
+        public synchronized long getBytes(boolean write) {
+            return write ? writeBytes : readBytes;
+        }
+
+        /**
+         * 获取访问过的字节数量
+         *
+         * @param type  PRG ROM或CHR ROM
+         * @param write true为写入，false为读取
+         * @return 访问过的字节数量
+         */
+        public synchronized int count(@NotNull DataAddress.Type type, boolean write) {
+            return get(type, write).cardinality();
+        }
+    }
+}
@@ -1,33 +1,39 @@
 package me.afoolslove.metalmaxre;
 
+import me.afoolslove.metalmaxre.io.BpsPatch;
+import me.afoolslove.metalmaxre.io.IpsPatch;
 import me.afoolslove.metalmaxre.utils.DataAddress;
 import me.afoolslove.metalmaxre.utils.ResourceManager;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.ByteArrayOutputStream;
-import java.io.Closeable;
-import java.io.IOException;
-import java.io.OutputStream;
+import java.io.*;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.Map;
+import java.util.Objects;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
-import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.*;
 
 /**
  * 提供了基本的ROM结构
+ * <p>
+ * *使用完毕后需要调用 {@link #close()}，{@link StorageType#OFF_HEAP} 会立即释放复制ROM数据的堆外内存，
+ * 共享这些数据的快照和覆盖层也不能再使用
  *
  * @author AFoolLove
  */
 public class RomBuffer implements AutoCloseable, Closeable {
     private static final byte[] ZIP_HEADER_1 = {0x50, 0x4B, 0x03, 0x04};
     private static final byte[] ZIP_HEADER_2 = {0x50, 0x4B, 0x05, 0x06};
+    private static final byte[] ZIP_HEADER_3 = {0x50, 0x4B, 0x07, 0x08};
     public static final byte[] NES_HEADER = {0x4E, 0x45, 0x53, 0x1A};
 
     /**
@@ -46,12 +52,12 @@ public class RomBuffer implements AutoCloseable, Closeable {
      * 程序ROM
      */
     @NotNull
-    private ByteBuffer prgRom;
+    private final RomPages prgRom;
     /**
      * 图像ROM
      */
     @NotNull
-    private ByteBuffer chrRom;
+    private final RomPages chrRom;
 
     /**
      * ROM版本
@@ -65,21 +71,38 @@ public class RomBuffer implements AutoCloseable, Closeable {
     @Nullable
     private final Path path;
 
+    /**
+     * ROM数据的储存方式
+     */
+    @NotNull
+    private final StorageType storageType;
+    /**
+     * {@link StorageType#OFF_HEAP} 时复制ROM数据的堆外内存，PRG ROM和CHR ROM共用，快照中为null
+     */
+    @Nullable
+    private OffHeapRegion offHeapRegion;
+
     private boolean isZip = false;
     private String zipRomName;
 
+    /**
+     * 与当前数据（不含被写入的范围）一致的文件，用于只写入被修改的数据
+     */
+    @Nullable
+    private Path savedPath;
+    /**
+     * 保存时的ROM结构，结构变更后需要写入全部数据
+     */
+    private int savedPrgRomStart;
+    private int savedPrgRomLength;
+    private int savedChrRomLength;
+
     /**
      * PRG ROM大小变更监听器
      */
     private final GameHeader.PrgRomChangeListener prgRomChangeListener = (header, oldValue, newValue) -> {
         if (oldValue != newValue) {
-            var oldPrgRom = prgRom;
-            prgRom = ByteBuffer.allocate(newValue * 0x4000);
-            if (oldValue > newValue) {
-                prgRom.put(0x00000, oldPrgRom, 0x00000, prgRom.capacity());
-            } else {
-                prgRom.put(0x00000, oldPrgRom, 0x00000, oldPrgRom.capacity());
-            }
+            getPrgRomPages().resize((newValue & 0xFF) * GameHeader.PRG_LENGTH);
         }
     };
     /**
@@ -87,13 +110,7 @@ public class RomBuffer implements AutoCloseable, Closeable {
      */
     private final GameHeader.ChrRomChangeListener chrRomChangeListener = (header, oldValue, newValue) -> {
         if (oldValue != newValue) {
-            var oldChrRom = chrRom;
-            chrRom = ByteBuffer.allocate(newValue * 0x4000);
-            if (oldValue > newValue) {
-                chrRom.put(0x00000, oldChrRom, 0x00000, chrRom.capacity());
-            } else {
-                chrRom.put(0x00000, oldChrRom, 0x00000, oldChrRom.capacity());
-            }
+            getChrRomPages().resize((newValue & 0xFF) * GameHeader.CHR_LENGTH);
         }
     };
 
@@ -101,23 +118,49 @@ public class RomBuffer implements AutoCloseable, Closeable {
         this.header = romBuffer.getHeader();
         this.version = romBuffer.getVersion();
         this.path = romBuffer.getPath();
+        this.storageType = romBuffer.getStorageType();
         this.prgRom = romBuffer.prgRom;
         this.chrRom = romBuffer.chrRom;
     }
 
+    /**
+     * 创建快照
+     */
+    private RomBuffer(@NotNull RomBuffer romBuffer, @NotNull RomPages prgRom, @NotNull RomPages chrRom) {
+        this.version = romBuffer.getVersion();
+        this.path = romBuffer.getPath();
+        this.storageType = romBuffer.getStorageType();
+        this.isZip = romBuffer.isZip();
+        this.zipRomName = romBuffer.getZipRomName();
+
+        this.header = new GameHeader(romBuffer.getHeader().getHeader().clone());
+        if (romBuffer.getTrainer() != null) {
+            this.trainer = new Trainer(romBuffer.getTrainer().getTrainer());
+        }
+        this.prgRom = prgRom;
+        this.chrRom = chrRom;
+        markSaved(null);
+
+        // 监听PrgRom和ChrRom变更
+        getHeader().addPrgRomChangeListener(prgRomChangeListener);
+        getHeader().addChrRomChangeListener(chrRomChangeListener);
+    }
+
     public RomBuffer(@NotNull RomVersion version, @NotNull byte[] bytes) {
         this.version = version;
         this.path = null;
+        this.storageType = StorageType.HEAP;
 
         this.header = new GameHeader(Arrays.copyOfRange(bytes, 0x00000, GameHeader.HEADER_LENGTH));
         if (getHeader().isTrained()) {
             this.trainer = new Trainer(Arrays.copyOfRange(bytes, GameHeader.HEADER_LENGTH, GameHeader.HEADER_LENGTH + Trainer.TRAINER_LENGTH));
         }
-        this.prgRom = ByteBuffer.allocate(getHeader().getPrgRomLength());
-        this.chrRom = ByteBuffer.allocate(getHeader().getChrRomLength());
+        // 复制一份，避免外部修改传入的数组
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length, getHeader().getChrRomEnd() + 1));
+        this.prgRom = RomPages.wrap(bytes, getHeader().getPrgRomStart(), getHeader().getPrgRomLength());
+        this.chrRom = RomPages.wrap(bytes, getHeader().getChrRomStart(), getHeader().getChrRomLength());
 
-        prgRom.put(0x00000, Arrays.copyOfRange(bytes, getHeader().getPrgRomStart(), getHeader().getPrgRomEnd() + 1));
-        chrRom.put(0x00000, Arrays.copyOfRange(bytes, getHeader().getChrRomStart(), getHeader().getChrRomEnd() + 1));
+        markSaved(null);
 
         // 监听PrgRom和ChrRom变更
         getHeader().addPrgRomChangeListener(prgRomChangeListener);
@@ -125,19 +168,43 @@ public class RomBuffer implements AutoCloseable, Closeable {
     }
 
     public RomBuffer(@NotNull RomVersion version, @Nullable Path path) throws IOException {
+        this(version, path, StorageType.HEAP);
+    }
+
+    /**
+     * @param version     ROM版本
+     * @param path        ROM所在的路径，如果为null则使用的内部ROM
+     * @param storageType ROM数据的储存方式，内部ROM和Zip中的ROM不能使用 {@link StorageType#MAPPED}
+     */
+    public RomBuffer(@NotNull RomVersion version, @Nullable Path path, @NotNull StorageType storageType) throws IOException {
         this.version = version;
         this.path = path;
 
-        byte[] bytes;
+        ByteBuffer source;
         if (path == null) {
-            bytes = ResourceManager.getAsBytes(version.getPath());
+            // 所有实例共享内置ROM的数据，写入时才复制
+            source = version.getBuiltinRom();
+            if (source == null) {
+                throw new IOException(String.format("builtin rom was not found(%s)", version.getPath()));
+            }
+            if (storageType == StorageType.MAPPED) {
+                storageType = StorageType.HEAP;
+            }
         } else {
             // 读取外部文件
-            bytes = Files.readAllBytes(path);
+            if (storageType != StorageType.HEAP) {
+                // 映射后直接复制到堆外内存，不经过堆内存
+                try (FileChannel channel = FileChannel.open(path, READ)) {
+                    source = channel.map(FileChannel.MapMode.READ_ONLY, 0x00000, channel.size());
+                }
+            } else {
+                source = ByteBuffer.wrap(Files.readAllBytes(path));
+            }
 
             // 验证是否为zip
-            byte[] fileHeader = Arrays.copyOfRange(bytes, 0x00, 0x04);
-            if (!Arrays.equals(fileHeader, NES_HEADER) && (Arrays.equals(fileHeader, ZIP_HEADER_1) || Arrays.equals(fileHeader, ZIP_HEADER_2))) {
+            byte[] fileHeader = new byte[0x04];
+            source.get(0x00, fileHeader, 0x00, Math.min(fileHeader.length, source.limit()));
+            if (!Arrays.equals(fileHeader, NES_HEADER) && isZipHeader(fileHeader)) {
                 // ZIP文件，打开并搜索nes文件
                 ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
                 try (ZipFile zipFile = new ZipFile(path.toFile())) {
@@ -160,19 +227,48 @@ public class RomBuffer implements AutoCloseable, Closeable {
                     // zip中没有nes文件
                     throw new RuntimeException(String.format("nes file was not found in the zip file(%s)", path));
                 }
-                bytes = outputStream.toByteArray();
+                source = ByteBuffer.wrap(outputStream.toByteArray());
+                if (storageType == StorageType.MAPPED) {
+                    storageType = StorageType.HEAP;
+                }
             }
         }
+        this.storageType = storageType;
 
-        this.header = new GameHeader(Arrays.copyOfRange(bytes, 0x00000, GameHeader.HEADER_LENGTH));
+        byte[] headerBytes = new byte[GameHeader.HEADER_LENGTH];
+        source.get(0x00000, headerBytes);
+        this.header = new GameHeader(headerBytes);
         if (getHeader().isTrained()) {
-            this.trainer = new Trainer(Arrays.copyOfRange(bytes, GameHeader.HEADER_LENGTH, GameHeader.HEADER_LENGTH + Trainer.TRAINER_LENGTH));
+            byte[] trainerBytes = new byte[Trainer.TRAINER_LENGTH];
+            source.get(GameHeader.HEADER_LENGTH, trainerBytes);
+            this.trainer = new Trainer(trainerBytes);
         }
-        this.prgRom = ByteBuffer.allocate(getHeader().getPrgRomLength());
-        this.chrRom = ByteBuffer.allocate(getHeader().getChrRomLength());
-
-        prgRom.put(0x00000, Arrays.copyOfRange(bytes, getHeader().getPrgRomStart(), getHeader().getPrgRomEnd() + 1));
-        chrRom.put(0x00000, Arrays.copyOfRange(bytes, getHeader().getChrRomStart(), getHeader().getChrRomEnd() + 1));
+        switch (storageType) {
+            case MAPPED -> {
+                // 共享文件映射的数据，写入时才复制
+                this.prgRom = RomPages.share(source, getHeader().getPrgRomStart(), getHeader().getPrgRomLength());
+                this.chrRom = RomPages.share(source, getHeader().getChrRomStart(), getHeader().getChrRomLength());
+            }
+            case OFF_HEAP -> {
+                // 只分配一次堆外内存，按页分给PRG ROM和CHR ROM
+                int prgPages = RomPages.pageCount(getHeader().getPrgRomLength());
+                this.offHeapRegion = OffHeapRegion.allocate(prgPages + RomPages.pageCount(getHeader().getChrRomLength()));
+                this.prgRom = RomPages.copyDirect(source, getHeader().getPrgRomStart(), getHeader().getPrgRomLength(), offHeapRegion, 0);
+                this.chrRom = RomPages.copyDirect(source, getHeader().getChrRomStart(), getHeader().getChrRomLength(), offHeapRegion, prgPages);
+            }
+            default -> {
+                if (source.isReadOnly()) {
+                    // 共享的内置ROM，写入时才复制
+                    this.prgRom = RomPages.share(source, getHeader().getPrgRomStart(), getHeader().getPrgRomLength());
+                    this.chrRom = RomPages.share(source, getHeader().getChrRomStart(), getHeader().getChrRomLength());
+                } else {
+                    // 直接使用读取的数据，不再复制
+                    this.prgRom = RomPages.wrap(source.array(), getHeader().getPrgRomStart(), getHeader().getPrgRomLength());
+                    this.chrRom = RomPages.wrap(source.array(), getHeader().getChrRomStart(), getHeader().getChrRomLength());
+                }
+            }
+        }
+        markSaved(isZip ? null : path);
 
         // 监听PrgRom和ChrRom变更
         getHeader().addPrgRomChangeListener(prgRomChangeListener);
@@ -183,6 +279,14 @@ public class RomBuffer implements AutoCloseable, Closeable {
     public void close() {
         getHeader().removePrgRomChangeListener(prgRomChangeListener);
         getHeader().removeChrRomChangeListener(chrRomChangeListener);
+        if (getStorageType() == StorageType.OFF_HEAP) {
+            getPrgRomPages().release();
+            getChrRomPages().release();
+            if (offHeapRegion != null) {
+                // 释放共享的快照和覆盖层后立即释放堆外内存
+                offHeapRegion.free();
+            }
+        }
     }
 
     /**
@@ -200,6 +304,16 @@ public class RomBuffer implements AutoCloseable, Closeable {
         return path;
     }
 
+    /**
+     * 获取ROM数据的储存方式
+     *
+     * @return ROM数据的储存方式
+     */
+    @NotNull
+    public StorageType getStorageType() {
+        return storageType;
+    }
+
     /**
      * @return 是否为在Zip中加载的ROM
      */
@@ -235,24 +349,52 @@ public class RomBuffer implements AutoCloseable, Closeable {
      * 获取PRG ROM的数据
      *
      * @return PRG ROM的数据
+     * @throws UnsupportedOperationException 总是抛出
+     * @deprecated 数据按页储存后不再有完整的 {@link ByteBuffer}，该方法将被移除；
+     * 读写数据请使用 {@link #getPrgRomPages()}，需要完整数据时使用 {@link RomPages#toByteArray()}
      */
+    @Deprecated(forRemoval = true)
     @NotNull
     public ByteBuffer getPrgRom() {
-        return prgRom;
+        throw new UnsupportedOperationException("PRG ROM is stored in pages, use getPrgRomPages() instead");
     }
 
     /**
      * 获取CHR ROM的数据
      *
      * @return CHR ROM的数据
+     * @throws UnsupportedOperationException 总是抛出
+     * @deprecated 数据按页储存后不再有完整的 {@link ByteBuffer}，该方法将被移除；
+     * 读写数据请使用 {@link #getChrRomPages()}，需要完整数据时使用 {@link RomPages#toByteArray()}
      */
+    @Deprecated(forRemoval = true)
     @NotNull
     public ByteBuffer getChrRom() {
+        throw new UnsupportedOperationException("CHR ROM is stored in pages, use getChrRomPages() instead");
+    }
+
+    /**
+     * 获取按页储存的PRG ROM的数据
+     *
+     * @return PRG ROM的数据
+     */
+    @NotNull
+    public RomPages getPrgRomPages() {
+        return prgRom;
+    }
+
+    /**
+     * 获取按页储存的CHR ROM的数据
+     *
+     * @return CHR ROM的数据
+     */
+    @NotNull
+    public RomPages getChrRomPages() {
         return chrRom;
     }
 
     public void getChr(int index, byte[] bytes, int offset, int length) {
-        getChrRom().get(index, bytes, offset, length);
+        getChrRomPages().get(index, bytes, offset, length);
     }
 
     public void getChr(int index, byte[] bytes) {
@@ -260,11 +402,11 @@ public class RomBuffer implements AutoCloseable, Closeable {
     }
 
     public byte getChr(int index) {
-        return getChrRom().get(index);
+        return getChrRomPages().get(index);
     }
 
     public int getChrToInt(int index) {
-        return getChrRom().get(index) & 0xFF;
+        return getChrRomPages().get(index) & 0xFF;
     }
 
     public char getChrToChar(int index) {
@@ -272,7 +414,7 @@ public class RomBuffer implements AutoCloseable, Closeable {
     }
 
     public void putChr(int index, byte[] bytes, int offset, int length) {
-        getChrRom().put(index, bytes, offset, length);
+        getChrRomPages().put(index, bytes, offset, length);
     }
 
     public void putChr(int index, byte[]... bytes) {
@@ -282,24 +424,24 @@ public class RomBuffer implements AutoCloseable, Closeable {
     }
 
     public void putChr(int index, byte[] bytes) {
-        getChrRom().put(index, bytes, 0x00000, bytes.length);
+        getChrRomPages().put(index, bytes, 0x00000, bytes.length);
     }
 
     public void putChr(int index, byte b) {
-        getChrRom().put(index, b);
+        getChrRomPages().put(index, b);
     }
 
     public void putChrInt(int index, int n) {
-        getChrRom().putInt(index, n);
+        getChrRomPages().putInt(index, n);
     }
 
     public void putChrChar(int index, char c) {
-        getChrRom().putChar(index, c);
+        getChrRomPages().putChar(index, c);
     }
 
 
     public void getPrg(int index, byte[] bytes, int offset, int length) {
-        getPrgRom().get(index, bytes, offset, length);
+        getPrgRomPages().get(index, bytes, offset, length);
     }
 
     public void getPrg(int index, byte[] bytes) {
@@ -307,11 +449,11 @@ public class RomBuffer implements AutoCloseable, Closeable {
     }
 
     public byte getPrg(int index) {
-        return getPrgRom().get(index);
+        return getPrgRomPages().get(index);
     }
 
     public int getPrgToInt(int index) {
-        return getPrgRom().get(index) & 0xFF;
+        return getPrgRomPages().get(index) & 0xFF;
     }
 
     public char getPrgToChar(int index) {
@@ -319,7 +461,7 @@ public class RomBuffer implements AutoCloseable, Closeable {
     }
 
     public void putPrg(int index, byte[] bytes, int offset, int length) {
-        getPrgRom().put(index, bytes, offset, length);
+        getPrgRomPages().put(index, bytes, offset, length);
     }
 
     public void putPrg(int index, byte[]... bytes) {
@@ -329,24 +471,34 @@ public class RomBuffer implements AutoCloseable, Closeable {
     }
 
     public void putPrg(int index, byte[] bytes) {
-        getPrgRom().put(index, bytes, 0x00000, bytes.length);
+        getPrgRomPages().put(index, bytes, 0x00000, bytes.length);
     }
 
     public void putPrg(int index, byte b) {
-        getPrgRom().put(index, b);
+        getPrgRomPages().put(index, b);
     }
 
     public void putPrgInt(int index, int n) {
-        getPrgRom().putInt(index, n);
+        getPrgRomPages().putInt(index, n);
     }
 
     public void putPrgChar(int index, char c) {
-        getPrgRom().putChar(index, c);
+        getPrgRomPages().putChar(index, c);
     }
 
 
+    /**
+     * ROM的绝对地址（包含头和Trainer）是否位于CHR ROM中
+     *
+     * @param index 绝对地址
+     * @return 是否位于CHR ROM中
+     */
+    private boolean isChrRomIndex(int index) {
+        return index >= getHeader().getChrRomStart();
+    }
+
     public void get(int index, byte[] bytes, int offset, int length) {
-        if (index > getPrgRom().capacity()) {
+        if (isChrRomIndex(index)) {
             index -= getHeader().getChrRomStart();
             getChr(index, bytes, offset, length);
         } else {
@@ -360,12 +512,12 @@ public class RomBuffer implements AutoCloseable, Closeable {
     }
 
     public byte get(int index) {
-        if (index > getPrgRom().capacity()) {
+        if (isChrRomIndex(index)) {
             index -= getHeader().getChrRomStart();
-            return getChrRom().get(index);
+            return getChrRomPages().get(index);
         } else {
             index -= getHeader().getPrgRomStart();
-            return getPrgRom().get(index);
+            return getPrgRomPages().get(index);
         }
     }
 
@@ -392,12 +544,12 @@ public class RomBuffer implements AutoCloseable, Closeable {
     }
 
     public int getToInt(int index) {
-        if (index > getPrgRom().capacity()) {
+        if (isChrRomIndex(index)) {
             index -= getHeader().getChrRomStart();
-            return getChrRom().get(index) & 0xFF;
+            return getChrRomPages().get(index) & 0xFF;
         } else {
             index -= getHeader().getPrgRomStart();
-            return getPrgRom().get(index) & 0xFF;
+            return getPrgRomPages().get(index) & 0xFF;
         }
     }
 
@@ -405,34 +557,103 @@ public class RomBuffer implements AutoCloseable, Closeable {
         return (char) getToInt(index);
     }
 
+    /**
+     * 以小端序读取一个char
+     */
     public char getChar(int index) {
-        int tmp;
-        if (index > getPrgRom().capacity()) {
-            index -= getHeader().getChrRomStart();
-            tmp = getChrRom().getChar(index);
+        return (char) getU16LE(index);
+    }
+
+    /**
+     * 读取一个无符号的字节
+     */
+    public int getU8(int index) {
+        return getToInt(index);
+    }
+
+    /**
+     * 以小端序读取一个无符号的2字节数据
+     */
+    public int getU16LE(int index) {
+        if (isChrRomIndex(index)) {
+            return getChrRomPages().getU16LE(index - getHeader().getChrRomStart());
         } else {
-            index -= getHeader().getPrgRomStart();
-            tmp = getPrgRom().getChar(index);
+            return getPrgRomPages().getU16LE(index - getHeader().getPrgRomStart());
         }
+    }
 
-        if (getChrRom().order() == ByteOrder.BIG_ENDIAN) {
-            // 字节倒序
-            tmp += tmp << 16;
-            //FF32
-            //    FF32
-            //FF32FF32
-            tmp >>>= 8; //00FF32FF
+    /**
+     * 以小端序写入一个2字节数据
+     */
+    public void putU16LE(int index, int value) {
+        if (isChrRomIndex(index)) {
+            getChrRomPages().putU16LE(index - getHeader().getChrRomStart(), value);
+        } else {
+            getPrgRomPages().putU16LE(index - getHeader().getPrgRomStart(), value);
         }
-        return (char) (tmp & 0xFFFF);
+    }
+
+    /**
+     * 获取地址所在的PRG ROM或CHR ROM
+     */
+    private RomPages getRom(@NotNull DataAddress address) {
+        return switch (address.getType()) {
+            case PRG -> getPrgRomPages();
+            case CHR -> getChrRomPages();
+        };
+    }
+
+    public int getU8(@NotNull DataAddress address, int offset) {
+        return getRom(address).get(address.getStartAddress(offset)) & 0xFF;
+    }
+
+    public int getU16LE(@NotNull DataAddress address, int offset) {
+        return getRom(address).getU16LE(address.getStartAddress(offset));
+    }
+
+    public void putU16LE(@NotNull DataAddress address, int offset, int value) {
+        getRom(address).putU16LE(address.getStartAddress(offset), value);
+    }
+
+    /**
+     * 以小端序读取地址中连续的2字节数据
+     *
+     * @param address 数据地址
+     * @param chars   读取到的数组
+     * @param offset  数组的起始位置
+     * @param length  读取的数量
+     */
+    public void readU16Array(@NotNull DataAddress address, char[] chars, int offset, int length) {
+        getRom(address).getU16LE(address.getStartAddress(), chars, offset, length);
+    }
+
+    public void readU16Array(@NotNull DataAddress address, char[] chars) {
+        readU16Array(address, chars, 0x00000, chars.length);
+    }
+
+    /**
+     * 以小端序写入连续的2字节数据到地址中
+     *
+     * @param address 数据地址
+     * @param chars   写入的数组
+     * @param offset  数组的起始位置
+     * @param length  写入的数量
+     */
+    public void writeU16Array(@NotNull DataAddress address, char[] chars, int offset, int length) {
+        getRom(address).putU16LE(address.getStartAddress(), chars, offset, length);
+    }
+
+    public void writeU16Array(@NotNull DataAddress address, char[] chars) {
+        writeU16Array(address, chars, 0x00000, chars.length);
     }
 
     public void put(int index, byte[] bytes, int offset, int length) {
-        if (index > getPrgRom().capacity()) {
+        if (isChrRomIndex(index)) {
             index -= getHeader().getChrRomStart();
-            getChrRom().put(index, bytes, offset, length);
+            getChrRomPages().put(index, bytes, offset, length);
         } else {
             index -= getHeader().getPrgRomStart();
-            getPrgRom().put(index, bytes, offset, length);
+            getPrgRomPages().put(index, bytes, offset, length);
         }
     }
 
@@ -447,32 +668,32 @@ public class RomBuffer implements AutoCloseable, Closeable {
     }
 
     public void put(int index, byte b) {
-        if (index > getPrgRom().capacity()) {
+        if (isChrRomIndex(index)) {
             index -= getHeader().getChrRomStart();
-            getChrRom().put(index, b);
+            getChrRomPages().put(index, b);
         } else {
             index -= getHeader().getPrgRomStart();
-            getPrgRom().put(index, b);
+            getPrgRomPages().put(index, b);
         }
     }
 
     public void putInt(int index, int n) {
-        if (index > getPrgRom().capacity()) {
+        if (isChrRomIndex(index)) {
             index -= getHeader().getChrRomStart();
-            getChrRom().putInt(index, n);
+            getChrRomPages().putInt(index, n);
         } else {
             index -= getHeader().getPrgRomStart();
-            getPrgRom().putInt(index, n);
+            getPrgRomPages().putInt(index, n);
         }
     }
 
     public void putChar(int index, char c) {
-        if (index > getPrgRom().capacity()) {
+        if (isChrRomIndex(index)) {
             index -= getHeader().getChrRomStart();
-            getChrRom().putChar(index, c);
+            getChrRomPages().putChar(index, c);
         } else {
             index -= getHeader().getPrgRomStart();
-            getPrgRom().putChar(index, c);
+            getPrgRomPages().putChar(index, c);
         }
     }
 
@@ -498,6 +719,256 @@ public class RomBuffer implements AutoCloseable, Closeable {
         }
     }
 
+    /**
+     * 在指定位置插入填充0x00的PRG ROM bank（0x4000），之后的bank向后移动
+     * <p>
+     * *只会移动页的引用，不会复制已有的数据
+     *
+     * @param bank  插入的位置
+     * @param count 插入的数量
+     */
+    public void insertPrgBanks(int bank, int count) {
+        int banks = getHeader().getPrgRom();
+        if (bank < 0 || bank > banks || count < 0 || banks + count > 0xFF) {
+            throw new IndexOutOfBoundsException(String.format("insert prg banks out of range: %02X+%02X, banks: %02X", bank, count, banks));
+        }
+        getPrgRomPages().insert(bank * GameHeader.PRG_LENGTH, count * GameHeader.PRG_LENGTH);
+        getHeader().setPrgRom(banks + count);
+    }
+
+    /**
+     * 移除指定位置的PRG ROM bank（0x4000），之后的bank向前移动
+     *
+     * @param bank  移除的位置
+     * @param count 移除的数量
+     */
+    public void removePrgBanks(int bank, int count) {
+        int banks = getHeader().getPrgRom();
+        if (bank < 0 || count < 0 || bank + count > banks) {
+            throw new IndexOutOfBoundsException(String.format("remove prg banks out of range: %02X+%02X, banks: %02X", bank, count, banks));
+        }
+        getPrgRomPages().remove(bank * GameHeader.PRG_LENGTH, count * GameHeader.PRG_LENGTH);
+        getHeader().setPrgRom(banks - count);
+    }
+
+    /**
+     * 在指定位置插入填充0x00的CHR ROM bank（0x2000），之后的bank向后移动
+     * <p>
+     * *只会移动页的引用，不会复制已有的数据
+     *
+     * @param bank  插入的位置
+     * @param count 插入的数量
+     */
+    public void insertChrBanks(int bank, int count) {
+        int banks = getHeader().getChrRom();
+        if (bank < 0 || bank > banks || count < 0 || banks + count > 0xFF) {
+            throw new IndexOutOfBoundsException(String.format("insert chr banks out of range: %02X+%02X, banks: %02X", bank, count, banks));
+        }
+        getChrRomPages().insert(bank * GameHeader.CHR_LENGTH, count * GameHeader.CHR_LENGTH);
+        getHeader().setChrRom(banks + count);
+    }
+
+    /**
+     * 移除指定位置的CHR ROM bank（0x2000），之后的bank向前移动
+     *
+     * @param bank  移除的位置
+     * @param count 移除的数量
+     */
+    public void removeChrBanks(int bank, int count) {
+        int banks = getHeader().getChrRom();
+        if (bank < 0 || count < 0 || bank + count > banks) {
+            throw new IndexOutOfBoundsException(String.format("remove chr banks out of range: %02X+%02X, banks: %02X", bank, count, banks));
+        }
+        getChrRomPages().remove(bank * GameHeader.CHR_LENGTH, count * GameHeader.CHR_LENGTH);
+        getHeader().setChrRom(banks - count);
+    }
+
+    /**
+     * 创建当前ROM的快照，快照与当前ROM共享所有页，之后双方写入时才会复制被写入的页（0x2000）
+     * <p>
+     * *如果设置了写入记录，会同时创建一个检查点
+     * <p>
+     * *不要在写入数据（如应用编辑器）的同时创建快照
+     *
+     * @return 快照
+     * @see #restore(RomBuffer)
+     */
+    @NotNull
+    public RomBuffer snapshot() {
+        var journal = getJournal();
+        if (journal != null) {
+            journal.checkpoint();
+        }
+        return snapshotWithoutCheckpoint();
+    }
+
+    /**
+     * 创建快照，但不会创建检查点，不会影响写入记录中当前的撤销组
+     *
+     * @return 快照
+     */
+    @NotNull
+    RomBuffer snapshotWithoutCheckpoint() {
+        return new RomBuffer(this, getPrgRomPages().snapshot(), getChrRomPages().snapshot());
+    }
+
+    /**
+     * 创建覆盖层，与快照相同，但不会创建检查点
+     * <p>
+     * 覆盖层中被写入的范围为 {@link RomPages#getDirtyRanges()}，通过 {@link #merge(RomBuffer)} 合并到当前ROM
+     * <p>
+     * *不要在写入数据的同时创建覆盖层
+     *
+     * @return 覆盖层
+     */
+    @NotNull
+    public RomBuffer overlay() {
+        var overlay = snapshotWithoutCheckpoint();
+        overlay.setTracer(getTracer());
+        return overlay;
+    }
+
+    /**
+     * 将覆盖层中被写入的数据合并到当前ROM，会被写入记录记录
+     * <p>
+     * *不会合并ROM结构的变更
+     *
+     * @param overlay 覆盖层
+     * @see #overlay()
+     */
+    public void merge(@NotNull RomBuffer overlay) {
+        getPrgRomPages().merge(overlay.getPrgRomPages(), overlay.getPrgRomPages().getDirtyRanges());
+        getChrRomPages().merge(overlay.getChrRomPages(), overlay.getChrRomPages().getDirtyRanges());
+    }
+
+    /**
+     * 还原到快照的数据，与快照共享所有页
+     *
+     * @param snapshot 快照
+     * @see #snapshot()
+     */
+    public void restore(@NotNull RomBuffer snapshot) {
+        var snapshotHeader = snapshot.getHeader().getHeader();
+        System.arraycopy(snapshotHeader, 0x00000, getHeader().getHeader(), 0x00000, snapshotHeader.length);
+        var snapshotTrainer = snapshot.getTrainer();
+        this.trainer = snapshotTrainer == null ? null : new Trainer(snapshotTrainer.getTrainer());
+        getPrgRomPages().restore(snapshot.getPrgRomPages());
+        getChrRomPages().restore(snapshot.getChrRomPages());
+    }
+
+    /**
+     * 获取写入记录
+     *
+     * @return 写入记录，为null时不记录
+     */
+    @Nullable
+    public RomJournal getJournal() {
+        return getPrgRomPages().getJournal();
+    }
+
+    /**
+     * 设置写入记录，用于撤销和重做写入的数据
+     * <p>
+     * *只会记录PRG ROM和CHR ROM的写入，不会记录ROM结构的变更
+     *
+     * @param journal 写入记录，为null时不记录
+     */
+    public void setJournal(@Nullable RomJournal journal) {
+        getPrgRomPages().setJournal(journal);
+        getChrRomPages().setJournal(journal);
+    }
+
+    /**
+     * 获取访问追踪器
+     *
+     * @return 访问追踪器，为null时不追踪
+     */
+    @Nullable
+    public RomAccessTracer getTracer() {
+        return getPrgRomPages().getTracer();
+    }
+
+    /**
+     * 设置访问追踪器，记录PRG ROM和CHR ROM被读取和写入过的字节
+     * <p>
+     * *需要开启 {@link RomAccessTracer#ENABLED}，否则不会记录
+     *
+     * @param tracer 访问追踪器，为null时不追踪
+     */
+    public void setTracer(@Nullable RomAccessTracer tracer) {
+        getPrgRomPages().setTracer(tracer, DataAddress.Type.PRG);
+        getChrRomPages().setTracer(tracer, DataAddress.Type.CHR);
+    }
+
+    /**
+     * 获取ROM文件的总长度，包含头和Trainer
+     *
+     * @return ROM文件的总长度
+     */
+    public int getRomLength() {
+        return getHeader().getChrRomStart() + getChrRomPages().capacity();
+    }
+
+    /**
+     * 按ROM文件中的位置获取数据，包含头和Trainer
+     */
+    public void getRaw(int index, byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            int count;
+            if (index < GameHeader.HEADER_LENGTH) {
+                count = Math.min(length, GameHeader.HEADER_LENGTH - index);
+                System.arraycopy(getHeader().getHeader(), index, bytes, offset, count);
+            } else if (index < getHeader().getPrgRomStart()) {
+                count = Math.min(length, getHeader().getPrgRomStart() - index);
+                Objects.requireNonNull(getTrainer()).getBuffer().get(index - GameHeader.HEADER_LENGTH, bytes, offset, count);
+            } else if (index < getHeader().getChrRomStart()) {
+                count = Math.min(length, getHeader().getChrRomStart() - index);
+                getPrgRomPages().get(index - getHeader().getPrgRomStart(), bytes, offset, count);
+            } else {
+                count = length;
+                getChrRomPages().get(index - getHeader().getChrRomStart(), bytes, offset, count);
+            }
+            index += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * 按ROM文件中的位置写入数据，包含头和Trainer
+     * <p>
+     * *不能通过该方法变更ROM结构
+     */
+    public void putRaw(int index, byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            int count;
+            if (index < GameHeader.HEADER_LENGTH) {
+                count = Math.min(length, GameHeader.HEADER_LENGTH - index);
+                var header = getHeader().getHeader();
+                var oldHeader = header.clone();
+                System.arraycopy(bytes, offset, header, index, count);
+                if (getHeader().isTrained() != (getTrainer() != null)
+                    || getHeader().getPrgRomLength() != getPrgRomPages().capacity()
+                    || getHeader().getChrRomLength() != getChrRomPages().capacity()) {
+                    System.arraycopy(oldHeader, 0x00000, header, 0x00000, header.length);
+                    throw new UnsupportedOperationException("can't change the rom structure");
+                }
+            } else if (index < getHeader().getPrgRomStart()) {
+                count = Math.min(length, getHeader().getPrgRomStart() - index);
+                Objects.requireNonNull(getTrainer()).getBuffer().put(index - GameHeader.HEADER_LENGTH, bytes, offset, count);
+            } else if (index < getHeader().getChrRomStart()) {
+                count = Math.min(length, getHeader().getChrRomStart() - index);
+                getPrgRomPages().put(index - getHeader().getPrgRomStart(), bytes, offset, count);
+            } else {
+                count = length;
+                getChrRomPages().put(index - getHeader().getChrRomStart(), bytes, offset, count);
+            }
+            index += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
     /**
      * 获取相同大小的数据到数组中
      * <p>
@@ -569,11 +1040,26 @@ public class RomBuffer implements AutoCloseable, Closeable {
         if (trainer != null) {
             outputStream.write(trainer.getTrainer());
         }
-        outputStream.write(getPrgRom().array());
-        outputStream.write(getChrRom().array());
+        getPrgRomPages().writeTo(outputStream);
+        getChrRomPages().writeTo(outputStream);
         outputStream.flush();
     }
 
+    /**
+     * 保存到文件通道，从通道的起始位置写入全部数据，并截断多余的数据
+     *
+     * @param channel 文件通道
+     */
+    public void save(@NotNull FileChannel channel) throws IOException {
+        long position = channel.write(ByteBuffer.wrap(header.getHeader()), 0x00000);
+        if (trainer != null) {
+            position += channel.write(ByteBuffer.wrap(trainer.getTrainer()), position);
+        }
+        position = getPrgRomPages().write(channel, position, 0x00000, getPrgRomPages().capacity());
+        position = getChrRomPages().write(channel, position, 0x00000, getChrRomPages().capacity());
+        channel.truncate(position);
+    }
+
     /**
      * 将ROM数据转换为字节数组
      *
@@ -593,16 +1079,258 @@ public class RomBuffer implements AutoCloseable, Closeable {
         return byteArrayOutputStream.toByteArray();
     }
 
+    /**
+     * 按顺序读取ROM文件的输入流，不会复制全部数据
+     *
+     * @return ROM文件的输入流
+     */
+    @NotNull
+    public InputStream newInputStream() {
+        return new InputStream() {
+            private int position = 0;
+
+            @Override
+            public int read() {
+                if (position >= getRomLength()) {
+                    return -1;
+                }
+                byte[] b = new byte[1];
+                getRaw(position++, b, 0x00000, 1);
+                return b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                int count = Math.min(len, getRomLength() - position);
+                if (count <= 0) {
+                    return len == 0 ? 0 : -1;
+                }
+                getRaw(position, b, off, count);
+                position += count;
+                return count;
+            }
+        };
+    }
+
+    /**
+     * 打开未修改的源ROM，内部ROM或读取时的文件
+     * <p>
+     * *如果已经保存到了读取时的文件，源ROM就是保存后的ROM
+     *
+     * @return 源ROM的输入流
+     */
+    @NotNull
+    public InputStream openSource() throws IOException {
+        if (getPath() == null) {
+            var stream = ResourceManager.getAsStream(getVersion().getPath());
+            if (stream == null) {
+                throw new FileNotFoundException(getVersion().getPath());
+            }
+            return stream;
+        }
+        if (isZip()) {
+            var zipFile = new ZipFile(getPath().toFile());
+            var zipEntry = zipFile.getEntry(getZipRomName());
+            if (zipEntry == null) {
+                zipFile.close();
+                throw new FileNotFoundException(String.format("%s in %s", getZipRomName(), getPath()));
+            }
+            return new FilterInputStream(zipFile.getInputStream(zipEntry)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        zipFile.close();
+                    }
+                }
+            };
+        }
+        return Files.newInputStream(getPath());
+    }
+
+    /**
+     * @return 源ROM的长度
+     */
+    private long getSourceLength() throws IOException {
+        if (getPath() == null) {
+            return getVersion().getSize();
+        }
+        if (isZip()) {
+            try (var zipFile = new ZipFile(getPath().toFile())) {
+                return zipFile.getEntry(getZipRomName()).getSize();
+            }
+        }
+        return Files.size(getPath());
+    }
+
+    /**
+     * 导出与源ROM的差异为IPS补丁
+     *
+     * @param outputStream 补丁的输出流
+     * @see #openSource()
+     */
+    public void exportIps(@NotNull OutputStream outputStream) throws IOException {
+        try (var source = openSource()) {
+            IpsPatch.export(source, newInputStream(), outputStream);
+        }
+    }
+
+    /**
+     * 导出与源ROM的差异为BPS补丁
+     *
+     * @param outputStream 补丁的输出流
+     * @see #openSource()
+     */
+    public void exportBps(@NotNull OutputStream outputStream) throws IOException {
+        try (var source = openSource()) {
+            BpsPatch.export(source, getSourceLength(), newInputStream(), getRomLength(), outputStream);
+        }
+    }
+
+    /**
+     * 应用IPS补丁到当前ROM
+     *
+     * @param inputStream 补丁的输入流
+     */
+    public void applyIps(@NotNull InputStream inputStream) throws IOException {
+        IpsPatch.apply(inputStream, this);
+    }
+
+    /**
+     * 应用BPS补丁到当前ROM，当前ROM需要与补丁的源ROM相同
+     *
+     * @param inputStream 补丁的输入流
+     */
+    public void applyBps(@NotNull InputStream inputStream) throws IOException {
+        BpsPatch.apply(inputStream, this);
+    }
+
     /**
      * 保存到文件
      *
      * @param path 路径
      */
     public void save(@NotNull Path path) throws IOException {
-        if (Files.notExists(path.getParent())) {
-            Files.createDirectories(path);
+        save(path, false);
+    }
+
+    /**
+     * 保存到文件
+     * <p>
+     * *只写入被修改的数据时，如果文件不是上次读取或保存的文件，或ROM结构已变更，依然会写入全部数据
+     * <p>
+     * *保存到 {@link StorageType#MAPPED} 映射的源文件时，写入临时文件后替换源文件，不会修改被映射的数据，
+     * 当前ROM、快照和覆盖层继续读取替换前的数据；这时总是写入全部数据
+     *
+     * @param path        路径
+     * @param incremental 只写入被修改的数据
+     */
+    public void save(@NotNull Path path, boolean incremental) throws IOException {
+        if (path.getParent() != null && Files.notExists(path.getParent())) {
+            Files.createDirectories(path.getParent());
+        }
+
+        if (isMappedSource(path)) {
+            // 直接写入会改变所有映射读取到的数据，截断文件还可能导致访问映射时崩溃
+            RomSaver.replaceAtomically(path.toRealPath(), this::save);
+        } else if (incremental && isIncrementalSavable(path)) {
+            try (FileChannel channel = FileChannel.open(path, WRITE)) {
+                channel.write(ByteBuffer.wrap(header.getHeader()), 0x00000);
+                if (trainer != null) {
+                    channel.write(ByteBuffer.wrap(trainer.getTrainer()), GameHeader.HEADER_LENGTH);
+                }
+                writeDirtyRanges(channel, getPrgRomPages(), getHeader().getPrgRomStart());
+                writeDirtyRanges(channel, getChrRomPages(), getHeader().getChrRomStart());
+            }
+        } else {
+            try (FileChannel channel = FileChannel.open(path, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                save(channel);
+            }
+        }
+        markSaved(path);
+    }
+
+    /**
+     * 文件是否为 {@link StorageType#MAPPED} 映射的源文件
+     */
+    boolean isMappedSource(@NotNull Path path) throws IOException {
+        return getStorageType() == StorageType.MAPPED
+               && getPath() != null
+               && Files.exists(path)
+               && Files.isSameFile(path, getPath());
+    }
+
+    /**
+     * 是否可以只写入被修改的数据到文件
+     */
+    private boolean isIncrementalSavable(@NotNull Path path) throws IOException {
+        if (savedPath == null || Files.notExists(path) || !Files.isSameFile(path, savedPath)) {
+            // 不是上次读取或保存的文件
+            return false;
+        }
+        if (savedPrgRomStart != getHeader().getPrgRomStart()
+            || savedPrgRomLength != getPrgRomPages().capacity()
+            || savedChrRomLength != getChrRomPages().capacity()) {
+            // ROM结构已变更
+            return false;
+        }
+        return Files.size(path) == getHeader().getChrRomStart() + getChrRomPages().capacity();
+    }
+
+    private static void writeDirtyRanges(@NotNull FileChannel channel, @NotNull RomPages pages, int start) throws IOException {
+        for (Map.Entry<Integer, Integer> range : pages.getDirtyRanges().toMap().entrySet()) {
+            int end = Math.min(range.getValue(), pages.capacity());
+            if (range.getKey() < end) {
+                pages.write(channel, start + range.getKey(), range.getKey(), end - range.getKey());
+            }
         }
+    }
+
+    /**
+     * 记录当前数据与文件一致
+     */
+    private void markSaved(@Nullable Path path) {
+        this.savedPath = path;
+        this.savedPrgRomStart = getHeader().getPrgRomStart();
+        this.savedPrgRomLength = getPrgRomPages().capacity();
+        this.savedChrRomLength = getChrRomPages().capacity();
+        getPrgRomPages().clearDirty();
+        getChrRomPages().clearDirty();
+    }
+
+    /**
+     * 是否为zip文件的头，包括空的zip和分卷的zip
+     *
+     * @param fileHeader 文件的前4个字节
+     */
+    static boolean isZipHeader(byte[] fileHeader) {
+        return Arrays.equals(fileHeader, ZIP_HEADER_1) || Arrays.equals(fileHeader, ZIP_HEADER_2) || Arrays.equals(fileHeader, ZIP_HEADER_3);
+    }
 
-        Files.write(path, toByteArray(), CREATE);
+    /**
+     * ROM数据的储存方式
+     */
+    public enum StorageType {
+        /**
+         * 将ROM数据全部读取到堆内存中
+         * <p>
+         * *内置ROM的数据由所有实例共享，只有被写入的页（0x2000）才会复制
+         */
+        HEAP,
+        /**
+         * 只读映射ROM文件，只有被写入的页（0x2000）才会复制到堆内存中
+         */
+        MAPPED,
+        /**
+         * 将ROM数据全部复制到堆外内存中，扩容时只追加新的页
+         * <p>
+         * *适用于同时打开大量ROM的情况，减少堆内存的占用
+         * <p>
+         * *ROM数据只分配一次堆外内存，调用 {@link RomBuffer#close()} 时立即释放，
+         * 共享未被写入的页的快照和覆盖层也会被释放，之后不能再使用；
+         * 扩容和写入时复制的页单独分配，由GC回收
+         */
+        OFF_HEAP
     }
 }
@@ -5,15 +5,16 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 
 /**
  * {@link RomBuffer}的包装类，与{@link RomBuffer}无异
  */
 public class RomBufferWrapper extends RomBuffer {
-    private final RomBuffer romBuffer;
+    private volatile RomBuffer romBuffer;
 
     public RomBufferWrapper(@NotNull RomBuffer romBuffer) {
         super(romBuffer);
@@ -23,6 +24,26 @@ public class RomBufferWrapper extends RomBuffer {
         this.romBuffer = romBuffer;
     }
 
+    /**
+     * @return 被包装的RomBuffer
+     */
+    @NotNull
+    protected RomBuffer getRomBuffer() {
+        return romBuffer;
+    }
+
+    /**
+     * 替换被包装的RomBuffer
+     *
+     * @param romBuffer 被包装的RomBuffer
+     */
+    protected void setRomBuffer(@NotNull RomBuffer romBuffer) {
+        if (romBuffer instanceof RomBufferWrapper) {
+            throw new RuntimeException("don't pass in RomBufferWrapper");
+        }
+        this.romBuffer = romBuffer;
+    }
+
     @Override
     public void close() {
         romBuffer.close();
@@ -38,6 +59,11 @@ public class RomBufferWrapper extends RomBuffer {
         return romBuffer.getPath();
     }
 
+    @Override
+    public @NotNull StorageType getStorageType() {
+        return romBuffer.getStorageType();
+    }
+
     @Override
     public @NotNull GameHeader getHeader() {
         return romBuffer.getHeader();
@@ -49,13 +75,13 @@ public class RomBufferWrapper extends RomBuffer {
     }
 
     @Override
-    public @NotNull ByteBuffer getPrgRom() {
-        return romBuffer.getPrgRom();
+    public @NotNull RomPages getPrgRomPages() {
+        return romBuffer.getPrgRomPages();
     }
 
     @Override
-    public @NotNull ByteBuffer getChrRom() {
-        return romBuffer.getChrRom();
+    public @NotNull RomPages getChrRomPages() {
+        return romBuffer.getChrRomPages();
     }
 
     @Override
@@ -278,11 +304,181 @@ public class RomBufferWrapper extends RomBuffer {
         romBuffer.putAABytes(index, offset, length, aaBytes);
     }
 
+    @Override
+    public char getChar(int index) {
+        return romBuffer.getChar(index);
+    }
+
+    @Override
+    public int getU8(int index) {
+        return romBuffer.getU8(index);
+    }
+
+    @Override
+    public int getU16LE(int index) {
+        return romBuffer.getU16LE(index);
+    }
+
+    @Override
+    public void putU16LE(int index, int value) {
+        romBuffer.putU16LE(index, value);
+    }
+
+    @Override
+    public int getU8(@NotNull DataAddress address, int offset) {
+        return romBuffer.getU8(address, offset);
+    }
+
+    @Override
+    public int getU16LE(@NotNull DataAddress address, int offset) {
+        return romBuffer.getU16LE(address, offset);
+    }
+
+    @Override
+    public void putU16LE(@NotNull DataAddress address, int offset, int value) {
+        romBuffer.putU16LE(address, offset, value);
+    }
+
+    @Override
+    public void readU16Array(@NotNull DataAddress address, char[] chars, int offset, int length) {
+        romBuffer.readU16Array(address, chars, offset, length);
+    }
+
+    @Override
+    public void readU16Array(@NotNull DataAddress address, char[] chars) {
+        romBuffer.readU16Array(address, chars);
+    }
+
+    @Override
+    public void writeU16Array(@NotNull DataAddress address, char[] chars, int offset, int length) {
+        romBuffer.writeU16Array(address, chars, offset, length);
+    }
+
+    @Override
+    public void writeU16Array(@NotNull DataAddress address, char[] chars) {
+        romBuffer.writeU16Array(address, chars);
+    }
+
+    @Override
+    public @Nullable RomAccessTracer getTracer() {
+        return romBuffer.getTracer();
+    }
+
+    @Override
+    public void setTracer(@Nullable RomAccessTracer tracer) {
+        romBuffer.setTracer(tracer);
+    }
+
+    @Override
+    public void insertPrgBanks(int bank, int count) {
+        romBuffer.insertPrgBanks(bank, count);
+    }
+
+    @Override
+    public void removePrgBanks(int bank, int count) {
+        romBuffer.removePrgBanks(bank, count);
+    }
+
+    @Override
+    public void insertChrBanks(int bank, int count) {
+        romBuffer.insertChrBanks(bank, count);
+    }
+
+    @Override
+    public void removeChrBanks(int bank, int count) {
+        romBuffer.removeChrBanks(bank, count);
+    }
+
+    @Override
+    public @NotNull RomBuffer snapshot() {
+        return romBuffer.snapshot();
+    }
+
+    @Override
+    @NotNull RomBuffer snapshotWithoutCheckpoint() {
+        return romBuffer.snapshotWithoutCheckpoint();
+    }
+
+    @Override
+    public void restore(@NotNull RomBuffer snapshot) {
+        romBuffer.restore(snapshot);
+    }
+
+    @Override
+    public @NotNull RomBuffer overlay() {
+        return romBuffer.overlay();
+    }
+
+    @Override
+    public void merge(@NotNull RomBuffer overlay) {
+        romBuffer.merge(overlay);
+    }
+
+    @Override
+    public @Nullable RomJournal getJournal() {
+        return romBuffer.getJournal();
+    }
+
+    @Override
+    public void setJournal(@Nullable RomJournal journal) {
+        romBuffer.setJournal(journal);
+    }
+
+    @Override
+    public int getRomLength() {
+        return romBuffer.getRomLength();
+    }
+
+    @Override
+    public void getRaw(int index, byte[] bytes, int offset, int length) {
+        romBuffer.getRaw(index, bytes, offset, length);
+    }
+
+    @Override
+    public void putRaw(int index, byte[] bytes, int offset, int length) {
+        romBuffer.putRaw(index, bytes, offset, length);
+    }
+
+    @Override
+    public @NotNull InputStream newInputStream() {
+        return romBuffer.newInputStream();
+    }
+
+    @Override
+    public @NotNull InputStream openSource() throws IOException {
+        return romBuffer.openSource();
+    }
+
+    @Override
+    public void exportIps(@NotNull OutputStream outputStream) throws IOException {
+        romBuffer.exportIps(outputStream);
+    }
+
+    @Override
+    public void exportBps(@NotNull OutputStream outputStream) throws IOException {
+        romBuffer.exportBps(outputStream);
+    }
+
+    @Override
+    public void applyIps(@NotNull InputStream inputStream) throws IOException {
+        romBuffer.applyIps(inputStream);
+    }
+
+    @Override
+    public void applyBps(@NotNull InputStream inputStream) throws IOException {
+        romBuffer.applyBps(inputStream);
+    }
+
     @Override
     public void save(@NotNull OutputStream outputStream) throws IOException {
         romBuffer.save(outputStream);
     }
 
+    @Override
+    public void save(@NotNull FileChannel channel) throws IOException {
+        romBuffer.save(channel);
+    }
+
     @Override
     public byte[] toByteArray() {
         return romBuffer.toByteArray();
@@ -292,4 +488,9 @@ public class RomBufferWrapper extends RomBuffer {
     public void save(@NotNull Path path) throws IOException {
         romBuffer.save(path);
     }
+
+    @Override
+    public void save(@NotNull Path path, boolean incremental) throws IOException {
+        romBuffer.save(path, incremental);
+    }
 }
@@ -0,0 +1,267 @@
+package me.afoolslove.metalmaxre;
+
+import me.afoolslove.metalmaxre.utils.ResourceManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * ROM指纹，用于识别ROM的版本
+ * <p>
+ * 包含整个文件的CRC32C和PRG ROM、CHR ROM每页（0x2000）的CRC32C
+ * <p>
+ * 整个文件相同时为完全匹配，否则按相同页的比例推荐最接近的版本
+ *
+ * @author AFoolLove
+ */
+public class RomFingerprint {
+    private final long crc32c;
+    private final long size;
+    private final int prgRom;
+    private final int chrRom;
+    /**
+     * PRG ROM每页的CRC32C
+     */
+    private final int[] prgPages;
+    /**
+     * CHR ROM每页的CRC32C
+     */
+    private final int[] chrPages;
+
+    private RomFingerprint(long crc32c, long size, int prgRom, int chrRom, int[] prgPages, int[] chrPages) {
+        this.crc32c = crc32c;
+        this.size = size;
+        this.prgRom = prgRom;
+        this.chrRom = chrRom;
+        this.prgPages = prgPages;
+        this.chrPages = chrPages;
+    }
+
+    /**
+     * 读取ROM数据并计算指纹
+     *
+     * @param inputStream ROM数据
+     * @return ROM指纹
+     */
+    public static RomFingerprint of(@NotNull InputStream inputStream) throws IOException {
+        var whole = new CRC32C();
+        var page = new CRC32C();
+        byte[] buffer = new byte[RomPages.PAGE_SIZE];
+
+        var headerBytes = inputStream.readNBytes(GameHeader.HEADER_LENGTH);
+        whole.update(headerBytes);
+        long size = headerBytes.length;
+        var header = new GameHeader(headerBytes);
+        if (header.isTrained()) {
+            int length = inputStream.readNBytes(buffer, 0x00000, Trainer.TRAINER_LENGTH);
+            whole.update(buffer, 0x00000, length);
+            size += length;
+        }
+
+        int[] prgPages = new int[header.getPrgRomLength() / RomPages.PAGE_SIZE];
+        int[] chrPages = new int[header.getChrRomLength() / RomPages.PAGE_SIZE];
+        for (int i = 0; i < prgPages.length + chrPages.length; i++) {
+            int length = inputStream.readNBytes(buffer, 0x00000, RomPages.PAGE_SIZE);
+            whole.update(buffer, 0x00000, length);
+            size += length;
+            page.reset();
+            page.update(buffer, 0x00000, length);
+            if (i < prgPages.length) {
+                prgPages[i] = (int) page.getValue();
+            } else {
+                chrPages[i - prgPages.length] = (int) page.getValue();
+            }
+        }
+        // 多余的数据
+        for (int length; (length = inputStream.read(buffer)) > 0; ) {
+            whole.update(buffer, 0x00000, length);
+            size += length;
+        }
+        return new RomFingerprint(whole.getValue(), size, header.getPrgRom(), header.getChrRom(), prgPages, chrPages);
+    }
+
+    /**
+     * 读取ROM文件并计算指纹，支持zip中的nes文件
+     *
+     * @param path ROM文件
+     * @return ROM指纹
+     */
+    public static RomFingerprint of(@NotNull Path path) throws IOException {
+        byte[] fileHeader;
+        try (var inputStream = Files.newInputStream(path)) {
+            fileHeader = inputStream.readNBytes(RomBuffer.NES_HEADER.length);
+        }
+        if (!Arrays.equals(fileHeader, RomBuffer.NES_HEADER) && RomBuffer.isZipHeader(fileHeader)) {
+            try (ZipFile zipFile = new ZipFile(path.toFile())) {
+                var entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry zipEntry = entries.nextElement();
+                    if (!zipEntry.isDirectory() && zipEntry.getName().endsWith(".nes")) {
+                        try (var inputStream = new BufferedInputStream(zipFile.getInputStream(zipEntry))) {
+                            return of(inputStream);
+                        }
+                    }
+                }
+            }
+            throw new IOException(String.format("nes file was not found in the zip file(%s)", path));
+        }
+        try (var inputStream = new BufferedInputStream(Files.newInputStream(path), RomPages.PAGE_SIZE)) {
+            return of(inputStream);
+        }
+    }
+
+    public long getCrc32c() {
+        return crc32c;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getPrgRom() {
+        return prgRom;
+    }
+
+    public int getChrRom() {
+        return chrRom;
+    }
+
+    /**
+     * 计算与另一个指纹的相似度
+     * <p>
+     * 相同位置的页相同的数量占两者最多页数量的比例
+     *
+     * @return 0.0~1.0，完全相同时为1.0
+     */
+    public double similarity(@NotNull RomFingerprint other) {
+        if (crc32c == other.crc32c && size == other.size) {
+            return 1.0;
+        }
+        int same = samePages(prgPages, other.prgPages) + samePages(chrPages, other.chrPages);
+        int total = Math.max(prgPages.length, other.prgPages.length) + Math.max(chrPages.length, other.chrPages.length);
+        return total == 0 ? 0.0 : (double) same / total;
+    }
+
+    private static int samePages(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0, length = Math.min(a.length, b.length); i < length; i++) {
+            if (a[i] == b[i]) {
+                same++;
+            }
+        }
+        return same;
+    }
+
+    /**
+     * 获取所有版本的指纹
+     * <p>
+     * *第一次调用时会读取所有版本的内置ROM
+     *
+     * @return key: 版本，value: 指纹
+     */
+    public static Map<RomVersion, RomFingerprint> getIndex() {
+        return Index.INSTANCE;
+    }
+
+    /**
+     * 识别ROM的版本
+     *
+     * @param fingerprint ROM指纹
+     * @return 完全匹配或最接近的版本，没有任何相同的页时为null
+     */
+    @Nullable
+    public static Match match(@NotNull RomFingerprint fingerprint) {
+        Match best = null;
+        for (Map.Entry<RomVersion, RomFingerprint> entry : getIndex().entrySet()) {
+            double similarity = fingerprint.similarity(entry.getValue());
+            if (similarity == 1.0) {
+                return new Match(entry.getKey(), similarity);
+            }
+            if (similarity > 0.0 && (best == null || similarity > best.getSimilarity())) {
+                best = new Match(entry.getKey(), similarity);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 识别ROM文件的版本
+     *
+     * @param path ROM文件
+     * @return 完全匹配或最接近的版本，没有任何相同的页时为null
+     */
+    @Nullable
+    public static Match match(@NotNull Path path) throws IOException {
+        return match(of(path));
+    }
+
+    /**
+     * 识别结果
+     */
+    public static class Match {
+        @NotNull
+        private final RomVersion version;
+        /**
+         * 相似度，1.0为完全匹配
+         */
+        private final double similarity;
+
+        public Match(@NotNull RomVersion version, double similarity) {
+            this.version = version;
+            this.similarity = similarity;
+        }
+
+        @NotNull
+        public RomVersion getVersion() {
+            return version;
+        }
+
+        public double getSimilarity() {
+            return similarity;
+        }
+
+        /**
+         * @return 是否为完全匹配
+         */
+        public boolean isExact() {
+            return similarity == 1.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Match{version=%s, similarity=%.3f}", version.getName(), similarity);
+        }
+    }
+
+    /**
+     * 所有版本的指纹，第一次使用时创建
+     */
+    private static class Index {
+        private static final Map<RomVersion, RomFingerprint> INSTANCE = build();
+
+        private static Map<RomVersion, RomFingerprint> build() {
+            var index = new LinkedHashMap<RomVersion, RomFingerprint>();
+            for (RomVersion version : RomVersion.getVersions().values()) {
+                try (var inputStream = ResourceManager.getAsStream(version.getPath())) {
+                    if (inputStream != null) {
+                        index.put(version, of(new BufferedInputStream(inputStream)));
+                    }
+                } catch (IOException ignored) {
+                    // 无法读取的内置ROM不参与识别
+                }
+            }
+            return Map.copyOf(index);
+        }
+    }
+}
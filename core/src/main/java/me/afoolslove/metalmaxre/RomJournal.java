@@ -0,0 +1,245 @@
+package me.afoolslove.metalmaxre;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * ROM数据写入记录，用于撤销和重做
+ * <p>
+ * 记录按检查点（{@link #checkpoint()}、{@link RomBuffer#snapshot()}）分组，撤销和重做以组为单位
+ * <p>
+ * *连续写入的数据会合并为一条记录，占用的内存与被写入的字节数量成正比
+ * <p>
+ * *一组写入超出了限制时，无法再完整撤销，会清空所有撤销和重做的记录，直到下一个检查点前不再记录
+ *
+ * @author AFoolLove
+ */
+public class RomJournal {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RomJournal.class);
+
+    /**
+     * 记录最多占用的字节数量，超出后会移除最早的组
+     */
+    private final int limit;
+
+    private final Deque<List<Entry>> undoGroups = new ArrayDeque<>();
+    private final Deque<List<Entry>> redoGroups = new ArrayDeque<>();
+    /**
+     * 当前检查点之后的记录
+     */
+    private List<Entry> current = new ArrayList<>();
+    /**
+     * 当前组超出了限制，已清空所有记录，直到下一个检查点前不再记录
+     */
+    private boolean overflowed = false;
+    private long size = 0;
+
+    /**
+     * @param limit 记录最多占用的字节数量
+     */
+    public RomJournal(int limit) {
+        this.limit = limit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return 当前记录占用的字节数量
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * 结束当前组，之后的写入会记录到新的组
+     */
+    public synchronized void checkpoint() {
+        if (!current.isEmpty()) {
+            undoGroups.push(current);
+            current = new ArrayList<>();
+        }
+        overflowed = false;
+    }
+
+    /**
+     * @return 当前组是否超出了限制，超出后已清空所有记录，直到下一个检查点前不再记录
+     */
+    public synchronized boolean isOverflowed() {
+        return overflowed;
+    }
+
+    /**
+     * @return 是否可以撤销
+     */
+    public synchronized boolean canUndo() {
+        return !current.isEmpty() || !undoGroups.isEmpty();
+    }
+
+    /**
+     * @return 是否可以重做
+     */
+    public synchronized boolean canRedo() {
+        return !redoGroups.isEmpty();
+    }
+
+    /**
+     * 撤销最后一组写入，当前组不为空时撤销当前组
+     *
+     * @return 是否撤销了写入
+     */
+    public synchronized boolean undo() {
+        checkpoint();
+        var group = undoGroups.poll();
+        if (group == null) {
+            return false;
+        }
+        for (int i = group.size() - 1; i >= 0; i--) {
+            var entry = group.get(i);
+            entry.pages.putUnrecorded(entry.index, entry.oldBytes, 0x00000, entry.length);
+        }
+        redoGroups.push(group);
+        return true;
+    }
+
+    /**
+     * 重做最后一组被撤销的写入
+     *
+     * @return 是否重做了写入
+     */
+    public synchronized boolean redo() {
+        var group = redoGroups.poll();
+        if (group == null) {
+            return false;
+        }
+        checkpoint();
+        for (Entry entry : group) {
+            entry.pages.putUnrecorded(entry.index, entry.newBytes, 0x00000, entry.length);
+        }
+        undoGroups.push(group);
+        return true;
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public synchronized void clear() {
+        undoGroups.clear();
+        redoGroups.clear();
+        current = new ArrayList<>();
+        overflowed = false;
+        size = 0;
+    }
+
+    /**
+     * 记录一个字节的写入
+     */
+    synchronized void record(@NotNull RomPages pages, int index, byte oldByte, byte newByte) {
+        if (overflowed) {
+            return;
+        }
+        clearRedo();
+        var last = current.isEmpty() ? null : current.get(current.size() - 1);
+        if (last != null && last.pages == pages && last.index + last.length == index) {
+            last.append(oldByte, newByte);
+        } else {
+            var entry = new Entry(pages, index, 1);
+            entry.append(oldByte, newByte);
+            current.add(entry);
+        }
+        grow(2);
+    }
+
+    /**
+     * 记录多个字节的写入
+     */
+    synchronized void record(@NotNull RomPages pages, int index, byte[] oldBytes, byte[] newBytes, int offset, int length) {
+        if (overflowed || length <= 0) {
+            return;
+        }
+        clearRedo();
+        var last = current.isEmpty() ? null : current.get(current.size() - 1);
+        if (last == null || last.pages != pages || last.index + last.length != index) {
+            last = new Entry(pages, index, length);
+            current.add(last);
+        }
+        last.append(oldBytes, newBytes, offset, length);
+        grow(length * 2L);
+    }
+
+    /**
+     * 新的写入后不能再重做，移除重做的记录
+     */
+    private void clearRedo() {
+        while (!redoGroups.isEmpty()) {
+            for (Entry entry : redoGroups.pop()) {
+                size -= entry.length * 2L;
+            }
+        }
+    }
+
+    private void grow(long bytes) {
+        size += bytes;
+        while (size > limit && !undoGroups.isEmpty()) {
+            // 移除最早的组
+            for (Entry entry : undoGroups.removeLast()) {
+                size -= entry.length * 2L;
+            }
+        }
+        if (size > limit) {
+            // 当前组超出了限制，无法完整撤销
+            // 之前的组撤销后会与未记录的写入混合，同样清空
+            LOGGER.warn("写入记录超出了限制{}字节，已清空所有撤销和重做的记录", limit);
+            clear();
+            overflowed = true;
+        }
+    }
+
+    /**
+     * 一段连续的写入
+     */
+    private static class Entry {
+        private final RomPages pages;
+        private final int index;
+        private byte[] oldBytes;
+        private byte[] newBytes;
+        private int length = 0;
+
+        private Entry(@NotNull RomPages pages, int index, int capacity) {
+            this.pages = pages;
+            this.index = index;
+            this.oldBytes = new byte[capacity];
+            this.newBytes = new byte[capacity];
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > oldBytes.length) {
+                capacity = Math.max(capacity, oldBytes.length * 2);
+                oldBytes = Arrays.copyOf(oldBytes, capacity);
+                newBytes = Arrays.copyOf(newBytes, capacity);
+            }
+        }
+
+        private void append(byte oldByte, byte newByte) {
+            ensureCapacity(length + 1);
+            oldBytes[length] = oldByte;
+            newBytes[length] = newByte;
+            length++;
+        }
+
+        private void append(byte[] oldBytes, byte[] newBytes, int offset, int length) {
+            ensureCapacity(this.length + length);
+            System.arraycopy(oldBytes, 0x00000, this.oldBytes, this.length, length);
+            System.arraycopy(newBytes, offset, this.newBytes, this.length, length);
+            this.length += length;
+        }
+    }
+}
@@ -0,0 +1,757 @@
+package me.afoolslove.metalmaxre;
+
+import me.afoolslove.metalmaxre.utils.DataAddress;
+import me.afoolslove.metalmaxre.utils.RangeSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 按页（0x2000）储存的ROM数据
+ * <p>
+ * 只读的页为共享的源数据（如文件映射），写入时才会复制为私有页
+ * <p>
+ * 新的页（写入时复制、扩容）会根据 {@link #isDirect()} 分配在堆内存或堆外内存中
+ *
+ * @author AFoolLove
+ */
+public class RomPages {
+    /**
+     * 页的大小，与CHR ROM的一个bank相同，PRG ROM的一个bank为两页
+     */
+    public static final int PAGE_SIZE = 0x2000;
+    public static final int PAGE_SHIFT = 13;
+    public static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /**
+     * 以小端序读写页中的2字节数据
+     */
+    private static final VarHandle U16_LE = MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    /**
+     * 原子地修改被写入的位
+     */
+    private static final VarHandle DIRTY_WORD = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle DIRTY_PAGE = MethodHandles.arrayElementVarHandle(long[][].class);
+    /**
+     * 每页被写入的位需要的long数量
+     */
+    private static final int DIRTY_WORDS = PAGE_SIZE >>> 6;
+
+    /**
+     * 所有页，只读的页在写入前会被复制
+     */
+    private ByteBuffer[] pages;
+    private int capacity;
+    /**
+     * 新的页是否分配在堆外内存
+     */
+    private final boolean direct;
+    /**
+     * 共享的堆外内存，为null时没有
+     */
+    @Nullable
+    private final OffHeapRegion region;
+
+    /**
+     * 上次保存后被写入的字节，每页每个字节一位，该页第一次被写入时才分配
+     * <p>
+     * 写入时只设置对应的位，不加锁；获取被写入的范围时才合并为 {@link RangeSet}
+     */
+    private long[][] dirtyPages;
+
+    /**
+     * 写入记录，为null时不记录
+     */
+    @Nullable
+    private volatile RomJournal journal;
+
+    /**
+     * 访问追踪器，为null时不追踪
+     */
+    @Nullable
+    private volatile RomAccessTracer tracer;
+    private DataAddress.Type tracerType = DataAddress.Type.PRG;
+
+    private RomPages(@NotNull ByteBuffer[] pages, int capacity, boolean direct, @Nullable OffHeapRegion region) {
+        this.pages = pages;
+        this.capacity = capacity;
+        this.direct = direct;
+        this.region = region;
+        this.dirtyPages = new long[pages.length][];
+        if (region != null) {
+            region.attach(this);
+        }
+    }
+
+    /**
+     * 创建一个填充0x00的页数据
+     *
+     * @param capacity 数据大小
+     */
+    public static RomPages allocate(int capacity) {
+        var pages = new ByteBuffer[pageCount(capacity)];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = ByteBuffer.allocate(PAGE_SIZE);
+        }
+        return new RomPages(pages, capacity, false, null);
+    }
+
+    /**
+     * 将数据复制到堆外内存的页中，之后新的页也会分配在堆外内存
+     *
+     * @param source    源数据
+     * @param offset    数据在源数据中的起始位置
+     * @param length    数据长度
+     * @param region    复制到的堆外内存
+     * @param firstPage 使用堆外内存中的第一页
+     */
+    static RomPages copyDirect(@NotNull ByteBuffer source, int offset, int length, @NotNull OffHeapRegion region, int firstPage) {
+        var pages = new ByteBuffer[pageCount(length)];
+        for (int i = 0; i < pages.length; i++) {
+            int start = offset + (i << PAGE_SHIFT);
+            int available = Math.max(0, Math.min(PAGE_SIZE, source.limit() - start));
+            pages[i] = region.page(firstPage + i);
+            if (available > 0) {
+                pages[i].put(0x00000, source, start, available);
+            }
+        }
+        return new RomPages(pages, length, true, region);
+    }
+
+    /**
+     * 直接使用字节数组中的数据作为页，不会复制数据
+     *
+     * @param bytes  数据
+     * @param offset 数据在数组中的起始位置
+     * @param length 数据长度
+     */
+    public static RomPages wrap(byte[] bytes, int offset, int length) {
+        var pages = new ByteBuffer[pageCount(length)];
+        for (int i = 0; i < pages.length; i++) {
+            int start = offset + (i << PAGE_SHIFT);
+            int available = Math.max(0, Math.min(PAGE_SIZE, bytes.length - start));
+            if (available == PAGE_SIZE) {
+                pages[i] = ByteBuffer.wrap(bytes, start, PAGE_SIZE).slice();
+            } else {
+                // 数据不足一页，剩余部分使用0x00填充
+                pages[i] = ByteBuffer.allocate(PAGE_SIZE);
+                if (available > 0) {
+                    pages[i].put(0x00000, bytes, start, available);
+                }
+            }
+        }
+        return new RomPages(pages, length, false, null);
+    }
+
+    /**
+     * 将只读的数据（如文件映射）作为共享的源数据，写入时按页复制
+     *
+     * @param source 源数据
+     * @param offset 数据在源数据中的起始位置
+     * @param length 数据长度
+     */
+    public static RomPages share(@NotNull ByteBuffer source, int offset, int length) {
+        var pages = new ByteBuffer[pageCount(length)];
+        for (int i = 0; i < pages.length; i++) {
+            int start = offset + (i << PAGE_SHIFT);
+            int available = Math.max(0, Math.min(PAGE_SIZE, source.limit() - start));
+            if (available == PAGE_SIZE) {
+                pages[i] = source.slice(start, PAGE_SIZE).asReadOnlyBuffer();
+            } else {
+                pages[i] = ByteBuffer.allocate(PAGE_SIZE);
+                if (available > 0) {
+                    pages[i].put(0x00000, source, start, available);
+                }
+            }
+        }
+        return new RomPages(pages, length, false, null);
+    }
+
+    static int pageCount(int capacity) {
+        return (capacity + PAGE_MASK) >>> PAGE_SHIFT;
+    }
+
+    /**
+     * @return 新的页是否分配在堆外内存
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * 分配一个新的页
+     */
+    private ByteBuffer allocatePage() {
+        return direct ? ByteBuffer.allocateDirect(PAGE_SIZE) : ByteBuffer.allocate(PAGE_SIZE);
+    }
+
+    /**
+     * @return 数据大小
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 获取上次保存后被写入的范围
+     * <p>
+     * *每次获取时合并为新的集合，修改集合不会影响被写入的范围
+     *
+     * @return 被写入的范围
+     */
+    @NotNull
+    public RangeSet getDirtyRanges() {
+        var ranges = new RangeSet();
+        final long[][] dirtyPages = this.dirtyPages;
+        // 未结束的范围的起始位置
+        int start = -1;
+        for (int page = 0; page < dirtyPages.length; page++) {
+            var words = (long[]) DIRTY_PAGE.getVolatile(dirtyPages, page);
+            if (words == null) {
+                if (start >= 0) {
+                    ranges.add(start, page << PAGE_SHIFT);
+                    start = -1;
+                }
+                continue;
+            }
+            for (int word = 0; word < DIRTY_WORDS; word++) {
+                long value = (long) DIRTY_WORD.getVolatile(words, word);
+                final int base = (page << PAGE_SHIFT) + (word << 6);
+                for (int bit = 0; bit < 64; ) {
+                    // 查找下一个被写入或未被写入的位
+                    long rest = (start < 0 ? value : ~value) & (-1L << bit);
+                    if (rest == 0L) {
+                        break;
+                    }
+                    bit = Long.numberOfTrailingZeros(rest);
+                    if (start < 0) {
+                        start = base + bit;
+                    } else {
+                        ranges.add(start, base + bit);
+                        start = -1;
+                    }
+                }
+            }
+        }
+        if (start >= 0) {
+            ranges.add(start, dirtyPages.length << PAGE_SHIFT);
+        }
+        return ranges;
+    }
+
+    /**
+     * 清空被写入的范围，如：保存后
+     */
+    public synchronized void clearDirty() {
+        this.dirtyPages = new long[pages.length][];
+    }
+
+    /**
+     * 记录被写入的范围
+     */
+    private void markDirty(int start, int end) {
+        final long[][] dirtyPages = this.dirtyPages;
+        while (start < end) {
+            final int page = start >>> PAGE_SHIFT;
+            final int pageEnd = Math.min(end, (page + 1) << PAGE_SHIFT);
+            if (page >= dirtyPages.length) {
+                return;
+            }
+            var words = (long[]) DIRTY_PAGE.getVolatile(dirtyPages, page);
+            if (words == null) {
+                // 该页第一次被写入
+                words = new long[DIRTY_WORDS];
+                if (!DIRTY_PAGE.compareAndSet(dirtyPages, page, null, words)) {
+                    words = (long[]) DIRTY_PAGE.getVolatile(dirtyPages, page);
+                }
+            }
+            final int first = (start & PAGE_MASK) >>> 6;
+            final int last = ((pageEnd - 1) & PAGE_MASK) >>> 6;
+            for (int word = first; word <= last; word++) {
+                long mask = -1L;
+                if (word == first) {
+                    mask &= -1L << (start & 0x3F);
+                }
+                if (word == last) {
+                    mask &= -1L >>> (0x3F - ((pageEnd - 1) & 0x3F));
+                }
+                // 已经被标记时不再修改，避免多个线程争用
+                if (((long) DIRTY_WORD.getOpaque(words, word) & mask) != mask) {
+                    DIRTY_WORD.getAndBitwiseOr(words, word, mask);
+                }
+            }
+            start = pageEnd;
+        }
+    }
+
+    @Nullable
+    public RomJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * 设置写入记录
+     *
+     * @param journal 写入记录，为null时不记录
+     */
+    public void setJournal(@Nullable RomJournal journal) {
+        this.journal = journal;
+    }
+
+    @Nullable
+    public RomAccessTracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * 设置访问追踪器，需要开启 {@link RomAccessTracer#ENABLED}
+     *
+     * @param tracer 访问追踪器，为null时不追踪
+     * @param type   记录为PRG ROM或CHR ROM的访问
+     */
+    public void setTracer(@Nullable RomAccessTracer tracer, @NotNull DataAddress.Type type) {
+        this.tracerType = type;
+        this.tracer = tracer;
+    }
+
+    private void traceRead(int index, int length) {
+        if (RomAccessTracer.ENABLED) {
+            var tracer = this.tracer;
+            if (tracer != null) {
+                tracer.onRead(tracerType, index, length);
+            }
+        }
+    }
+
+    private void traceWrite(int index, int length) {
+        if (RomAccessTracer.ENABLED) {
+            var tracer = this.tracer;
+            if (tracer != null) {
+                tracer.onWrite(tracerType, index, length);
+            }
+        }
+    }
+
+    /**
+     * @return 页的数量
+     */
+    public int getPageCount() {
+        return pages.length;
+    }
+
+    /**
+     * @return 已被复制为私有的页数量
+     */
+    public int getPrivatePageCount() {
+        int count = 0;
+        for (ByteBuffer page : pages) {
+            if (!page.isReadOnly()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 获取可写入的页，如果该页为共享的只读页，复制后替换
+     */
+    private ByteBuffer writablePage(int page) {
+        var buffer = pages[page];
+        if (buffer.isReadOnly()) {
+            buffer = copyOnWrite(page);
+        }
+        return buffer;
+    }
+
+    private synchronized ByteBuffer copyOnWrite(int page) {
+        var buffer = pages[page];
+        if (buffer.isReadOnly()) {
+            var copy = allocatePage();
+            copy.put(0x00000, buffer, 0x00000, PAGE_SIZE);
+            pages[page] = buffer = copy;
+        }
+        return buffer;
+    }
+
+    /**
+     * 将所有共享的页复制为私有页，之后不再引用源数据
+     */
+    public synchronized void detach() {
+        for (int i = 0; i < pages.length; i++) {
+            copyOnWrite(i);
+        }
+    }
+
+    /**
+     * 创建当前数据的快照，快照与当前数据共享所有页，之后双方写入时才会复制被写入的页
+     * <p>
+     * *不要在写入数据的同时创建快照
+     *
+     * @return 快照
+     */
+    public synchronized RomPages snapshot() {
+        share();
+        return new RomPages(pages.clone(), capacity, direct, region);
+    }
+
+    /**
+     * 还原到快照的数据，与快照共享所有页
+     * <p>
+     * *与快照不同的页会被记录为被写入的范围
+     *
+     * @param snapshot 快照
+     */
+    public void restore(@NotNull RomPages snapshot) {
+        ByteBuffer[] snapshotPages;
+        int snapshotCapacity;
+        if (snapshot.region != null && snapshot.region != region) {
+            // 共享了其它ROM的堆外内存，随它一起释放
+            snapshot.region.attach(this);
+        }
+        synchronized (snapshot) {
+            snapshot.share();
+            snapshotPages = snapshot.pages.clone();
+            snapshotCapacity = snapshot.capacity;
+        }
+        synchronized (this) {
+            this.dirtyPages = Arrays.copyOf(dirtyPages, snapshotPages.length);
+            var oldPages = this.pages;
+            this.pages = snapshotPages;
+            this.capacity = snapshotCapacity;
+            for (int i = 0; i < snapshotPages.length; i++) {
+                if (i >= oldPages.length || oldPages[i] != snapshotPages[i]) {
+                    markDirty(i << PAGE_SHIFT, (i + 1) << PAGE_SHIFT);
+                }
+            }
+        }
+    }
+
+    /**
+     * 将另一份数据（如快照）中指定范围的数据写入到当前数据
+     * <p>
+     * *超出任意一方大小的部分会被忽略
+     *
+     * @param source 另一份数据
+     * @param ranges 写入的范围
+     */
+    public void merge(@NotNull RomPages source, @NotNull RangeSet ranges) {
+        byte[] tmp = null;
+        for (Map.Entry<Integer, Integer> entry : ranges.toMap().entrySet()) {
+            int start = entry.getKey();
+            int end = Math.min(entry.getValue(), Math.min(capacity(), source.capacity()));
+            if (start >= end) {
+                continue;
+            }
+            if (tmp == null || tmp.length < end - start) {
+                tmp = new byte[end - start];
+            }
+            source.peek(start, tmp, 0x00000, end - start);
+            put(start, tmp, 0x00000, end - start);
+        }
+    }
+
+    /**
+     * 将所有私有页变为共享的只读页
+     */
+    private void share() {
+        for (int i = 0; i < pages.length; i++) {
+            if (!pages[i].isReadOnly()) {
+                pages[i] = pages[i].asReadOnlyBuffer();
+            }
+        }
+    }
+
+    /**
+     * 变更数据大小，增加的部分使用0x00填充
+     * <p>
+     * *只会追加或移除末尾的页，不会复制已有的数据
+     *
+     * @param capacity 新的数据大小
+     */
+    public synchronized void resize(int capacity) {
+        int oldCount = pages.length;
+        int newCount = pageCount(capacity);
+        if (newCount != oldCount) {
+            pages = Arrays.copyOf(pages, newCount);
+            for (int i = oldCount; i < newCount; i++) {
+                pages[i] = allocatePage();
+            }
+            dirtyPages = Arrays.copyOf(dirtyPages, newCount);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * 在指定位置插入填充0x00的页，之后的页向后移动
+     * <p>
+     * *只会移动页的引用，不会复制数据
+     * <p>
+     * *插入位置之后的数据都会被记录为被写入的范围
+     *
+     * @param index  插入的位置，需要按页对齐
+     * @param length 插入的长度，需要按页对齐
+     */
+    public synchronized void insert(int index, int length) {
+        if (((index | length) & PAGE_MASK) != 0 || index < 0 || length < 0 || index > capacity) {
+            throw new IllegalArgumentException(String.format("insert pages out of range or unaligned: %05X+%05X", index, length));
+        }
+        int page = index >>> PAGE_SHIFT;
+        int count = length >>> PAGE_SHIFT;
+        var newPages = new ByteBuffer[pages.length + count];
+        System.arraycopy(pages, 0, newPages, 0, page);
+        for (int i = page; i < page + count; i++) {
+            newPages[i] = allocatePage();
+        }
+        System.arraycopy(pages, page, newPages, page + count, pages.length - page);
+        var newDirtyPages = new long[newPages.length][];
+        System.arraycopy(dirtyPages, 0, newDirtyPages, 0, page);
+        System.arraycopy(dirtyPages, page, newDirtyPages, page + count, dirtyPages.length - page);
+        this.pages = newPages;
+        this.dirtyPages = newDirtyPages;
+        this.capacity += length;
+        markDirty(index, capacity);
+    }
+
+    /**
+     * 移除指定位置的页，之后的页向前移动
+     * <p>
+     * *只会移动页的引用，不会复制数据
+     * <p>
+     * *移除位置之后的数据都会被记录为被写入的范围
+     *
+     * @param index  移除的位置，需要按页对齐
+     * @param length 移除的长度，需要按页对齐
+     */
+    public synchronized void remove(int index, int length) {
+        if (((index | length) & PAGE_MASK) != 0 || index < 0 || length < 0 || index + length > capacity) {
+            throw new IllegalArgumentException(String.format("remove pages out of range or unaligned: %05X+%05X", index, length));
+        }
+        int page = index >>> PAGE_SHIFT;
+        int count = length >>> PAGE_SHIFT;
+        var newPages = new ByteBuffer[pages.length - count];
+        System.arraycopy(pages, 0, newPages, 0, page);
+        System.arraycopy(pages, page + count, newPages, page, newPages.length - page);
+        var newDirtyPages = new long[newPages.length][];
+        System.arraycopy(dirtyPages, 0, newDirtyPages, 0, page);
+        System.arraycopy(dirtyPages, page + count, newDirtyPages, page, newDirtyPages.length - page);
+        this.pages = newPages;
+        this.dirtyPages = newDirtyPages;
+        this.capacity -= length;
+        markDirty(index, capacity);
+    }
+
+    /**
+     * 释放所有页，之后不能再读写数据
+     * <p>
+     * *只是不再引用这些页，不会立即释放内存；共享的堆外内存由 {@link RomBuffer#close()} 释放，
+     * 扩容和写入时复制的堆外内存的页由GC回收时释放
+     */
+    public synchronized void release() {
+        this.pages = new ByteBuffer[0];
+        this.capacity = 0;
+        this.dirtyPages = new long[0][];
+    }
+
+    public byte get(int index) {
+        traceRead(index, 1);
+        return peek(index);
+    }
+
+    public void get(int index, byte[] bytes, int offset, int length) {
+        traceRead(index, length);
+        peek(index, bytes, offset, length);
+    }
+
+    /**
+     * 读取数据，但不会被访问追踪器记录
+     */
+    private byte peek(int index) {
+        return pages[index >>> PAGE_SHIFT].get(index & PAGE_MASK);
+    }
+
+    private void peek(int index, byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            int inPage = index & PAGE_MASK;
+            int count = Math.min(length, PAGE_SIZE - inPage);
+            pages[index >>> PAGE_SHIFT].get(inPage, bytes, offset, count);
+            index += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * 复制所有数据到新的数组，不会被访问追踪器记录
+     *
+     * @return 所有数据
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[capacity];
+        peek(0x00000, bytes, 0x00000, capacity);
+        return bytes;
+    }
+
+    /**
+     * 以大端序读取一个char
+     */
+    public char getChar(int index) {
+        return (char) (((get(index) & 0xFF) << 8) | (get(index + 1) & 0xFF));
+    }
+
+    /**
+     * 以小端序读取一个无符号的2字节数据
+     */
+    public int getU16LE(int index) {
+        int inPage = index & PAGE_MASK;
+        if (inPage == PAGE_MASK) {
+            // 跨页
+            return (get(index) & 0xFF) | ((get(index + 1) & 0xFF) << 8);
+        }
+        traceRead(index, 2);
+        return (short) U16_LE.get(pages[index >>> PAGE_SHIFT], inPage) & 0xFFFF;
+    }
+
+    /**
+     * 以小端序读取多个无符号的2字节数据
+     */
+    public void getU16LE(int index, char[] chars, int offset, int length) {
+        for (int i = 0; i < length; i++, index += 2) {
+            chars[offset + i] = (char) getU16LE(index);
+        }
+    }
+
+    public void put(int index, byte b) {
+        var journal = this.journal;
+        if (journal != null) {
+            journal.record(this, index, peek(index), b);
+        }
+        traceWrite(index, 1);
+        writablePage(index >>> PAGE_SHIFT).put(index & PAGE_MASK, b);
+        markDirty(index, index + 1);
+    }
+
+    public void put(int index, byte[] bytes, int offset, int length) {
+        var journal = this.journal;
+        if (journal != null && length > 0) {
+            byte[] oldBytes = new byte[length];
+            peek(index, oldBytes, 0x00000, length);
+            journal.record(this, index, oldBytes, bytes, offset, length);
+        }
+        putUnrecorded(index, bytes, offset, length);
+    }
+
+    /**
+     * 写入数据，但不会被记录到写入记录中
+     */
+    void putUnrecorded(int index, byte[] bytes, int offset, int length) {
+        traceWrite(index, length);
+        markDirty(index, index + length);
+        while (length > 0) {
+            int inPage = index & PAGE_MASK;
+            int count = Math.min(length, PAGE_SIZE - inPage);
+            writablePage(index >>> PAGE_SHIFT).put(inPage, bytes, offset, count);
+            index += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * 以小端序写入一个2字节数据
+     */
+    public void putU16LE(int index, int value) {
+        int inPage = index & PAGE_MASK;
+        if (inPage == PAGE_MASK || journal != null) {
+            // 跨页或需要记录时按字节写入
+            put(index, new byte[]{(byte) value, (byte) (value >>> 8)}, 0x00000, 2);
+            return;
+        }
+        traceWrite(index, 2);
+        U16_LE.set(writablePage(index >>> PAGE_SHIFT), inPage, (short) value);
+        markDirty(index, index + 2);
+    }
+
+    /**
+     * 以小端序写入多个2字节数据
+     */
+    public void putU16LE(int index, char[] chars, int offset, int length) {
+        byte[] bytes = new byte[length * 2];
+        for (int i = 0; i < length; i++) {
+            bytes[i * 2] = (byte) chars[offset + i];
+            bytes[i * 2 + 1] = (byte) (chars[offset + i] >>> 8);
+        }
+        put(index, bytes, 0x00000, bytes.length);
+    }
+
+    /**
+     * 以大端序写入一个char
+     */
+    public void putChar(int index, char c) {
+        put(index, (byte) (c >>> 8));
+        put(index + 1, (byte) c);
+    }
+
+    /**
+     * 以大端序写入一个int
+     */
+    public void putInt(int index, int n) {
+        put(index, (byte) (n >>> 24));
+        put(index + 1, (byte) (n >>> 16));
+        put(index + 2, (byte) (n >>> 8));
+        put(index + 3, (byte) n);
+    }
+
+    /**
+     * 将所有数据写入到输出流
+     *
+     * @param outputStream 输出流
+     */
+    public void writeTo(@NotNull OutputStream outputStream) throws IOException {
+        byte[] tmp = null;
+        for (int i = 0, remaining = capacity; remaining > 0; i++, remaining -= PAGE_SIZE) {
+            var page = pages[i];
+            int length = Math.min(PAGE_SIZE, remaining);
+            if (page.hasArray()) {
+                outputStream.write(page.array(), page.arrayOffset(), length);
+            } else {
+                if (tmp == null) {
+                    tmp = new byte[PAGE_SIZE];
+                }
+                page.get(0x00000, tmp, 0x00000, length);
+                outputStream.write(tmp, 0x00000, length);
+            }
+        }
+    }
+
+    /**
+     * 将数据写入到文件的指定位置
+     *
+     * @param channel  文件
+     * @param position 写入到文件的位置
+     * @param index    数据的起始位置
+     * @param length   数据的长度
+     * @return 写入后文件的位置
+     */
+    public long write(@NotNull FileChannel channel, long position, int index, int length) throws IOException {
+        while (length > 0) {
+            int inPage = index & PAGE_MASK;
+            int count = Math.min(length, PAGE_SIZE - inPage);
+            var src = pages[index >>> PAGE_SHIFT].slice(inPage, count);
+            while (src.hasRemaining()) {
+                position += channel.write(src, position);
+            }
+            index += count;
+            length -= count;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,236 @@
+package me.afoolslove.metalmaxre;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.DosFileAttributeView;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * 在后台线程保存ROM
+ * <p>
+ * 保存时在调用线程创建ROM的快照，后台线程将快照写入同目录下的临时文件，
+ * 强制写入磁盘后再替换目标文件，保存失败时不会损坏原文件
+ * <p>
+ * *替换文件不会修改 {@link RomBuffer.StorageType#MAPPED} 映射的源文件的数据，ROM和快照继续读取替换前的数据
+ * <p>
+ * *创建快照不会影响ROM的写入记录（{@link RomJournal}），不会结束当前的撤销组
+ * <p>
+ * *同一个文件的多次保存还未开始写入时会合并，只写入最后一次保存时的数据
+ *
+ * @author AFoolLove
+ */
+public class RomSaver implements AutoCloseable {
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "RomSaver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 还未开始写入的保存
+     * <p>
+     * key: 文件
+     * value: 保存
+     */
+    private final Map<Path, PendingSave> pendingSaves = new HashMap<>();
+
+    /**
+     * 保存ROM到文件
+     *
+     * @param buffer ROM
+     * @param path   文件
+     * @return 写入完成后完成，值为文件的路径
+     */
+    public CompletableFuture<Path> save(@NotNull RomBuffer buffer, @NotNull Path path) {
+        var target = path.toAbsolutePath().normalize();
+        var snapshot = buffer.snapshotWithoutCheckpoint();
+        synchronized (pendingSaves) {
+            var pendingSave = pendingSaves.get(target);
+            if (pendingSave != null) {
+                // 还未开始写入，替换为最新的数据
+                pendingSave.snapshot = snapshot;
+                return pendingSave.future;
+            }
+            var newPendingSave = new PendingSave(snapshot);
+            pendingSaves.put(target, newPendingSave);
+            try {
+                executor.execute(() -> write(target, newPendingSave));
+            } catch (RuntimeException e) {
+                pendingSaves.remove(target);
+                newPendingSave.future.completeExceptionally(e);
+            }
+            return newPendingSave.future;
+        }
+    }
+
+    private void write(@NotNull Path path, @NotNull PendingSave pendingSave) {
+        RomBuffer snapshot;
+        synchronized (pendingSaves) {
+            // 开始写入后的保存不再合并到这次保存
+            pendingSaves.remove(path);
+            snapshot = pendingSave.snapshot;
+        }
+        try {
+            saveAtomically(snapshot, path);
+            pendingSave.future.complete(path);
+        } catch (Throwable e) {
+            pendingSave.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 将ROM写入同目录下的临时文件，强制写入磁盘后替换目标文件
+     * <p>
+     * *文件系统不支持原子替换时，使用普通的替换
+     *
+     * @param buffer ROM
+     * @param path   文件
+     */
+    public static void saveAtomically(@NotNull RomBuffer buffer, @NotNull Path path) throws IOException {
+        replaceAtomically(path, buffer::save);
+    }
+
+    /**
+     * 写入同目录下的临时文件，强制写入磁盘后替换目标文件
+     * <p>
+     * 目标文件已存在时，临时文件使用目标文件的权限、所有者和属性，替换后不会改变；否则和普通创建的文件相同
+     * <p>
+     * *文件系统不支持原子替换时，使用普通的替换
+     *
+     * @param path   文件
+     * @param writer 写入临时文件
+     */
+    static void replaceAtomically(@NotNull Path path, @NotNull ChannelWriter writer) throws IOException {
+        var directory = path.toAbsolutePath().getParent();
+        if (Files.notExists(directory)) {
+            Files.createDirectories(directory);
+        }
+        var temp = createTempFile(directory, path.getFileName().toString());
+        try {
+            if (Files.exists(path)) {
+                copyAttributes(path, temp);
+            }
+            try (FileChannel channel = FileChannel.open(temp, WRITE)) {
+                writer.write(channel);
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, path, ATOMIC_MOVE, REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 创建临时文件
+     * <p>
+     * *{@link Files#createTempFile(Path, String, String, FileAttribute[])} 创建的文件只有当前用户可以读写，
+     * 这里使用和普通创建的文件相同的权限
+     */
+    private static Path createTempFile(@NotNull Path directory, @NotNull String name) throws IOException {
+        while (true) {
+            var temp = directory.resolve(String.format("%s.%016X.tmp", name, RANDOM.nextLong()));
+            try {
+                return Files.createFile(temp);
+            } catch (FileAlreadyExistsException ignored) {
+                // 重新生成文件名
+            }
+        }
+    }
+
+    /**
+     * 复制文件的权限、所有者和属性
+     */
+    private static void copyAttributes(@NotNull Path source, @NotNull Path target) throws IOException {
+        var posix = Files.getFileAttributeView(source, PosixFileAttributeView.class);
+        if (posix != null) {
+            var attributes = posix.readAttributes();
+            var targetView = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+            try {
+                targetView.setGroup(attributes.group());
+                targetView.setOwner(attributes.owner());
+            } catch (IOException ignored) {
+                // 没有权限时保持当前用户为所有者
+            }
+            // 变更所有者后再设置权限
+            targetView.setPermissions(attributes.permissions());
+            return;
+        }
+
+        var acl = Files.getFileAttributeView(source, AclFileAttributeView.class);
+        if (acl != null) {
+            try {
+                Files.getFileAttributeView(target, AclFileAttributeView.class).setAcl(acl.getAcl());
+            } catch (IOException ignored) {
+                // 没有权限时使用目录的默认权限
+            }
+        }
+        var dos = Files.getFileAttributeView(source, DosFileAttributeView.class);
+        if (dos != null) {
+            var attributes = dos.readAttributes();
+            var targetView = Files.getFileAttributeView(target, DosFileAttributeView.class);
+            targetView.setHidden(attributes.isHidden());
+            targetView.setSystem(attributes.isSystem());
+            targetView.setArchive(attributes.isArchive());
+        }
+    }
+
+    /**
+     * 等待所有保存完成后关闭
+     * <p>
+     * *等待时被中断会保留线程的中断状态并立即返回，未完成的保存会继续在后台写入
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 写入文件
+     */
+    @FunctionalInterface
+    interface ChannelWriter {
+        void write(@NotNull FileChannel channel) throws IOException;
+    }
+
+    /**
+     * 还未开始写入的保存
+     */
+    private static class PendingSave {
+        private final CompletableFuture<Path> future = new CompletableFuture<>();
+        private RomBuffer snapshot;
+
+        private PendingSave(@NotNull RomBuffer snapshot) {
+            this.snapshot = snapshot;
+        }
+    }
+}
@@ -4,7 +4,9 @@ import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import me.afoolslove.metalmaxre.utils.ResourceManager;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -77,6 +79,10 @@ public class RomVersion {
     private final int size;
     private final String description;
     private final List<String> modifyRecords;
+    /**
+     * 内置ROM的数据，第一次使用时读取
+     */
+    private transient volatile ByteBuffer builtinRom;
 
     public RomVersion(String name, String path, int size, String description, List<String> modifyRecords) {
         this.name = name;
@@ -106,6 +112,33 @@ public class RomVersion {
         return modifyRecords;
     }
 
+    /**
+     * 获取内置ROM的数据，第一次使用时读取，之后所有实例共享同一份数据
+     * <p>
+     * *数据为只读，需要写入时复制
+     * <p>
+     * *只共享ROM的原始数据，编辑器读取的数据（如物品、地图）仍由每个实例的编辑器各自加载
+     *
+     * @return 内置ROM的数据，不存在时为null
+     */
+    @Nullable
+    public ByteBuffer getBuiltinRom() {
+        var builtinRom = this.builtinRom;
+        if (builtinRom == null) {
+            synchronized (this) {
+                builtinRom = this.builtinRom;
+                if (builtinRom == null) {
+                    var bytes = ResourceManager.getAsBytes(getPath());
+                    if (bytes == null) {
+                        return null;
+                    }
+                    this.builtinRom = builtinRom = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+                }
+            }
+        }
+        return builtinRom.duplicate();
+    }
+
     public String getId() {
         return idFromInstance(this);
     }
@@ -0,0 +1,126 @@
+package me.afoolslove.metalmaxre;
+
+import me.afoolslove.metalmaxre.utils.DataAddress;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * 固定长度的结构数据表视图
+ * <p>
+ * 创建时一次读取整个区域，之后按 记录*结构长度+字段偏移 访问，修改后使用 {@link #write(RomBuffer)} 一次写回
+ * <p>
+ * e.g: 地图、X、Y、物品 为一条记录时，结构长度为4，字段偏移分别为0、1、2、3
+ *
+ * @author AFoolLove
+ */
+public class StructView {
+    private static final VarHandle U16_LE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+
+    @NotNull
+    private final DataAddress address;
+    /**
+     * 一条记录的长度
+     */
+    private final int stride;
+    private final int count;
+    private final byte[] data;
+
+    private StructView(@NotNull DataAddress address, int stride, int count, byte[] data) {
+        this.address = address;
+        this.stride = stride;
+        this.count = count;
+        this.data = data;
+    }
+
+    /**
+     * 读取地址中的结构数据表
+     *
+     * @param buffer  ROM
+     * @param address 数据表的起始地址
+     * @param stride  一条记录的长度
+     * @param count   记录的数量
+     * @return 结构数据表视图
+     */
+    public static StructView read(@NotNull RomBuffer buffer, @NotNull DataAddress address, int stride, int count) {
+        byte[] data = new byte[stride * count];
+        buffer.get(address, data);
+        return new StructView(address, stride, count, data);
+    }
+
+    @NotNull
+    public DataAddress getAddress() {
+        return address;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    private int indexOf(int record, int field) {
+        return record * stride + field;
+    }
+
+    public byte get(int record, int field) {
+        return data[indexOf(record, field)];
+    }
+
+    public int getU8(int record, int field) {
+        return data[indexOf(record, field)] & 0xFF;
+    }
+
+    public int getU16LE(int record, int field) {
+        return (short) U16_LE.get(data, indexOf(record, field)) & 0xFFFF;
+    }
+
+    /**
+     * 读取所有记录中的同一个字段
+     *
+     * @param field 字段偏移
+     * @param bytes 读取到的数组，长度不能小于记录的数量
+     */
+    public void getColumn(int field, byte[] bytes) {
+        for (int record = 0, index = field; record < count; record++, index += stride) {
+            bytes[record] = data[index];
+        }
+    }
+
+    /**
+     * 以小端序读取所有记录中的同一个2字节字段
+     *
+     * @param field 字段偏移
+     * @param chars 读取到的数组，长度不能小于记录的数量
+     */
+    public void getU16LEColumn(int field, char[] chars) {
+        for (int record = 0, index = field; record < count; record++, index += stride) {
+            chars[record] = (char) (short) U16_LE.get(data, index);
+        }
+    }
+
+    public void put(int record, int field, byte value) {
+        data[indexOf(record, field)] = value;
+    }
+
+    public void putU8(int record, int field, int value) {
+        data[indexOf(record, field)] = (byte) value;
+    }
+
+    public void putU16LE(int record, int field, int value) {
+        U16_LE.set(data, indexOf(record, field), (short) value);
+    }
+
+    /**
+     * 将所有记录写回ROM
+     *
+     * @param buffer ROM
+     */
+    public void write(@NotNull RomBuffer buffer) {
+        buffer.put(address, data);
+    }
+}
@@ -14,6 +14,7 @@ public abstract class AbstractEditor implements IRomEditor {
     private final MetalMaxRe metalMaxRe;
     private boolean enabled = true;
     private int position = 0;
+    private volatile boolean dirty = true;
 
     protected AbstractEditor(@NotNull MetalMaxRe metalMaxRe) {
         this.metalMaxRe = metalMaxRe;
@@ -43,6 +44,16 @@ public abstract class AbstractEditor implements IRomEditor {
         return enabled;
     }
 
+    @Override
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    @Override
+    public void setDirty(boolean dirty) {
+        this.dirty = dirty;
+    }
+
     /**
      * 获取当前编辑器的RomBuffer的位置
      * <p>
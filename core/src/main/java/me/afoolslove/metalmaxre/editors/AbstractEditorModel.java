@@ -0,0 +1,44 @@
+package me.afoolslove.metalmaxre.editors;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 编辑器的数据
+ * <p>
+ * 通过方法修改数据后，会标记所属的编辑器已被修改（{@link IRomEditor#setDirty(boolean)}）
+ * <p>
+ * *直接修改字段时不会标记
+ *
+ * @author AFoolLove
+ */
+public abstract class AbstractEditorModel {
+    /**
+     * 所属的编辑器
+     */
+    @Nullable
+    private IRomEditor editor;
+
+    @Nullable
+    public IRomEditor getEditor() {
+        return editor;
+    }
+
+    /**
+     * 设置所属的编辑器
+     *
+     * @param editor 所属的编辑器，为null时不再标记
+     */
+    public void setEditor(@Nullable IRomEditor editor) {
+        this.editor = editor;
+    }
+
+    /**
+     * 标记所属的编辑器已被修改
+     */
+    protected void markDirty() {
+        var editor = this.editor;
+        if (editor != null) {
+            editor.setDirty(true);
+        }
+    }
+}
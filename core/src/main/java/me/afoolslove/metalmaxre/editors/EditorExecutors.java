@@ -0,0 +1,123 @@
+package me.afoolslove.metalmaxre.editors;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 加载或应用编辑器数据的线程池
+ * <p>
+ * 所有 {@link EditorManagerImpl} 默认共用 {@link #shared()}，打开再多的ROM线程数量也不会增加
+ * <p>
+ * *设置 {@code -Dmetalmaxre.virtualThreads=true} 后共用线程池为每个任务一个虚拟线程，需要Java21及以上，否则使用普通线程池
+ *
+ * @author AFoolLove
+ */
+public final class EditorExecutors {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EditorExecutors.class);
+
+    /**
+     * 共用线程池使用虚拟线程
+     */
+    public static final boolean VIRTUAL_THREADS = Boolean.getBoolean("metalmaxre.virtualThreads");
+
+    private EditorExecutors() {
+    }
+
+    /**
+     * 获取共用的线程池
+     * <p>
+     * *不能关闭该线程池
+     *
+     * @return 共用的线程池
+     */
+    @NotNull
+    public static ExecutorService shared() {
+        return SharedHolder.EXECUTOR;
+    }
+
+    /**
+     * 创建一个每个任务一个虚拟线程的线程池
+     *
+     * @return 线程池，当前Java版本不支持虚拟线程时为null
+     */
+    @Nullable
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (VirtualHolder.FACTORY == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) VirtualHolder.FACTORY.invokeExact();
+        } catch (Throwable e) {
+            LOGGER.warn("创建虚拟线程池失败", e);
+            return null;
+        }
+    }
+
+    /**
+     * 创建一个固定线程数量的线程池，线程空闲后自动结束
+     *
+     * @param threads 线程数量
+     * @return 线程池
+     */
+    @NotNull
+    public static ExecutorService newFixedDaemonExecutor(int threads) {
+        var executor = new ThreadPoolExecutor(threads, threads,
+                30L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new DaemonThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static class SharedHolder {
+        private static final ExecutorService EXECUTOR = create();
+
+        private static ExecutorService create() {
+            if (VIRTUAL_THREADS) {
+                var executor = newVirtualThreadPerTaskExecutor();
+                if (executor != null) {
+                    return executor;
+                }
+                LOGGER.warn("当前Java版本不支持虚拟线程，使用普通线程池");
+            }
+            return newFixedDaemonExecutor(Runtime.getRuntime().availableProcessors() + 1);
+        }
+    }
+
+    private static class VirtualHolder {
+        /**
+         * {@code Executors.newVirtualThreadPerTaskExecutor()}，不支持时为null
+         */
+        private static final MethodHandle FACTORY = find();
+
+        private static MethodHandle find() {
+            try {
+                return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                        MethodType.methodType(ExecutorService.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                return null;
+            }
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private static final AtomicInteger POOL_NUMBER = new AtomicInteger(1);
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+        private final String prefix = "editor-" + POOL_NUMBER.getAndIncrement() + "-";
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            var thread = new Thread(runnable, prefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package me.afoolslove.metalmaxre.editors;
+
+import me.afoolslove.metalmaxre.RomBuffer;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编辑器的加载或应用方法的调用器
+ * <p>
+ * 注册时将方法转换为 {@link MethodHandle}，第一次调用时绑定编辑器实例和参数，之后的调用不再使用反射和创建参数数组
+ * <p>
+ * *注册或注销编辑器后需要 {@link #unbind()}，下一次调用时重新获取参数中的编辑器
+ *
+ * @author AFoolLove
+ */
+class EditorInvoker {
+    private static final MethodType INVOKE_TYPE = MethodType.methodType(void.class);
+
+    @NotNull
+    private final Method method;
+    /**
+     * 未绑定参数的方法
+     */
+    @NotNull
+    private final MethodHandle handle;
+    /**
+     * 前置编辑器，参数中没有 {@link Editor.QuoteOnly} 注解的编辑器
+     */
+    @NotNull
+    private final Set<Class<? extends IRomEditor>> dependencies;
+    /**
+     * 参数中所有的编辑器，包括只是引用的编辑器
+     */
+    @NotNull
+    private final Set<Class<? extends IRomEditor>> parameters;
+    /**
+     * 绑定了编辑器实例和参数的方法
+     */
+    private volatile MethodHandle bound;
+
+    private EditorInvoker(@NotNull Method method, @NotNull MethodHandle handle,
+                          @NotNull Set<Class<? extends IRomEditor>> dependencies,
+                          @NotNull Set<Class<? extends IRomEditor>> parameters) {
+        this.method = method;
+        this.handle = handle;
+        this.dependencies = dependencies;
+        this.parameters = parameters;
+    }
+
+    /**
+     * 创建方法的调用器
+     *
+     * @param method 加载或应用方法
+     * @return 调用器
+     * @throws IllegalAccessException 无法访问该方法
+     */
+    @SuppressWarnings("unchecked")
+    static EditorInvoker of(@NotNull Method method) throws IllegalAccessException {
+        // 将参数中的编辑器作为前置编辑器，带有@Editor.QuoteOnly注解只是引用，不算作前置
+        var dependencies = new LinkedHashSet<Class<? extends IRomEditor>>();
+        var parameters = new LinkedHashSet<Class<? extends IRomEditor>>();
+        var parameterTypes = method.getParameterTypes();
+        var parameterAnnotations = method.getParameterAnnotations();
+        pars:
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (!IRomEditor.class.isAssignableFrom(parameterTypes[i])) {
+                // 参数仅针对编辑器
+                continue;
+            }
+            parameters.add((Class<? extends IRomEditor>) parameterTypes[i]);
+            for (Annotation annotation : parameterAnnotations[i]) {
+                if (annotation instanceof Editor.QuoteOnly) {
+                    // 只引用，不算作前置
+                    continue pars;
+                }
+            }
+            dependencies.add((Class<? extends IRomEditor>) parameterTypes[i]);
+        }
+        return new EditorInvoker(method, MethodHandles.lookup().unreflect(method),
+                Collections.unmodifiableSet(dependencies), Collections.unmodifiableSet(parameters));
+    }
+
+    @NotNull
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * @return 前置编辑器
+     */
+    @NotNull
+    public Set<Class<? extends IRomEditor>> getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * @return 参数中所有的编辑器，前置编辑器在前
+     */
+    @NotNull
+    public Set<Class<? extends IRomEditor>> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * 调用方法
+     *
+     * @param editors 所有编辑器，用于获取参数中的编辑器
+     * @param editor  编辑器实例
+     * @throws InvocationTargetException 方法抛出了异常
+     */
+    public void invoke(@NotNull Map<Class<? extends IRomEditor>, IRomEditor> editors, @NotNull IRomEditor editor) throws InvocationTargetException {
+        var bound = this.bound;
+        if (bound == null) {
+            bound = bind(editors, editor);
+        }
+        try {
+            bound.invokeExact();
+        } catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private MethodHandle bind(@NotNull Map<Class<? extends IRomEditor>, IRomEditor> editors, @NotNull IRomEditor editor) {
+        boolean resolved = true;
+        var parameterTypes = method.getParameterTypes();
+        Object[] pars = new Object[parameterTypes.length + 1];
+        pars[0] = editor;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            var parameterType = parameterTypes[i];
+            if (RomBuffer.class.isAssignableFrom(parameterType)) {
+                pars[i + 1] = editor.getBuffer();
+                continue;
+            }
+            if (!IRomEditor.class.isAssignableFrom(parameterType)) {
+                // 错误的参数，参数只能是编辑器
+                continue;
+            }
+            pars[i + 1] = editors.get(parameterType);
+            if (pars[i + 1] == null) {
+                // 编辑器还未注册，下次调用时重新获取
+                resolved = false;
+            }
+        }
+        var bound = MethodHandles.insertArguments(handle, 0, pars).asType(INVOKE_TYPE);
+        if (resolved) {
+            this.bound = bound;
+        }
+        return bound;
+    }
+
+    /**
+     * 解除绑定的参数
+     */
+    public void unbind() {
+        this.bound = null;
+    }
+}
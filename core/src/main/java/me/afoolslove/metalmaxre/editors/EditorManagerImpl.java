@@ -1,6 +1,8 @@
 package me.afoolslove.metalmaxre.editors;
 
+import me.afoolslove.metalmaxre.EditorRomBufferWrapper;
 import me.afoolslove.metalmaxre.MetalMaxRe;
+import me.afoolslove.metalmaxre.RomAccessTracer;
 import me.afoolslove.metalmaxre.RomBuffer;
 import me.afoolslove.metalmaxre.editors.computer.ComputerEditorImpl;
 import me.afoolslove.metalmaxre.editors.computer.IComputerEditor;
@@ -41,8 +43,9 @@ import me.afoolslove.metalmaxre.editors.treasure.TreasureEditorImpl;
 import me.afoolslove.metalmaxre.event.editors.editor.EditorApplyEvent;
 import me.afoolslove.metalmaxre.event.editors.editor.EditorLoadEvent;
 import me.afoolslove.metalmaxre.event.editors.editor.EditorManagerEvent;
-import me.afoolslove.metalmaxre.utils.SingleMapEntry;
+import me.afoolslove.metalmaxre.utils.RangeSet;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,26 +62,87 @@ import java.util.function.Function;
  */
 public class EditorManagerImpl implements IEditorManager {
     private static final Logger LOGGER = LoggerFactory.getLogger(EditorManagerImpl.class);
+    /**
+     * 未开启追踪时读取和写入的字节数量，所有编辑器共用
+     */
+    private static final long[] NO_TRACED_BYTES = {0L, 0L};
     private final MetalMaxRe metalMaxRe;
 
     private final Map<Class<? extends IRomEditor>, IRomEditor> editors = new LinkedHashMap<>();
 
     private final Map<Class<? extends IRomEditor>, Function<MetalMaxRe, ? extends IRomEditor>> editorBuilders = new ConcurrentHashMap<>();
 
-    private final Map<Class<? extends IRomEditor>, Method> loadMethods = new ConcurrentHashMap<>();
-    private final Map<Class<? extends IRomEditor>, Method> applyMethods = new ConcurrentHashMap<>();
+    private final Map<Class<? extends IRomEditor>, EditorInvoker> loadMethods = new ConcurrentHashMap<>();
+    private final Map<Class<? extends IRomEditor>, EditorInvoker> applyMethods = new ConcurrentHashMap<>();
+
+    /**
+     * 按前置关系加载或应用编辑器，注册或注销编辑器后重新创建
+     */
+    private EditorScheduler loadScheduler;
+    private EditorScheduler applyScheduler;
+    /**
+     * 上一次加载或应用所有编辑器的关键路径
+     */
+    private volatile List<Class<? extends IRomEditor>> criticalPath = List.of();
+
+    /**
+     * 延迟加载，获取编辑器时才加载该编辑器和它的前置编辑器
+     */
+    private volatile boolean lazyLoad = false;
+    /**
+     * 已加载的编辑器
+     */
+    private final Set<Class<? extends IRomEditor>> loadedEditors = ConcurrentHashMap.newKeySet();
+    /**
+     * 正在延迟加载的编辑器，加载完毕后移除
+     */
+    private final Map<Class<? extends IRomEditor>, LazyLoad> lazyLoads = new ConcurrentHashMap<>();
+    /**
+     * key: 等待其它线程延迟加载编辑器的线程
+     * value: 等待的加载
+     * <p>
+     * *只能在持有自身的锁时修改，用于避免互相等待
+     */
+    private final Map<Thread, LazyLoad> lazyLoadWaits = new HashMap<>();
+    /**
+     * 只应用被修改的编辑器和使用了它们的编辑器
+     */
+    private volatile boolean applyDirtyOnly = false;
+    /**
+     * 应用所有编辑器时，同时应用的编辑器写入了相同范围的处理方式
+     */
+    private volatile WriteConflictPolicy writeConflictPolicy = WriteConflictPolicy.IGNORE;
+    /**
+     * 创建覆盖层和合并覆盖层时不能有其它写入
+     */
+    private final Object overlayLock = new Object();
+    /**
+     * 编辑器的加载和应用记录
+     */
+    private final Map<Class<? extends IRomEditor>, EditorMetrics> metrics = new ConcurrentHashMap<>();
 
     /**
      * 加载或应用编辑器数据
      */
-    private final ExecutorService EDITOR_EXECUTOR = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() + 1);
+    private final ExecutorService EDITOR_EXECUTOR;
     /**
-     * 调用加载或应用编辑器数据，同时只能进行一个，所以单线程
+     * 加载或应用所有编辑器，同时只能进行一个，所以排在上一个完成之后
      */
-    private final ExecutorService LOAD_OR_APPLY_EXECUTOR = Executors.newSingleThreadExecutor();
+    private CompletableFuture<?> loadOrApplyTail = CompletableFuture.completedFuture(null);
+    private volatile boolean closed = false;
 
     public EditorManagerImpl(@NotNull MetalMaxRe metalMaxRe) {
+        this(metalMaxRe, null);
+    }
+
+    /**
+     * @param metalMaxRe     实例
+     * @param editorExecutor 加载或应用编辑器数据的线程池，为null时使用 {@link EditorExecutors#shared()}
+     *                       *不会被关闭，由调用者管理
+     */
+    public EditorManagerImpl(@NotNull MetalMaxRe metalMaxRe, @Nullable ExecutorService editorExecutor) {
         this.metalMaxRe = metalMaxRe;
+        this.EDITOR_EXECUTOR = editorExecutor != null ? editorExecutor : EditorExecutors.shared();
     }
 
     @Override
@@ -110,7 +174,7 @@ public class EditorManagerImpl implements IEditorManager {
         register(IElevatorEditor.class, ElevatorEditorImpl::new);
         register(ISpriteScriptEditor.class, SpriteScriptEditorImpl::new);
 
-        getEditor(MonsterModelImpl.class).setEnabled(false); // TODO 怪物模型编辑器暂时不进行写入
+        editors.get(MonsterModelImpl.class).setEnabled(false); // TODO 怪物模型编辑器暂时不进行写入
     }
 
 
@@ -167,8 +231,26 @@ public class EditorManagerImpl implements IEditorManager {
             return;
         }
 
-        loadMethods.put(editorType, loadMethod);
-        applyMethods.put(editorType, applyMethod);
+        try {
+            loadMethods.put(editorType, EditorInvoker.of(loadMethod));
+            applyMethods.put(editorType, EditorInvoker.of(applyMethod));
+        } catch (IllegalAccessException e) {
+            loadMethods.remove(editorType);
+            LOGGER.warn("{}无法访问加载或应用ROM数据方法", editor.getClass(), e);
+        }
+        // 参数中的编辑器可能已变更
+        unbindInvokers();
+    }
+
+    /**
+     * 解除所有调用器绑定的参数，并重新创建编辑器的前置关系
+     */
+    private void unbindInvokers() {
+        loadMethods.values().forEach(EditorInvoker::unbind);
+        applyMethods.values().forEach(EditorInvoker::unbind);
+        // 编辑器的前置关系已变更
+        loadScheduler = null;
+        applyScheduler = null;
     }
 
     @SuppressWarnings("unchecked")
@@ -234,221 +316,384 @@ public class EditorManagerImpl implements IEditorManager {
         editorBuilders.remove(editorType);
         loadMethods.remove(editorType);
         applyMethods.remove(editorType);
-        return editors.remove(editorType);
+        var editor = editors.remove(editorType);
+        loadedEditors.remove(editorType);
+        // 参数中的编辑器可能已变更
+        unbindInvokers();
+        return editor;
     }
 
-    @Override
-    public synchronized Future<?> loadEditors() {
-        // call event
-        getMetalMaxRe().getEventHandler().callEvent(new EditorManagerEvent.Pre(metalMaxRe));
-        return LOAD_OR_APPLY_EXECUTOR.submit(() -> {
-            var editors = new LinkedList<Set<SingleMapEntry<Class<? extends IRomEditor>, Method>>>();
-            editors.addFirst(new HashSet<>());
-            for (var entry : loadMethods.entrySet()) {
-                editors.getFirst().add(SingleMapEntry.create(entry));
-            }
+    /**
+     * 设置延迟加载
+     * <p>
+     * 开启后 {@link #loadEditors()} 不再加载编辑器，{@link #getEditor(Class)} 第一次获取编辑器时才加载该编辑器和它加载方法参数中的编辑器，
+     * {@link #applyEditors()} 只应用已加载的编辑器，应用前会先加载它们应用方法参数中还未加载的编辑器
+     *
+     * @param lazyLoad 是否延迟加载
+     */
+    public void setLazyLoad(boolean lazyLoad) {
+        this.lazyLoad = lazyLoad;
+    }
 
-            // 无序的编辑器，加载与否都不会影响到其它编辑器
-            // 在接下来分类中会移除有影响的编辑器，只留下无序的编辑器
-            var freeEditors = new HashSet<>(editors.getFirst());
-            do {
-                Set<Class<? extends IRomEditor>> nextList = new HashSet<>();
-                for (SingleMapEntry<Class<? extends IRomEditor>, Method> entry : editors.getLast()) {
-                    if (nextList.contains(entry.getKey())) {
-                        // 已经是前置，跳过
-                        continue;
-                    }
+    public boolean isLazyLoad() {
+        return lazyLoad;
+    }
 
-                    // 将参数中的编辑器作为前置编辑器，带有@Editor.QuoteOnly注解只是引用，不算作前置
-                    var parameterTypes = entry.getValue().getParameterTypes();
-                    if (parameterTypes.length > 0) {
-                        var parameterAnnotations = entry.getValue().getParameterAnnotations();
-                        pars:
-                        for (int i = 0; i < parameterTypes.length; i++) {
-                            Class<?> parameterType = parameterTypes[i];
-                            if (!IRomEditor.class.isAssignableFrom(parameterType)) {
-                                // 参数仅针对编辑器
-                                continue;
-                            }
-                            Annotation[] annotations = parameterAnnotations[i];
-
-                            // 如果带有@Editor.QuoteOnly注解，那它只是引用，不算作前置
-                            for (Annotation annotation : annotations) {
-                                if (annotation instanceof Editor.QuoteOnly) {
-                                    // 只引用，不算作前置
-                                    continue pars;
-                                }
-                            }
-
-                            // 将前置放进下一个Set中
-                            nextList.add((Class<? extends IRomEditor>) parameterType);
-
-                            // 有前置编辑器，不属于无序编辑器
-                            freeEditors.remove(entry);
-                        }
+    /**
+     * 在当前线程加载编辑器和它加载方法参数中的编辑器，已加载的编辑器不会重复加载
+     * <p>
+     * 不同的编辑器可以同时在多个线程中延迟加载，正在被其它线程加载时等待加载完毕
+     */
+    private void loadLazily(@NotNull Class<? extends IRomEditor> type) {
+        if (loadedEditors.contains(type)) {
+            return;
+        }
+        var lazyLoad = new LazyLoad();
+        var loading = lazyLoads.putIfAbsent(type, lazyLoad);
+        if (loading != null) {
+            awaitLazyLoad(loading);
+            return;
+        }
+        try {
+            if (loadedEditors.contains(type)) {
+                // 已被其它线程加载
+                return;
+            }
+            var loadMethod = loadMethods.get(type);
+            if (loadMethod != null) {
+                // 优先加载参数中的编辑器，只是引用的编辑器也需要加载后才能使用
+                for (Class<? extends IRomEditor> parameter : loadMethod.getParameters()) {
+                    if (editors.containsKey(parameter)) {
+                        loadLazily(parameter);
                     }
                 }
-                if (nextList.isEmpty()) {
-                    // 没有找到有前置的编辑器，跳出循环
-                    break;
-                }
-                var nextEditors = new HashSet<SingleMapEntry<Class<? extends IRomEditor>, Method>>();
-                editors.getLast().removeIf(next -> {
-                    if (nextList.contains(next.getKey())) {
-                        nextEditors.add(next);
-                        freeEditors.remove(next);
-                        return true;
-                    }
-                    return false;
-                });
-                editors.add(nextEditors);
-            } while (true);
-
-            // 移除无序的编辑器，无序编辑器与其它编辑器分开进行
-            editors.getFirst().removeAll(freeEditors);
-            // 倒序，优先加载前置
-            Collections.reverse(editors);
-
-            CountDownLatch latch = new CountDownLatch(editors.stream().mapToInt(Set::size).sum());
-            // 加载无序编辑器
-            freeEditors.parallelStream().forEach(editor -> {
-                try {
-                    loadEditor(editor.getKey()).get();
-                } catch (InterruptedException | ExecutionException e) {
-                    e.printStackTrace();
-                } finally {
-                    latch.countDown();
+            }
+            load(type, false);
+            // 加载失败也不再重复加载
+            loadedEditors.add(type);
+        } finally {
+            lazyLoads.remove(type, lazyLoad);
+            lazyLoad.future.complete(null);
+        }
+    }
+
+    /**
+     * 等待其它线程延迟加载编辑器
+     * <p>
+     * 正在加载的线程直接或间接地在等待当前线程时（互为前置或加载时获取了自己）不等待，与在同一个线程中加载时相同
+     */
+    private void awaitLazyLoad(@NotNull LazyLoad loading) {
+        final Thread current = Thread.currentThread();
+        synchronized (lazyLoadWaits) {
+            for (LazyLoad wait = loading; wait != null; wait = lazyLoadWaits.get(wait.owner)) {
+                if (wait.owner == current) {
+                    return;
                 }
-            });
-            // 加载有序编辑器
-            editors.forEach(editorList ->
-                    editorList.parallelStream().forEach(editor -> {
-                                try {
-                                    loadEditor(editor.getKey()).get();
-                                } catch (InterruptedException | ExecutionException e) {
-                                    e.printStackTrace();
-                                } finally {
-                                    latch.countDown();
-                                }
-                            }
-                    )
-            );
+            }
+            lazyLoadWaits.put(current, loading);
+        }
+        try {
+            loading.future.join();
+        } finally {
+            synchronized (lazyLoadWaits) {
+                lazyLoadWaits.remove(current);
+            }
+        }
+    }
 
-            try {
-                // 等待加载完毕
-                latch.await();
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            } finally {
-                // call event
-                getMetalMaxRe().getEventHandler().callEvent(new EditorManagerEvent.Post(metalMaxRe));
+    /**
+     * 延迟加载时，在当前线程加载编辑器应用方法参数中还未加载的编辑器
+     * <p>
+     * *新加载的编辑器也会被应用，同样加载它应用方法参数中的编辑器
+     *
+     * @param types 将要应用的编辑器
+     */
+    private void loadApplyParametersLazily(@NotNull Collection<Class<? extends IRomEditor>> types) {
+        var pending = new ArrayDeque<>(types);
+        while (!pending.isEmpty()) {
+            var applyMethod = applyMethods.get(pending.poll());
+            if (applyMethod == null) {
+                continue;
             }
-        });
+            for (Class<? extends IRomEditor> parameter : applyMethod.getParameters()) {
+                if (editors.containsKey(parameter) && !loadedEditors.contains(parameter)) {
+                    loadLazily(parameter);
+                    pending.add(parameter);
+                }
+            }
+        }
+    }
+
+    /**
+     * 设置只应用被修改的编辑器
+     * <p>
+     * 开启后 {@link #applyEditors()} 只应用被修改的编辑器（{@link IRomEditor#isDirty()}），
+     * 以及应用方法的参数中使用了被应用的编辑器的编辑器
+     * <p>
+     * *直接修改数据的字段或集合时不会标记编辑器已被修改，需要手动调用 {@link IRomEditor#setDirty(boolean)}
+     *
+     * @param applyDirtyOnly 是否只应用被修改的编辑器
+     */
+    public void setApplyDirtyOnly(boolean applyDirtyOnly) {
+        this.applyDirtyOnly = applyDirtyOnly;
+    }
+
+    public boolean isApplyDirtyOnly() {
+        return applyDirtyOnly;
+    }
+
+    /**
+     * 设置同时应用的编辑器写入了相同范围时的处理方式
+     * <p>
+     * 不为 {@link WriteConflictPolicy#IGNORE} 时，每个编辑器应用到自己的覆盖层（{@link EditorRomBufferWrapper#beginOverlay()}），
+     * 应用完成后合并到ROM，最后将冲突的范围按编辑器的顺序重新合并，结果不再受应用的先后影响
+     * <p>
+     * *不使用 {@link EditorRomBufferWrapper} 的编辑器无法记录写入范围，应用时不会与其它编辑器的合并同时进行
+     *
+     * @param writeConflictPolicy 处理方式
+     */
+    public void setWriteConflictPolicy(@NotNull WriteConflictPolicy writeConflictPolicy) {
+        this.writeConflictPolicy = writeConflictPolicy;
+    }
+
+    @NotNull
+    public WriteConflictPolicy getWriteConflictPolicy() {
+        return writeConflictPolicy;
     }
 
     @Override
-    public synchronized Future<?> applyEditors() {
-        return LOAD_OR_APPLY_EXECUTOR.submit(() -> {
-            var editors = new LinkedList<Set<SingleMapEntry<Class<? extends IRomEditor>, Method>>>();
-            editors.addFirst(new HashSet<>());
+    public synchronized Future<?> loadEditors() {
+        // call event
+        getMetalMaxRe().getEventHandler().callEvent(new EditorManagerEvent.Pre(metalMaxRe));
+        if (lazyLoad) {
+            // 获取编辑器时重新加载
+            loadedEditors.clear();
+            getMetalMaxRe().getEventHandler().callEvent(new EditorManagerEvent.Post(metalMaxRe));
+            return CompletableFuture.completedFuture(null);
+        }
+        var scheduler = getLoadScheduler();
+        return enqueue(() -> scheduler.run(type -> load(type, false), EDITOR_EXECUTOR)
+                .whenComplete((path, throwable) -> {
+                    // call event
+                    getMetalMaxRe().getEventHandler().callEvent(new EditorManagerEvent.Post(metalMaxRe));
+                }));
+    }
 
-            for (var entry : applyMethods.entrySet()) {
-                editors.getFirst().add(SingleMapEntry.create(entry));
+    @Override
+    public synchronized Future<?> applyEditors() {
+        var scheduler = getApplyScheduler();
+        var policy = writeConflictPolicy;
+        return enqueue(() -> {
+            // 编辑器在前置编辑器应用完毕后立即应用
+            // 已应用的编辑器
+            Set<Class<? extends IRomEditor>> appliedEditors = ConcurrentHashMap.newKeySet();
+            // 每个编辑器应用时的覆盖层
+            var pass = new OverlayPass(scheduler);
+            CompletableFuture<Void> prerequisite = CompletableFuture.completedFuture(null);
+            if (lazyLoad) {
+                // 在写入ROM前加载参数中的编辑器，不会读取到其它编辑器已应用的数据
+                prerequisite = CompletableFuture.runAsync(() -> loadApplyParametersLazily(List.copyOf(loadedEditors)), EDITOR_EXECUTOR);
+            }
+            var future = prerequisite.thenCompose(v -> scheduler.run(type -> {
+                if (lazyLoad && !loadedEditors.contains(type)) {
+                    // 延迟加载时只应用已加载的编辑器
+                    return;
+                }
+                if (applyDirtyOnly && !isApplyRequired(type, appliedEditors)) {
+                    // 没有被修改，前置编辑器也没有被应用
+                    return;
+                }
+                if (policy == WriteConflictPolicy.IGNORE) {
+                    apply(type);
+                } else {
+                    applyOverlay(type, pass);
+                }
+                appliedEditors.add(type);
+            }, EDITOR_EXECUTOR));
+            if (policy == WriteConflictPolicy.IGNORE) {
+                return future;
             }
+            return future.thenApply(path -> {
+                resolveWriteConflicts(pass, policy);
+                return path;
+            });
+        });
+    }
 
-            // 无序的编辑器，应用与否都不会影响到其它编辑器
-            // 在接下来分类中会移除有影响的编辑器，只留下无序的编辑器
-            var freeEditors = new HashSet<>(editors.getFirst());
-            do {
-                Set<Class<? extends IRomEditor>> nextList = new HashSet<>();
-                for (SingleMapEntry<Class<? extends IRomEditor>, Method> entry : editors.getLast()) {
-                    if (nextList.contains(entry.getKey())) {
-                        // 已经是前置，跳过
-                        continue;
-                    }
+    /**
+     * 在当前线程将编辑器应用到覆盖层，完成后合并到ROM
+     */
+    private void applyOverlay(@NotNull Class<? extends IRomEditor> type, @NotNull OverlayPass pass) {
+        var editor = editors.get(type);
+        if (editor == null || !(editor.getBuffer() instanceof EditorRomBufferWrapper wrapper)) {
+            // 无法使用覆盖层，应用时不能创建或合并其它覆盖层
+            synchronized (overlayLock) {
+                apply(type);
+                // 直接写入了ROM，之后的覆盖层重新创建快照
+                pass.invalidate();
+            }
+            return;
+        }
+        synchronized (overlayLock) {
+            wrapper.beginOverlay(pass.create(type));
+        }
+        RomBuffer overlay;
+        try {
+            apply(type);
+        } finally {
+            overlay = wrapper.endOverlay();
+        }
+        if (overlay != null) {
+            synchronized (overlayLock) {
+                getMetalMaxRe().getBuffer().merge(overlay);
+            }
+            pass.overlays.put(type, overlay);
+        }
+    }
 
-                    // 将参数中的编辑器作为前置编辑器，带有@Editor.QuoteOnly注解只是引用，不算作前置
-                    var parameterTypes = entry.getValue().getParameterTypes();
-                    if (parameterTypes.length > 0) {
-                        var parameterAnnotations = entry.getValue().getParameterAnnotations();
-                        pars:
-                        for (int i = 0; i < parameterTypes.length; i++) {
-                            Class<?> parameterType = parameterTypes[i];
-                            if (!IRomEditor.class.isAssignableFrom(parameterType)) {
-                                // 参数仅针对编辑器
-                                continue;
-                            }
-                            Annotation[] annotations = parameterAnnotations[i];
-
-                            // 如果带有@Editor.QuoteOnly注解，那它只是引用，不算作前置
-                            for (Annotation annotation : annotations) {
-                                if (annotation instanceof Editor.QuoteOnly) {
-                                    // 只引用，不算作前置
-                                    continue pars;
-                                }
-                            }
-
-                            // 将前置放进下一个Set中
-                            nextList.add((Class<? extends IRomEditor>) parameterType);
-
-                            // 有前置编辑器，不属于无序编辑器
-                            freeEditors.remove(entry);
-                        }
-                    }
+    /**
+     * 检查没有先后顺序的编辑器是否写入了相同的范围
+     * <p>
+     * 冲突的范围按编辑器的顺序重新合并，顺序靠后的编辑器的数据生效
+     */
+    private void resolveWriteConflicts(@NotNull OverlayPass pass, @NotNull WriteConflictPolicy policy) {
+        var scheduler = pass.scheduler;
+        var overlays = pass.overlays;
+        var types = scheduler.getOrder().stream().filter(overlays::containsKey).toList();
+        var prgConflicts = new RangeSet();
+        var chrConflicts = new RangeSet();
+        var messages = new ArrayList<String>();
+        for (int i = 0; i < types.size(); i++) {
+            var a = overlays.get(types.get(i));
+            for (int j = i + 1; j < types.size(); j++) {
+                if (scheduler.isOrdered(types.get(i), types.get(j))) {
+                    // 有先后顺序，不会同时写入
+                    continue;
                 }
-                if (nextList.isEmpty()) {
-                    // 没有找到有前置的编辑器，跳出循环
-                    break;
+                var b = overlays.get(types.get(j));
+                var prg = a.getPrgRomPages().getDirtyRanges().intersection(b.getPrgRomPages().getDirtyRanges());
+                var chr = a.getChrRomPages().getDirtyRanges().intersection(b.getChrRomPages().getDirtyRanges());
+                if (!prg.isEmpty()) {
+                    prgConflicts.addAll(prg);
+                    messages.add(String.format("%s与%s同时写入了PRG ROM%s", types.get(i).getSimpleName(), types.get(j).getSimpleName(), prg));
                 }
-                var nextEditors = new HashSet<SingleMapEntry<Class<? extends IRomEditor>, Method>>();
-                editors.getLast().removeIf(next -> {
-                    if (nextList.contains(next.getKey())) {
-                        nextEditors.add(next);
-                        freeEditors.remove(next);
-                        return true;
-                    }
-                    return false;
-                });
-                editors.add(nextEditors);
-            } while (true);
-
-            // 移除无序的编辑器，无序编辑器与其它编辑器分开进行
-            editors.getFirst().removeAll(freeEditors);
-            // 倒序，优先应用前置
-            Collections.reverse(editors);
-
-            CountDownLatch latch = new CountDownLatch(editors.stream().mapToInt(Set::size).sum());
-            // 应用无序编辑器
-            freeEditors.parallelStream().forEach(editor -> {
-                try {
-                    applyEditor(editor.getKey()).get();
-                } catch (InterruptedException | ExecutionException e) {
-                    e.printStackTrace();
-                } finally {
-                    latch.countDown();
+                if (!chr.isEmpty()) {
+                    chrConflicts.addAll(chr);
+                    messages.add(String.format("%s与%s同时写入了CHR ROM%s", types.get(i).getSimpleName(), types.get(j).getSimpleName(), chr));
                 }
-            });
-            // 应用有序编辑器
-            editors.forEach(editorList ->
-                    editorList.parallelStream().forEach(editor -> {
-                                try {
-                                    applyEditor(editor.getKey()).get();
-                                } catch (InterruptedException | ExecutionException e) {
-                                    e.printStackTrace();
-                                } finally {
-                                    latch.countDown();
-                                }
-                            }
-                    )
-            );
+            }
+        }
+        if (!messages.isEmpty()) {
+            var buffer = getMetalMaxRe().getBuffer();
+            synchronized (overlayLock) {
+                for (Class<? extends IRomEditor> type : types) {
+                    var overlay = overlays.get(type);
+                    buffer.getPrgRomPages().merge(overlay.getPrgRomPages(), overlay.getPrgRomPages().getDirtyRanges().intersection(prgConflicts));
+                    buffer.getChrRomPages().merge(overlay.getChrRomPages(), overlay.getChrRomPages().getDirtyRanges().intersection(chrConflicts));
+                }
+            }
+        }
+        overlays.values().forEach(RomBuffer::close);
+        pass.invalidate();
 
-            try {
-                // 等待应用完毕
-                latch.await();
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (policy == WriteConflictPolicy.FAIL) {
+            throw new IllegalStateException("编辑器写入冲突：" + String.join("；", messages));
+        }
+        for (String message : messages) {
+            LOGGER.warn(message);
+        }
+    }
+
+    /**
+     * 在上一个加载或应用所有编辑器完成后开始，不占用线程等待
+     *
+     * @param task 开始加载或应用，返回完成时的关键路径
+     * @return 完成后完成
+     */
+    private synchronized CompletableFuture<?> enqueue(@NotNull Callable<CompletableFuture<List<Class<? extends IRomEditor>>>> task) {
+        if (closed) {
+            throw new RejectedExecutionException("EditorManager is closed");
+        }
+        var future = loadOrApplyTail
+                .handle((v, throwable) -> null)
+                .thenCompose(v -> {
+                    try {
+                        return task.call();
+                    } catch (Exception e) {
+                        return CompletableFuture.failedFuture(e);
+                    }
+                })
+                .thenAccept(path -> criticalPath = path);
+        loadOrApplyTail = future;
+        return future;
+    }
+
+    /**
+     * 等待正在进行的加载或应用完成，之后不能再加载或应用所有编辑器
+     * <p>
+     * *不会关闭构造时传入的线程池
+     */
+    @Override
+    public void close() {
+        CompletableFuture<?> tail;
+        synchronized (this) {
+            closed = true;
+            tail = loadOrApplyTail;
+        }
+        // 失败已经通过返回的Future通知
+        tail.handle((v, throwable) -> null).join();
+    }
+
+    /**
+     * @return 是否已关闭
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 编辑器被修改，或者前置编辑器已被应用时需要应用
+     */
+    private boolean isApplyRequired(@NotNull Class<? extends IRomEditor> type, @NotNull Set<Class<? extends IRomEditor>> appliedEditors) {
+        var editor = editors.get(type);
+        if (editor != null && editor.isDirty()) {
+            return true;
+        }
+        var applyMethod = applyMethods.get(type);
+        if (applyMethod != null) {
+            for (Class<? extends IRomEditor> dependency : applyMethod.getDependencies()) {
+                if (appliedEditors.contains(dependency)) {
+                    return true;
+                }
             }
-        });
+        }
+        return false;
+    }
+
+    private synchronized EditorScheduler getLoadScheduler() {
+        if (loadScheduler == null) {
+            loadScheduler = new EditorScheduler(editors.keySet(), loadMethods);
+        }
+        return loadScheduler;
+    }
+
+    private synchronized EditorScheduler getApplyScheduler() {
+        if (applyScheduler == null) {
+            applyScheduler = new EditorScheduler(editors.keySet(), applyMethods);
+        }
+        return applyScheduler;
+    }
+
+    /**
+     * 获取上一次加载或应用所有编辑器时耗时最长的前置链
+     *
+     * @return 关键路径，前置编辑器在前
+     */
+    public List<Class<? extends IRomEditor>> getCriticalPath() {
+        return criticalPath;
     }
 
     @Override
@@ -462,55 +707,74 @@ public class EditorManagerImpl implements IEditorManager {
         return loadEditor(type, false);
     }
 
-    @SuppressWarnings("unchecked")
     @NotNull
     @Override
     public Future<IRomEditor> applyEditor(@NotNull Class<? extends IRomEditor> type) {
         return EDITOR_EXECUTOR.submit(() -> {
-            var editor = getEditor(type);
-            if (editor != null && editor.isEnabled()) {
-                Method applyMethod = applyMethods.get(type);
+            if (lazyLoad) {
+                loadApplyParametersLazily(List.of(type));
+            }
+            return apply(type);
+        });
+    }
 
-                if (applyMethod == null) {
-                    // 获取方法失败。。。？
-                    return null;
-                }
+    /**
+     * 在当前线程应用编辑器
+     */
+    private IRomEditor apply(@NotNull Class<? extends IRomEditor> type) {
+        var editor = editors.get(type);
+        if (editor != null && editor.isEnabled()) {
+            EditorInvoker applyMethod = applyMethods.get(type);
 
-                Object[] pars = new Object[applyMethod.getParameterCount()];
-                var parameters = applyMethod.getParameters();
-                for (int i = 0; i < parameters.length; i++) {
-                    var parameter = parameters[i];
-                    if (RomBuffer.class.isAssignableFrom(parameter.getType())) {
-                        pars[i] = editor.getBuffer();
-                        continue;
+            if (applyMethod == null) {
+                // 获取方法失败。。。？
+                return null;
+            }
+
+            try {
+                // 准备应用数据
+                getMetalMaxRe().getEventHandler().callEvent(new EditorApplyEvent.Pre(getMetalMaxRe(), editor));
+
+                // 开始应用数据并计时
+                if (RomAccessTracer.ENABLED) {
+                    RomAccessTracer.setOwner(type.getName());
+                }
+                final var jfrEvent = new EditorMetrics.ApplyEvent();
+                final long[] tracedBytes = getTracedBytes(type);
+                jfrEvent.begin();
+                final long start = System.nanoTime();
+                boolean success = false;
+                try {
+                    applyMethod.invoke(editors, editor);
+                    success = true;
+                } finally {
+                    final long end = System.nanoTime() - start;
+                    jfrEvent.end();
+                    if (RomAccessTracer.ENABLED) {
+                        RomAccessTracer.setOwner(null);
                     }
-                    if (!IRomEditor.class.isAssignableFrom(parameter.getType())) {
-                        // 错误的参数，参数只能是编辑器
-                        continue;
+                    long[] bytes = getTracedBytes(type, tracedBytes);
+                    metrics.computeIfAbsent(type, k -> new EditorMetrics()).recordApply(end, success, bytes[0], bytes[1]);
+                    if (jfrEvent.shouldCommit()) {
+                        jfrEvent.editor = type.getName();
+                        jfrEvent.success = success;
+                        jfrEvent.bytesRead = bytes[0];
+                        jfrEvent.bytesWritten = bytes[1];
+                        jfrEvent.commit();
                     }
-                    pars[i] = getEditor((Class<? extends IRomEditor>) parameter.getType());
                 }
+                editor.setDirty(false);
 
-                try {
-                    // 准备应用数据
-                    getMetalMaxRe().getEventHandler().callEvent(new EditorApplyEvent.Pre(getMetalMaxRe(), editor));
-
-                    // 开始应用数据并计时
-                    final long start = System.currentTimeMillis();
-                    applyMethod.invoke(editor, pars);
-                    final long end = System.currentTimeMillis() - start;
-
-                    // 应用数据完成
-                    getMetalMaxRe().getEventHandler().callEvent(new EditorApplyEvent.Post(getMetalMaxRe(), editor));
-                } catch (Exception exception) {
-                    exception.printStackTrace();
+                // 应用数据完成
+                getMetalMaxRe().getEventHandler().callEvent(new EditorApplyEvent.Post(getMetalMaxRe(), editor));
+            } catch (Exception exception) {
+                exception.printStackTrace();
 
-                    // 应用数据失败
-                    getMetalMaxRe().getEventHandler().callEvent(new EditorApplyEvent.Post(getMetalMaxRe(), editor, exception));
-                }
+                // 应用数据失败
+                getMetalMaxRe().getEventHandler().callEvent(new EditorApplyEvent.Post(getMetalMaxRe(), editor, exception));
             }
-            return editor;
-        });
+        }
+        return editor;
     }
 
     @Override
@@ -518,62 +782,140 @@ public class EditorManagerImpl implements IEditorManager {
         return loadEditor(type, true);
     }
 
-    @SuppressWarnings("unchecked")
     @NotNull
     private Future<IRomEditor> loadEditor(@NotNull Class<? extends IRomEditor> type, boolean reload) {
-        return EDITOR_EXECUTOR.submit(() -> {
-            var editor = getEditor(type);
-            if (editor == null) {
-                // 没有这个类型的编辑器
-                return null;
-            }
+        return EDITOR_EXECUTOR.submit(() -> load(type, reload));
+    }
 
-            Method loadMethod = loadMethods.get(type);
+    /**
+     * 在当前线程加载编辑器
+     */
+    private IRomEditor load(@NotNull Class<? extends IRomEditor> type, boolean reload) {
+        var editor = editors.get(type);
+        if (editor == null) {
+            // 没有这个类型的编辑器
+            return null;
+        }
 
-            if (loadMethod == null) {
-                // 获取方法失败。。。？
-                return null;
-            }
+        EditorInvoker loadMethod = loadMethods.get(type);
 
-            Object[] pars = new Object[loadMethod.getParameterCount()];
-            var parameters = loadMethod.getParameters();
-            for (int i = 0; i < parameters.length; i++) {
-                var parameter = parameters[i];
-                if (RomBuffer.class.isAssignableFrom(parameter.getType())) {
-                    pars[i] = editor.getBuffer();
-                    continue;
+        if (loadMethod == null) {
+            // 获取方法失败。。。？
+            return null;
+        }
+
+        try {
+            // 准备加载
+            metalMaxRe.getEventHandler().callEvent(new EditorLoadEvent.Pre(metalMaxRe, editor, reload));
+
+            // 开始加载并计时
+            if (RomAccessTracer.ENABLED) {
+                RomAccessTracer.setOwner(type.getName());
+            }
+            final var jfrEvent = new EditorMetrics.LoadEvent();
+            final long[] tracedBytes = getTracedBytes(type);
+            jfrEvent.begin();
+            final long start = System.nanoTime();
+            boolean success = false;
+            try {
+                loadMethod.invoke(editors, editor);
+                success = true;
+            } finally {
+                final long end = System.nanoTime() - start;
+                jfrEvent.end();
+                if (RomAccessTracer.ENABLED) {
+                    RomAccessTracer.setOwner(null);
                 }
-                if (!IRomEditor.class.isAssignableFrom(parameter.getType())) {
-                    // 错误的参数，参数只能是编辑器
-                    continue;
+                long[] bytes = getTracedBytes(type, tracedBytes);
+                metrics.computeIfAbsent(type, k -> new EditorMetrics()).recordLoad(end, success, bytes[0], bytes[1]);
+                if (jfrEvent.shouldCommit()) {
+                    jfrEvent.editor = type.getName();
+                    jfrEvent.reload = reload;
+                    jfrEvent.success = success;
+                    jfrEvent.bytesRead = bytes[0];
+                    jfrEvent.bytesWritten = bytes[1];
+                    jfrEvent.commit();
                 }
-                pars[i] = getEditor((Class<? extends IRomEditor>) parameter.getType());
             }
 
-            try {
-                // 准备加载
-                metalMaxRe.getEventHandler().callEvent(new EditorLoadEvent.Pre(metalMaxRe, editor, reload));
+            loadedEditors.add(type);
+            // 刚加载的数据与ROM一致
+            editor.setDirty(false);
 
-                // 开始加载并计时
-                final long start = System.currentTimeMillis();
-                loadMethod.invoke(editor, pars);
-                final long end = System.currentTimeMillis() - start;
+            // 加载完毕
+            metalMaxRe.getEventHandler().callEvent(new EditorLoadEvent.Post(metalMaxRe, editor, reload));
+        } catch (Exception exception) {
+            exception.printStackTrace();
 
-                // 加载完毕
-                metalMaxRe.getEventHandler().callEvent(new EditorLoadEvent.Post(metalMaxRe, editor, reload));
-            } catch (Exception exception) {
-                exception.printStackTrace();
+            // 加载失败
+            metalMaxRe.getEventHandler().callEvent(new EditorLoadEvent.Post(metalMaxRe, editor, exception, reload));
+        }
+        return editor;
+    }
 
-                // 加载失败
-                metalMaxRe.getEventHandler().callEvent(new EditorLoadEvent.Post(metalMaxRe, editor, exception, reload));
-            }
-            return editor;
-        });
+    /**
+     * 获取追踪器中编辑器读取和写入的字节总数
+     *
+     * @return [读取, 写入]，未开启追踪时为null
+     */
+    private long[] getTracedBytes(@NotNull Class<? extends IRomEditor> type) {
+        if (!RomAccessTracer.ENABLED) {
+            return null;
+        }
+        var tracer = getMetalMaxRe().getBuffer().getTracer();
+        if (tracer == null) {
+            return null;
+        }
+        var coverage = tracer.getCoverage(type.getName());
+        if (coverage == null) {
+            return new long[]{0L, 0L};
+        }
+        return new long[]{coverage.getBytes(false), coverage.getBytes(true)};
+    }
+
+    /**
+     * 获取追踪器中编辑器读取和写入的字节数量
+     *
+     * @param before 开始时的字节总数
+     * @return [读取, 写入]，未开启追踪时为 {@link #NO_TRACED_BYTES}，不要修改
+     */
+    private long[] getTracedBytes(@NotNull Class<? extends IRomEditor> type, long[] before) {
+        if (before == null) {
+            // 未开启追踪
+            return NO_TRACED_BYTES;
+        }
+        var after = getTracedBytes(type);
+        if (after == null) {
+            return NO_TRACED_BYTES;
+        }
+        return new long[]{after[0] - before[0], after[1] - before[1]};
+    }
+
+    @Nullable
+    @Override
+    public EditorMetrics getEditorMetrics(@NotNull Class<? extends IRomEditor> type) {
+        return metrics.get(type);
+    }
+
+    @Override
+    public Map<Class<? extends IRomEditor>, EditorMetrics> getEditorMetrics() {
+        return Collections.unmodifiableMap(metrics);
     }
 
+    /**
+     * 获取编辑器实例
+     * <p>
+     * *延迟加载时，第一次获取会在当前线程加载该编辑器和它的前置编辑器
+     *
+     * @param editor 编辑器类型
+     * @return 编辑器
+     */
     @SuppressWarnings("unchecked")
     @Override
     public <E extends IRomEditor> E getEditor(Class<? extends IRomEditor> editor) {
+        if (lazyLoad && editors.containsKey(editor)) {
+            loadLazily(editor);
+        }
         return (E) editors.get(editor);
     }
 
@@ -581,4 +923,94 @@ public class EditorManagerImpl implements IEditorManager {
     public Map<Class<? extends IRomEditor>, IRomEditor> getEditors() {
         return editors;
     }
+
+    /**
+     * 一次应用所有编辑器时的覆盖层
+     * <p>
+     * 所有覆盖层基于同一个ROM快照创建，ROM只共享一次所有页，不会在每个编辑器应用前共享；
+     * 覆盖层再合并已应用的前置编辑器写入的数据
+     */
+    private final class OverlayPass {
+        private final EditorScheduler scheduler;
+        /**
+         * 每个编辑器应用后的覆盖层
+         */
+        private final Map<Class<? extends IRomEditor>, RomBuffer> overlays = new ConcurrentHashMap<>();
+        /**
+         * 所有覆盖层共同的快照，为null时在下次创建覆盖层时创建
+         */
+        @Nullable
+        private RomBuffer base;
+
+        private OverlayPass(@NotNull EditorScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        /**
+         * 创建编辑器的覆盖层，包含所有已应用的前置编辑器写入的数据
+         * <p>
+         * *需要持有 overlayLock
+         */
+        @NotNull
+        private RomBuffer create(@NotNull Class<? extends IRomEditor> type) {
+            var buffer = getMetalMaxRe().getBuffer();
+            if (base == null) {
+                base = buffer.overlay();
+            }
+            // 快照没有写入记录，不会创建检查点
+            var overlay = base.snapshot();
+            for (Class<? extends IRomEditor> prerequisite : scheduler.getOrder()) {
+                var prerequisiteOverlay = overlays.get(prerequisite);
+                if (prerequisiteOverlay != null && scheduler.isOrdered(prerequisite, type)) {
+                    overlay.merge(prerequisiteOverlay);
+                }
+            }
+            // 只记录编辑器自己写入的范围
+            overlay.getPrgRomPages().clearDirty();
+            overlay.getChrRomPages().clearDirty();
+            overlay.setTracer(buffer.getTracer());
+            return overlay;
+        }
+
+        /**
+         * 不再使用当前的快照，如：编辑器直接写入了ROM
+         * <p>
+         * *需要持有 overlayLock，或所有编辑器已应用完毕
+         */
+        private void invalidate() {
+            if (base != null) {
+                base.close();
+                base = null;
+            }
+        }
+    }
+
+    /**
+     * 一个编辑器的延迟加载
+     */
+    private static final class LazyLoad {
+        /**
+         * 加载编辑器的线程
+         */
+        final Thread owner = Thread.currentThread();
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+    }
+
+    /**
+     * 同时应用的编辑器写入了相同范围时的处理方式
+     */
+    public enum WriteConflictPolicy {
+        /**
+         * 不检查，编辑器直接写入ROM
+         */
+        IGNORE,
+        /**
+         * 输出警告
+         */
+        WARN,
+        /**
+         * 应用所有编辑器失败，{@link #applyEditors()} 的结果为异常
+         */
+        FAIL
+    }
 }
@@ -0,0 +1,254 @@
+package me.afoolslove.metalmaxre.editors;
+
+import jdk.jfr.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 编辑器的加载和应用耗时、读写字节数量和失败次数
+ * <p>
+ * *读写字节数量需要开启 {@link me.afoolslove.metalmaxre.RomAccessTracer} 并为ROM设置追踪器
+ * <p>
+ * 同时会产生JFR事件 {@link LoadEvent}、{@link ApplyEvent}
+ *
+ * @author AFoolLove
+ */
+public class EditorMetrics {
+    private final LatencyHistogram loadLatency = new LatencyHistogram();
+    private final LatencyHistogram applyLatency = new LatencyHistogram();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder applyFailures = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    /**
+     * 记录一次加载
+     *
+     * @param nanos        耗时（纳秒）
+     * @param success      是否成功
+     * @param bytesRead    读取的字节数量
+     * @param bytesWritten 写入的字节数量
+     */
+    void recordLoad(long nanos, boolean success, long bytesRead, long bytesWritten) {
+        loadLatency.record(nanos);
+        if (!success) {
+            loadFailures.increment();
+        }
+        this.bytesRead.add(bytesRead);
+        this.bytesWritten.add(bytesWritten);
+    }
+
+    /**
+     * 记录一次应用
+     *
+     * @param nanos        耗时（纳秒）
+     * @param success      是否成功
+     * @param bytesRead    读取的字节数量
+     * @param bytesWritten 写入的字节数量
+     */
+    void recordApply(long nanos, boolean success, long bytesRead, long bytesWritten) {
+        applyLatency.record(nanos);
+        if (!success) {
+            applyFailures.increment();
+        }
+        this.bytesRead.add(bytesRead);
+        this.bytesWritten.add(bytesWritten);
+    }
+
+    /**
+     * @return 加载耗时
+     */
+    @NotNull
+    public LatencyHistogram getLoadLatency() {
+        return loadLatency;
+    }
+
+    /**
+     * @return 应用耗时
+     */
+    @NotNull
+    public LatencyHistogram getApplyLatency() {
+        return applyLatency;
+    }
+
+    public long getLoadFailures() {
+        return loadFailures.sum();
+    }
+
+    public long getApplyFailures() {
+        return applyFailures.sum();
+    }
+
+    /**
+     * @return 加载和应用时读取的字节数量
+     */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * @return 加载和应用时写入的字节数量
+     */
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void reset() {
+        loadLatency.reset();
+        applyLatency.reset();
+        loadFailures.reset();
+        applyFailures.reset();
+        bytesRead.reset();
+        bytesWritten.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EditorMetrics{load=%s, apply=%s, loadFailures=%d, applyFailures=%d, bytesRead=%d, bytesWritten=%d}",
+                loadLatency, applyLatency, getLoadFailures(), getApplyFailures(), getBytesRead(), getBytesWritten());
+    }
+
+    /**
+     * 耗时直方图，单位为纳秒
+     * <p>
+     * 按2的幂分组，第0组为0纳秒，第n组包含 [2^(n-1), 2^n) 纳秒的记录
+     */
+    public static class LatencyHistogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+        void record(long nanos) {
+            nanos = Math.max(0L, nanos);
+            buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(nanos));
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return 总耗时（纳秒）
+         */
+        public long getTotal() {
+            return total.sum();
+        }
+
+        /**
+         * @return 最长耗时（纳秒）
+         */
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @return 平均耗时（纳秒）
+         */
+        public long getMean() {
+            long count = getCount();
+            return count == 0L ? 0L : getTotal() / count;
+        }
+
+        /**
+         * 获取百分位的耗时
+         * <p>
+         * *返回所在组的上限，最多为实际值的2倍
+         *
+         * @param percentile 百分位，0.0~1.0
+         * @return 耗时（纳秒）
+         */
+        public long getPercentile(double percentile) {
+            long count = getCount();
+            if (count == 0L) {
+                return 0L;
+            }
+            long target = (long) Math.ceil(count * Math.min(1.0, Math.max(0.0, percentile)));
+            long seen = 0L;
+            for (int bucket = 0; bucket < buckets.length(); bucket++) {
+                seen += buckets.get(bucket);
+                if (seen >= Math.max(1L, target)) {
+                    return Math.min(getMax(), bucket == 0 ? 0L : (1L << bucket) - 1);
+                }
+            }
+            return getMax();
+        }
+
+        /**
+         * @return 每组的记录数量
+         */
+        public long[] getBuckets() {
+            long[] values = new long[buckets.length()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = buckets.get(i);
+            }
+            return values;
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0L);
+            }
+            count.reset();
+            total.reset();
+            max.reset();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("{count=%d, mean=%dns, p50=%dns, p99=%dns, max=%dns}",
+                    getCount(), getMean(), getPercentile(0.5), getPercentile(0.99), getMax());
+        }
+    }
+
+    /**
+     * 编辑器加载的JFR事件
+     */
+    @Name("me.afoolslove.metalmaxre.EditorLoad")
+    @Label("Editor Load")
+    @Category({"MetalMaxRe", "Editor"})
+    @StackTrace(false)
+    public static class LoadEvent extends Event {
+        @Label("Editor")
+        String editor;
+        @Label("Reload")
+        boolean reload;
+        @Label("Success")
+        boolean success;
+        @Label("Bytes Read")
+        @DataAmount
+        long bytesRead;
+        @Label("Bytes Written")
+        @DataAmount
+        long bytesWritten;
+    }
+
+    /**
+     * 编辑器应用的JFR事件
+     */
+    @Name("me.afoolslove.metalmaxre.EditorApply")
+    @Label("Editor Apply")
+    @Category({"MetalMaxRe", "Editor"})
+    @StackTrace(false)
+    public static class ApplyEvent extends Event {
+        @Label("Editor")
+        String editor;
+        @Label("Success")
+        boolean success;
+        @Label("Bytes Read")
+        @DataAmount
+        long bytesRead;
+        @Label("Bytes Written")
+        @DataAmount
+        long bytesWritten;
+    }
+}
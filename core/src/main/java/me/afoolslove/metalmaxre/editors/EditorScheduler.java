@@ -0,0 +1,205 @@
+package me.afoolslove.metalmaxre.editors;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * 按编辑器的前置关系加载或应用编辑器
+ * <p>
+ * 每个编辑器在自己的前置编辑器完成后立即开始，不需要等待其它无关的编辑器
+ * <p>
+ * *创建时确定编辑器的顺序，注册或注销编辑器后需要重新创建
+ * <p>
+ * *编辑器互为前置时，忽略后注册的前置编辑器，按注册顺序进行
+ *
+ * @author AFoolLove
+ */
+class EditorScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EditorScheduler.class);
+
+    /**
+     * 所有编辑器，前置编辑器在前
+     */
+    private final List<Class<? extends IRomEditor>> order = new ArrayList<>();
+    /**
+     * key: 编辑器
+     * value: 已注册的前置编辑器
+     */
+    private final Map<Class<? extends IRomEditor>, List<Class<? extends IRomEditor>>> dependencies = new HashMap<>();
+    /**
+     * key: 编辑器
+     * value: 直接或间接的前置编辑器
+     */
+    private final Map<Class<? extends IRomEditor>, Set<Class<? extends IRomEditor>>> ancestors = new HashMap<>();
+
+    /**
+     * @param registered 所有已注册的编辑器，按注册顺序
+     * @param invokers   所有编辑器的加载或应用方法
+     */
+    EditorScheduler(@NotNull Collection<Class<? extends IRomEditor>> registered,
+                    @NotNull Map<Class<? extends IRomEditor>, EditorInvoker> invokers) {
+        var types = registered.stream().filter(invokers::containsKey).toList();
+        var indexes = new HashMap<Class<? extends IRomEditor>, Integer>();
+        for (int i = 0; i < types.size(); i++) {
+            indexes.put(types.get(i), i);
+            dependencies.put(types.get(i), new ArrayList<>());
+        }
+
+        // 先注册的前置编辑器不会形成循环，直接作为前置
+        var laterDependencies = new ArrayList<Map.Entry<Class<? extends IRomEditor>, Class<? extends IRomEditor>>>();
+        for (Class<? extends IRomEditor> type : types) {
+            for (Class<? extends IRomEditor> dependency : invokers.get(type).getDependencies()) {
+                Integer index = indexes.get(dependency);
+                if (index == null || dependencies.get(type).contains(dependency)) {
+                    // 前置编辑器未注册或重复
+                    continue;
+                }
+                if (index < indexes.get(type)) {
+                    dependencies.get(type).add(dependency);
+                } else {
+                    laterDependencies.add(Map.entry(type, dependency));
+                }
+            }
+        }
+        // 后注册的前置编辑器形成循环时忽略，互为前置的编辑器按注册顺序进行
+        for (var entry : laterDependencies) {
+            if (isReachable(entry.getValue(), entry.getKey())) {
+                LOGGER.warn("{}与{}互为前置，忽略该前置", entry.getKey().getSimpleName(), entry.getValue().getSimpleName());
+                continue;
+            }
+            dependencies.get(entry.getKey()).add(entry.getValue());
+        }
+
+        var visited = new HashSet<Class<? extends IRomEditor>>();
+        for (Class<? extends IRomEditor> type : types) {
+            visit(type, visited);
+        }
+    }
+
+    /**
+     * @return 是否可以通过前置关系从一个编辑器到达另一个编辑器
+     */
+    private boolean isReachable(@NotNull Class<? extends IRomEditor> from, @NotNull Class<? extends IRomEditor> to) {
+        var visited = new HashSet<Class<? extends IRomEditor>>();
+        var stack = new ArrayDeque<Class<? extends IRomEditor>>();
+        stack.push(from);
+        while (!stack.isEmpty()) {
+            var type = stack.pop();
+            if (type == to) {
+                return true;
+            }
+            if (visited.add(type)) {
+                dependencies.get(type).forEach(stack::push);
+            }
+        }
+        return false;
+    }
+
+    private void visit(@NotNull Class<? extends IRomEditor> type, @NotNull Set<Class<? extends IRomEditor>> visited) {
+        if (!visited.add(type)) {
+            // 已经确定了顺序
+            return;
+        }
+        var typeDependencies = dependencies.get(type);
+        var typeAncestors = new HashSet<Class<? extends IRomEditor>>(typeDependencies);
+        for (Class<? extends IRomEditor> dependency : typeDependencies) {
+            visit(dependency, visited);
+            typeAncestors.addAll(ancestors.get(dependency));
+        }
+        ancestors.put(type, typeAncestors);
+        order.add(type);
+    }
+
+    /**
+     * @return 所有编辑器，前置编辑器在前
+     */
+    public List<Class<? extends IRomEditor>> getOrder() {
+        return Collections.unmodifiableList(order);
+    }
+
+    /**
+     * 两个编辑器是否有先后顺序，没有先后顺序的编辑器可能同时进行
+     *
+     * @return 其中一个是另一个直接或间接的前置编辑器
+     */
+    public boolean isOrdered(@NotNull Class<? extends IRomEditor> a, @NotNull Class<? extends IRomEditor> b) {
+        return ancestors.getOrDefault(a, Set.of()).contains(b) || ancestors.getOrDefault(b, Set.of()).contains(a);
+    }
+
+    /**
+     * 加载或应用所有编辑器
+     *
+     * @param task     加载或应用一个编辑器
+     * @param executor 执行加载或应用的线程池
+     * @return 所有编辑器完成后完成，值为关键路径
+     */
+    public CompletableFuture<List<Class<? extends IRomEditor>>> run(@NotNull Consumer<Class<? extends IRomEditor>> task, @NotNull Executor executor) {
+        var futures = new HashMap<Class<? extends IRomEditor>, CompletableFuture<Void>>();
+        var durations = new ConcurrentHashMap<Class<? extends IRomEditor>, Long>();
+        for (Class<? extends IRomEditor> type : order) {
+            var typeDependencies = dependencies.get(type);
+            CompletableFuture<Void> prerequisite;
+            if (typeDependencies.isEmpty()) {
+                prerequisite = CompletableFuture.completedFuture(null);
+            } else {
+                prerequisite = CompletableFuture.allOf(typeDependencies.stream().map(futures::get).toArray(CompletableFuture[]::new));
+            }
+            futures.put(type, prerequisite.thenRunAsync(() -> {
+                final long start = System.nanoTime();
+                try {
+                    task.accept(type);
+                } finally {
+                    durations.put(type, System.nanoTime() - start);
+                }
+            }, executor));
+        }
+        return CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new))
+                .thenApply(v -> criticalPath(durations));
+    }
+
+    /**
+     * 获取耗时最长的前置链
+     *
+     * @param durations 每个编辑器的耗时
+     * @return 关键路径，前置编辑器在前
+     */
+    private List<Class<? extends IRomEditor>> criticalPath(@NotNull Map<Class<? extends IRomEditor>, Long> durations) {
+        // 从第一个前置开始到该编辑器完成的耗时
+        var finishes = new HashMap<Class<? extends IRomEditor>, Long>();
+        // 耗时最长的前置编辑器
+        var previous = new HashMap<Class<? extends IRomEditor>, Class<? extends IRomEditor>>();
+        Class<? extends IRomEditor> last = null;
+        for (Class<? extends IRomEditor> type : order) {
+            long finish = 0L;
+            for (Class<? extends IRomEditor> dependency : dependencies.get(type)) {
+                if (finishes.get(dependency) > finish) {
+                    finish = finishes.get(dependency);
+                    previous.put(type, dependency);
+                }
+            }
+            finish += durations.getOrDefault(type, 0L);
+            finishes.put(type, finish);
+            if (last == null || finish > finishes.get(last)) {
+                last = type;
+            }
+        }
+
+        var path = new LinkedList<Class<? extends IRomEditor>>();
+        for (var type = last; type != null; type = previous.get(type)) {
+            path.addFirst(type);
+        }
+        if (last != null && LOGGER.isDebugEnabled()) {
+            LOGGER.debug("关键路径：{}，耗时：{}ms",
+                    path.stream().map(Class::getSimpleName).toList(),
+                    finishes.get(last) / 1_000_000L);
+        }
+        return path;
+    }
+}
@@ -2,6 +2,7 @@ package me.afoolslove.metalmaxre.editors;
 
 import me.afoolslove.metalmaxre.MetalMaxRe;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Map;
 import java.util.concurrent.Future;
@@ -9,10 +10,12 @@ import java.util.function.Function;
 
 /**
  * 编辑器管理器
+ * <p>
+ * *使用完毕后需要调用 {@link #close()}
  *
  * @author AFoolLove
  */
-public interface IEditorManager {
+public interface IEditorManager extends AutoCloseable {
     MetalMaxRe getMetalMaxRe();
 
     /**
@@ -87,4 +90,31 @@ public interface IEditorManager {
      * @return 所有编辑器
      */
     Map<Class<? extends IRomEditor>, IRomEditor> getEditors();
+
+    /**
+     * 获取编辑器的加载和应用记录
+     *
+     * @param type 编辑器类型
+     * @return 记录，没有加载或应用过时为null
+     */
+    @Nullable
+    default EditorMetrics getEditorMetrics(@NotNull Class<? extends IRomEditor> type) {
+        return null;
+    }
+
+    /**
+     * 获取所有编辑器的加载和应用记录
+     *
+     * @return 所有编辑器的记录
+     */
+    default Map<Class<? extends IRomEditor>, EditorMetrics> getEditorMetrics() {
+        return Map.of();
+    }
+
+    /**
+     * 等待正在进行的加载或应用完成并释放资源
+     */
+    @Override
+    default void close() {
+    }
 }
@@ -35,6 +35,28 @@ public interface IRomEditor {
      */
     boolean isEnabled();
 
+    /**
+     * 编辑器的数据在加载或应用后是否被修改
+     * <p>
+     * *默认为总是被修改，只应用被修改的编辑器时依然会应用
+     *
+     * @return 是否被修改
+     * @see EditorManagerImpl#setApplyDirtyOnly(boolean)
+     */
+    default boolean isDirty() {
+        return true;
+    }
+
+    /**
+     * 设置编辑器的数据是否被修改
+     * <p>
+     * *加载或应用完成后会被设置为未修改
+     *
+     * @param dirty 是否被修改
+     */
+    default void setDirty(boolean dirty) {
+    }
+
     /**
      * 获取当前编辑器的数据指针位置
      *
@@ -1,5 +1,6 @@
 package me.afoolslove.metalmaxre.editors.items;
 
+import me.afoolslove.metalmaxre.editors.AbstractEditorModel;
 import me.afoolslove.metalmaxre.editors.data.IDataValueEditor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Range;
@@ -11,7 +12,7 @@ import org.jetbrains.annotations.Range;
  *
  * @author AFoolLove
  */
-public class Item {
+public class Item extends AbstractEditorModel {
     /**
      * 物品的价格数据
      */
@@ -28,6 +29,7 @@ public class Item {
      * 设置价格
      */
     public void setPrice(byte price) {
+        markDirty();
         this.price = price;
     }
 
@@ -226,6 +226,9 @@ public class ItemEditorImpl extends RomBufferWrapperAbstractEditor implements II
                 tankEngine.setImprovable(false);
             }
         }
+
+        // 修改物品后标记编辑器已被修改
+        items.forEach(item -> item.setEditor(this));
     }
 
     @Editor.Apply
@@ -1,5 +1,6 @@
 package me.afoolslove.metalmaxre.editors.map;
 
+import me.afoolslove.metalmaxre.editors.AbstractEditorModel;
 import me.afoolslove.metalmaxre.utils.NumberR;
 import me.afoolslove.metalmaxre.utils.SingleMapEntry;
 import org.jetbrains.annotations.Nullable;
@@ -14,7 +15,7 @@ import java.util.Objects;
  *
  * @author AFoolLove
  */
-public class MapProperties {
+public class MapProperties extends AbstractEditorModel {
     /**
      * 暂时不知道叫什么好，可以影响传送带等的运动方式 2byte
      */
@@ -89,6 +90,7 @@ public class MapProperties {
     }
 
     public void setProperties(byte[] properties) {
+        markDirty();
         this.head = properties[0x00];
         this.width = properties[0x01];
         this.height = properties[0x02];
@@ -151,6 +153,7 @@ public class MapProperties {
      * 将int分为4个byte，并设置到tilesIndexA、tilesIndexB、tilesIndexC、tilesIndexD
      */
     public void setIntTiles(int xXX) {
+        markDirty();
         this.tilesIndexA = NumberR.at(xXX, 3);
         this.tilesIndexB = NumberR.at(xXX, 2);
         this.tilesIndexC = NumberR.at(xXX, 1);
@@ -158,6 +161,7 @@ public class MapProperties {
     }
 
     public void setCombination(byte combinationA, byte combinationB) {
+        markDirty();
         this.combinationA = combinationA;
         this.combinationB = combinationB;
     }
@@ -167,10 +171,12 @@ public class MapProperties {
     }
 
     public void setPalette(char palette) {
+        markDirty();
         this.palette = palette;
     }
 
     public void setSpriteIndex(byte spriteIndex) {
+        markDirty();
         this.spriteIndex = spriteIndex;
     }
 
@@ -180,6 +186,7 @@ public class MapProperties {
      * @param width 宽度
      */
     public void setWidth(byte width) {
+        markDirty();
         this.width = width;
     }
 
@@ -193,6 +200,7 @@ public class MapProperties {
      * @param height 高度
      */
     public void setHeight(byte height) {
+        markDirty();
         this.height = height;
     }
 
@@ -206,6 +214,7 @@ public class MapProperties {
      * @param movableWidthOffset 偏移
      */
     public void setMovableWidthOffset(byte movableWidthOffset) {
+        markDirty();
         this.movableWidthOffset = movableWidthOffset;
     }
 
@@ -219,6 +228,7 @@ public class MapProperties {
      * @param movableWidth 可移动区域的宽度
      */
     public void setMovableWidth(byte movableWidth) {
+        markDirty();
         this.movableWidth = movableWidth;
     }
 
@@ -232,6 +242,7 @@ public class MapProperties {
      * @param movableHeightOffset 偏移
      */
     public void setMovableHeightOffset(byte movableHeightOffset) {
+        markDirty();
         this.movableHeightOffset = movableHeightOffset;
     }
 
@@ -245,6 +256,7 @@ public class MapProperties {
      * @param movableHeight 可移动区域的高度
      */
     public void setMovableHeight(byte movableHeight) {
+        markDirty();
         this.movableHeight = movableHeight;
     }
 
@@ -259,6 +271,7 @@ public class MapProperties {
      * @param fillTile 用于填充的图块
      */
     public void setFillTile(@Range(from = 0x00, to = 0x7F) byte fillTile) {
+        markDirty();
         this.fillTile = fillTile;
     }
 
@@ -272,6 +285,7 @@ public class MapProperties {
      * @param hideTile 隐藏的图块
      */
     public void setHideTile(byte hideTile) {
+        markDirty();
         this.hideTile = hideTile;
     }
 
@@ -287,6 +301,7 @@ public class MapProperties {
      * @param music 音乐
      */
     public void setMusic(byte music) {
+        markDirty();
         this.music = music;
     }
 
@@ -294,6 +309,7 @@ public class MapProperties {
      * 设置地图的头属性
      */
     public void setHead(byte head) {
+        markDirty();
         this.head = head;
     }
 
@@ -117,14 +117,8 @@ public class MapPropertiesEditorImpl extends RomBufferWrapperAbstractEditor impl
         // 读取地图属性索引，上卷 0x40、下卷 0xB0
         // 地图属性索引不需要并且不建议被编辑！！所以不提供修改功能！！
         char[] mapIndexRoll = new char[0x40 + 0xB0];
-        position(getMapPropertiesIndexUpRollAddress());
-        for (int i = 0; i < 0x40; i++) {
-            mapIndexRoll[i] = getBuffer().getChar();
-        }
-        position(getMapPropertiesIndexDownRollAddress());
-        for (int i = 0; i < 0xB0; i++) {
-            mapIndexRoll[0x40 + i] = getBuffer().getChar();
-        }
+        getBuffer().readU16Array(getMapPropertiesIndexUpRollAddress(), mapIndexRoll, 0x00, 0x40);
+        getBuffer().readU16Array(getMapPropertiesIndexDownRollAddress(), mapIndexRoll, 0x40, 0xB0);
 
         // 通过地图属性索引读取地图属性
         // MapID从1开始，0是世界地图
@@ -181,6 +175,9 @@ public class MapPropertiesEditorImpl extends RomBufferWrapperAbstractEditor impl
         for (int i = 0; i < 0x0D; i++) {
             getCustomMapWanted().put(customWantedData[0x00][i] & 0xFF, customWantedData[0x01][i]);
         }
+
+        // 修改地图属性后标记编辑器已被修改
+        getMapProperties().values().forEach(mapProperties -> mapProperties.setEditor(this));
     }
 
     @Editor.Apply
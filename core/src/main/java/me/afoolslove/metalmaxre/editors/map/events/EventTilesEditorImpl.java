@@ -125,10 +125,10 @@ public class EventTilesEditorImpl extends RomBufferWrapperAbstractEditor impleme
         // 获取罗克东边涨潮退潮的4个4*4tile
         worldMapInteractiveEvent = new WorldMapInteractiveEvent();
         prgPosition(0x28184);
-        int worldMapInteractiveEventA = NumberR.toInt(getBuffer().get(), getBuffer().get());
+        int worldMapInteractiveEventA = getBuffer().getU16LE();
         worldMapInteractiveEventA -= 0x7000;
         prgPosition(0x2818A);
-        int worldMapInteractiveEventB = NumberR.toInt(getBuffer().get(), getBuffer().get());
+        int worldMapInteractiveEventB = getBuffer().getU16LE();
         worldMapInteractiveEventB -= 0x7000;
 
         final int aX = worldMapInteractiveEventA % 0x40,
@@ -339,14 +339,14 @@ public class EventTilesEditorImpl extends RomBufferWrapperAbstractEditor impleme
                 prgPosition(0x28184);
                 int worldMapInteractiveEventA = worldMapInteractiveEvent.aPoint.intX() + (worldMapInteractiveEvent.aPoint.intY() * 0x40);
                 worldMapInteractiveEventA += 0x7000;
-                getBuffer().putChar(NumberR.toChar(worldMapInteractiveEventA));
+                getBuffer().putU16LE(worldMapInteractiveEventA);
             }
 
             if (worldMapInteractiveEvent.bPoint != null) {
                 prgPosition(0x2818A);
                 int worldMapInteractiveEventB = worldMapInteractiveEvent.bPoint.intX() + (worldMapInteractiveEvent.bPoint.intY() * 0x40);
                 worldMapInteractiveEventB += 0x7000;
-                getBuffer().putChar(NumberR.toChar(worldMapInteractiveEventB));
+                getBuffer().putU16LE(worldMapInteractiveEventB);
             }
         }
     }
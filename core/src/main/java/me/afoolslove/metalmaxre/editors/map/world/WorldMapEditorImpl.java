@@ -718,7 +718,7 @@ public class WorldMapEditorImpl extends RomBufferWrapperAbstractEditor implement
 
         @Override
         @Editor.Apply
-        public void onApply(IEventTilesEditor eventTilesEditor) {
+        public void onApply(@Editor.QuoteOnly IEventTilesEditor eventTilesEditor) {
             super.onApply(eventTilesEditor);
         }
     }
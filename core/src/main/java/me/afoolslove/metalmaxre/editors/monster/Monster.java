@@ -1,5 +1,6 @@
 package me.afoolslove.metalmaxre.editors.monster;
 
+import me.afoolslove.metalmaxre.editors.AbstractEditorModel;
 import me.afoolslove.metalmaxre.editors.player.Player;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -10,7 +11,7 @@ import org.jetbrains.annotations.Range;
  *
  * @author AFoolLove
  */
-public class Monster {
+public class Monster extends AbstractEditorModel {
     /**
      * 生命值
      */
@@ -79,10 +80,12 @@ public class Monster {
      * @param resistance 属性
      */
     public void setResistance(byte resistance) {
+        markDirty();
         this.resistance = resistance;
     }
 
     public void setResistance(@Range(from = 0x00, to = 0xFF) int resistance) {
+        markDirty();
         this.resistance = (byte) (resistance & 0xFF);
     }
 
@@ -103,6 +106,7 @@ public class Monster {
      * @param ability 特殊能力
      */
     public void setAbility(byte ability) {
+        markDirty();
         this.ability = ability;
     }
 
@@ -121,6 +125,7 @@ public class Monster {
      * @param attackNumber 攻击次数
      */
     public void setAttackNumber(@Range(from = 0x00, to = 0x03) int attackNumber) {
+        markDirty();
         // 将值位移到D7D6
         attackNumber &= 0B0000_0011;
         attackNumber <<= 6;
@@ -142,6 +147,7 @@ public class Monster {
      * @param attackPriority 攻击优先级
      */
     public void setAttackPriority(@Nullable Player attackPriority) {
+        markDirty();
         int ability = this.ability;
         // 清除优先级
         ability &= 0B1100_1111;
@@ -167,6 +173,7 @@ public class Monster {
      * @param attackPriority 攻击优先级
      */
     public void setAttackPriority(int attackPriority) {
+        markDirty();
         attackPriority &= 0B0000_0011;
         attackPriority <<= 4;
 
@@ -185,6 +192,7 @@ public class Monster {
      * @param canSplit 是否可以分裂
      */
     public void setCanSplit(boolean canSplit) {
+        markDirty();
         int ability = this.ability;
         // 清除可分裂
         ability &= 0B1111_0111;
@@ -203,6 +211,7 @@ public class Monster {
      * @param deathExplosion 死亡爆炸波及附近怪物
      */
     public void setDeathExplosion(boolean deathExplosion) {
+        markDirty();
         int ability = this.ability;
         // 清除死亡爆炸波及附近怪物
         ability &= 0B1111_1011;
@@ -226,6 +235,7 @@ public class Monster {
      * @param dodgeRate 闪避率
      */
     public void setDodgeRate(int dodgeRate) {
+        markDirty();
         dodgeRate &= 0B0000_0011;
 
         int ability = this.ability;
@@ -243,6 +253,7 @@ public class Monster {
      * @param attackMode 攻击模式组的索引
      */
     public void setAttackMode(byte attackMode) {
+        markDirty();
         this.attackMode = attackMode;
     }
 
@@ -257,10 +268,12 @@ public class Monster {
      * @param health 生命值
      */
     public void setHealth(byte health) {
+        markDirty();
         this.health = health;
     }
 
     public void setHealth(@Range(from = 0x00, to = 0xFF) int health) {
+        markDirty();
         this.health = (byte) (health & 0xFF);
     }
 
@@ -270,6 +283,7 @@ public class Monster {
      * @param health 真实生命值
      */
     public void setHealthValue(int health) {
+        markDirty();
         if (health > 0xFF) {
             health &= 0B11_1111_1100;
             health >>>= 0x02;
@@ -285,6 +299,7 @@ public class Monster {
      * @param attack 攻击力
      */
     public void setAttack(byte attack) {
+        markDirty();
         this.attack = attack;
     }
 
@@ -298,6 +313,7 @@ public class Monster {
      * @param attack 真实攻击力
      */
     public void setAttackValue(int attack) {
+        markDirty();
         if (attack > 0xFF) {
             attack &= 0B11_1111_1100;
             attack >>= 0x02;
@@ -315,6 +331,7 @@ public class Monster {
      * @param defense 防御力
      */
     public void setDefense(byte defense) {
+        markDirty();
         this.defense = defense;
     }
 
@@ -328,6 +345,7 @@ public class Monster {
      * @param defense 真实防御力
      */
     public void setDefenseValue(int defense) {
+        markDirty();
         if (defense > 0xFF) {
             defense &= 0B11_1111_1100;
             defense >>>= 0x02;
@@ -344,10 +362,12 @@ public class Monster {
      * @param armor 护甲值
      */
     public void setArmor(Byte armor) {
+        markDirty();
         this.armor = armor;
     }
 
     public void setArmor(@Range(from = 0x00, to = 0xFF) int armor) {
+        markDirty();
         this.armor = (byte) (armor & 0xFF);
     }
 
@@ -355,10 +375,12 @@ public class Monster {
      * 设置怪物的出手攻击速度
      */
     public void setSpeed(byte speed) {
+        markDirty();
         this.speed = speed;
     }
 
     public void setSpeed(@Range(from = 0x00, to = 0xFF) int speed) {
+        markDirty();
         this.speed = (byte) (speed & 0xFF);
     }
 
@@ -370,6 +392,7 @@ public class Monster {
      * 如果存在0B0100_0000，上面的内容再来一次，不影响命中率
      */
     public void setRawHitRate(@Range(from = 0x00, to = 0xFF) int hitRate) {
+        markDirty();
         this.hitRate = (byte) (hitRate & 0xFF);
     }
 
@@ -387,6 +410,7 @@ public class Monster {
      * 0B1000_0000 影响 $72CC（未测试淦什么的），效果与命中率数据一致
      */
     public void setRawBattleLevel(@Range(from = 0x00, to = 0xFF) int battleLevel) {
+        markDirty();
         this.battleLevel = (byte) (battleLevel & 0xFF);
     }
 
@@ -406,10 +430,12 @@ public class Monster {
      * @see #setHundredfoldExp(boolean)
      */
     public void setExperience(byte experience) {
+        markDirty();
         this.experience = experience;
     }
 
     public void setExperience(@Range(from = 0x00, to = 0xFF) int experience) {
+        markDirty();
         this.experience = (byte) (experience & 0xFF);
     }
 /*
@@ -439,14 +465,17 @@ A7A4
      * @param attribute 属性
      */
     public void setAttribute(byte attribute) {
+        markDirty();
         this.attribute = attribute;
     }
 
     public void setAttribute(@Range(from = 0x00, to = 0xFF) int attribute) {
+        markDirty();
         this.attribute = (byte) (attribute & 0xFF);
     }
 
     public void setType(@NotNull MonsterType monsterType) {
+        markDirty();
         this.attribute &= 0B0011_1111;
         this.attribute |= monsterType.getValue();
     }
@@ -457,6 +486,7 @@ A7A4
      * @param hundredfoldGold 是否*100
      */
     public void setHundredfoldGold(boolean hundredfoldGold) {
+        markDirty();
         this.attribute &= 0B1110_1111;
         if (hundredfoldGold) {
             this.attribute |= 0B0001_0000;
@@ -469,6 +499,7 @@ A7A4
      * @param hundredfoldExp 是否*100
      */
     public void setHundredfoldExp(boolean hundredfoldExp) {
+        markDirty();
         this.attribute &= 0B1101_1111;
         if (hundredfoldExp) {
             this.attribute |= 0B0010_0000;
@@ -481,10 +512,12 @@ A7A4
      * @param gold 金钱
      */
     public void setGold(byte gold) {
+        markDirty();
         this.gold = gold;
     }
 
     public void setGold(@Range(from = 0x00, to = 0xFF) int gold) {
+        markDirty();
         this.gold = (byte) (gold & 0xFF);
     }
 
@@ -493,10 +526,12 @@ A7A4
      * 注：只有怪物ID范围在0x18-0x82内才能设置为有效的战利品
      */
     public void setDropsItem(Byte dropsItem) {
+        markDirty();
         this.dropsItem = dropsItem;
     }
 
     public void setDropsItem(@Range(from = 0x00, to = 0xFF) int dropsItem) {
+        markDirty();
         this.dropsItem = (byte) (dropsItem & 0xFF);
     }
 
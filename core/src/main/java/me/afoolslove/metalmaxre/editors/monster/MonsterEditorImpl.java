@@ -260,6 +260,9 @@ public class MonsterEditorImpl extends RomBufferWrapperAbstractEditor implements
             }
             specialMonsterGroups[i] = new SpecialMonsterGroup(monsters, counts);
         }
+
+        // 修改怪物后标记编辑器已被修改
+        monsters.values().forEach(monster -> monster.setEditor(this));
     }
 
     @Editor.Apply
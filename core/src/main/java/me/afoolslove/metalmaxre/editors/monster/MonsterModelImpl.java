@@ -2,6 +2,7 @@ package me.afoolslove.metalmaxre.editors.monster;
 
 import me.afoolslove.metalmaxre.MetalMaxRe;
 import me.afoolslove.metalmaxre.RomBufferWrapperAbstractEditor;
+import me.afoolslove.metalmaxre.StructView;
 import me.afoolslove.metalmaxre.editors.Editor;
 import me.afoolslove.metalmaxre.editors.palette.PaletteRow;
 import me.afoolslove.metalmaxre.editors.text.ITextEditor;
@@ -56,10 +57,9 @@ public class MonsterModelImpl extends RomBufferWrapperAbstractEditor {
 
         getBuffer().get(getMonsterModelPaletteIndex(), modelPaletteIndexes);
         getBuffer().get(getMonsterModelDoublePalette(), modelDoublePalettes);
-        position(getMonsterModelPalette());
+        StructView modelPaletteView = StructView.read(getBuffer(), getMonsterModelPalette(), 0x03, modelPalettes.length);
         for (int i = 0; i < modelPalettes.length; i++) {
-            modelPalettes[i] = new PaletteRow(getBuffer(), position());
-            offsetPosition(3);
+            modelPalettes[i] = new PaletteRow(modelPaletteView.getU8(i, 0), modelPaletteView.getU8(i, 1), modelPaletteView.getU8(i, 2));
         }
         getBuffer().get(getMonsterModelIndex(), modelIndexes);
         getBuffer().get(getMonsterModelTileSet(), modelTileSets);
@@ -68,10 +68,7 @@ public class MonsterModelImpl extends RomBufferWrapperAbstractEditor {
         getBuffer().get(getMonsterModelLayout(), modelLayouts);
         getBuffer().get(getMonsterModelLayoutTileIndex(), modelLayoutTileIndexes);
 
-        position(getMonsterModelLayoutIndex());
-        for (int i = 0; i < modelLayoutIndexes.length; i++) {
-            modelLayoutIndexes[i] = getBuffer().getChar();
-        }
+        getBuffer().readU16Array(getMonsterModelLayoutIndex(), modelLayoutIndexes);
 
         position(getMonsterModelDoublePaletteDataIndex());
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
@@ -26,6 +26,7 @@ public class PlayerArmor extends PlayerEquipmentItem {
      * @see IDataValueEditor#get2ByteValues()
      */
     public void setDefense(byte defense) {
+        markDirty();
         value = defense;
     }
 
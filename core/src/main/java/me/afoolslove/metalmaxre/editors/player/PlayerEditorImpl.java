@@ -59,19 +59,19 @@ public class PlayerEditorImpl extends RomBufferWrapperAbstractEditor implements
 
         // 读取初始最大生命值
         for (int i = 0; i < 0x03; i++) {
-            playerInitialAttributes[i].setMaxHealth(NumberR.toInt(getBuffer().get(), getBuffer().get()));
+            playerInitialAttributes[i].setMaxHealth(getBuffer().getU16LE());
         }
         // 读取初始当前生命值
         for (int i = 0; i < 0x03; i++) {
-            playerInitialAttributes[i].setHealth(NumberR.toInt(getBuffer().get(), getBuffer().get()));
+            playerInitialAttributes[i].setHealth(getBuffer().getU16LE());
         }
         // 读取初始攻击力（含已装备的武器
         for (int i = 0; i < 0x03; i++) {
-            playerInitialAttributes[i].setAttack(NumberR.toInt(getBuffer().get(), getBuffer().get()));
+            playerInitialAttributes[i].setAttack(getBuffer().getU16LE());
         }
         // 读取初始防御力（含已装备的防具
         for (int i = 0; i < 0x03; i++) {
-            playerInitialAttributes[i].setDefense(NumberR.toInt(getBuffer().get(), getBuffer().get()));
+            playerInitialAttributes[i].setDefense(getBuffer().getU16LE());
         }
         // 读取初始队伍状态
         for (int i = 0; i < 0x03; i++) {
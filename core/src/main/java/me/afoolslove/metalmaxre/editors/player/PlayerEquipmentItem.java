@@ -28,6 +28,7 @@ public class PlayerEquipmentItem extends Item {
      * 设置玩家可装备该装备
      */
     public void setCanEquipped(@Range(from = 0x00, to = 0xFF) int canEquipped) {
+        markDirty();
         this.canEquipped = (byte) (canEquipped & 0xFF);
     }
 
@@ -35,6 +36,7 @@ public class PlayerEquipmentItem extends Item {
      * 设置玩家可装备该装备
      */
     public void setCanEquipped(@NotNull Player... players) {
+        markDirty();
         if (players.length == 0) {
             // 谁也不能装备
             // 为空可还行
@@ -20,6 +20,7 @@ public class PlayerWeapon extends PlayerEquipmentItem {
      * 设置攻击动画
      */
     public void setAttackAnim(@Range(from = 0x00, to = 0xFF) int attackAnim) {
+        markDirty();
         this.attackAnim = (byte) (attackAnim & 0xFF);
     }
 
@@ -38,6 +39,7 @@ public class PlayerWeapon extends PlayerEquipmentItem {
      * @see IDataValueEditor#get2ByteValues()
      */
     public void setAttack(byte attack) {
+        markDirty();
         value = attack;
     }
 
@@ -45,6 +47,7 @@ public class PlayerWeapon extends PlayerEquipmentItem {
      * 设置攻击的范围
      */
     public void setAttackRange(@NotNull AttackRange range) {
+        markDirty();
         // 清除当前攻击范围数据
         canEquipped &= 0B1110_0111;
         // 设置攻击范围
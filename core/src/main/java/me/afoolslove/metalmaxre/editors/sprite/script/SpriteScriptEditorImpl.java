@@ -106,10 +106,7 @@ public class SpriteScriptEditorImpl extends RomBufferWrapperAbstractEditor imple
         getSpriteScripts().clear();
 
         char[] indexes = new char[getSpriteScriptMaxCount()];
-        position(getSpriteScriptIndexAddress());
-        for (int i = 0; i < indexes.length; i++) {
-            indexes[i] = getBuffer().getChar();
-        }
+        getBuffer().readU16Array(getSpriteScriptIndexAddress(), indexes);
 
 
     }
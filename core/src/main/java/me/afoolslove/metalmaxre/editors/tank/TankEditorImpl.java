@@ -4,7 +4,6 @@ import me.afoolslove.metalmaxre.MetalMaxRe;
 import me.afoolslove.metalmaxre.RomBufferWrapperAbstractEditor;
 import me.afoolslove.metalmaxre.editors.Editor;
 import me.afoolslove.metalmaxre.utils.DataAddress;
-import me.afoolslove.metalmaxre.utils.NumberR;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.EnumMap;
@@ -98,16 +97,16 @@ public class TankEditorImpl extends RomBufferWrapperAbstractEditor implements IT
         }
         // 读取坦克底盘防御力（2byte）
         for (int tank = 0; tank < Tank.ALL_COUNT; tank++) {
-            tankInitialAttributes[tank].setDefense(NumberR.toInt(getBuffer().get(), getBuffer().get()));
+            tankInitialAttributes[tank].setDefense(getBuffer().getU16LE());
         }
         // 读取坦克底盘最大防御力（2byte）
         for (int tank = 0; tank < Tank.PLAYER_TANK_COUNT; tank++) {
-            tankInitialAttributes[tank].setMaxDefense(NumberR.toInt(getBuffer().get(), getBuffer().get()));
+            tankInitialAttributes[tank].setMaxDefense(getBuffer().getU16LE());
         }
         // 读取出租坦克的底盘重量（2byte）
 //        position(getTaxTankInitChassisWeightsAddress());
         for (int taxTank = 0; taxTank < Tank.TAX_TANK_COUNT; taxTank++) {
-            tankInitialAttributes[Tank.PLAYER_TANK_COUNT + taxTank].setWeight(NumberR.toInt(getBuffer().get(), getBuffer().get()));
+            tankInitialAttributes[Tank.PLAYER_TANK_COUNT + taxTank].setWeight(getBuffer().getU16LE());
         }
         // 读取坦克开洞状态
         for (int tank = 0; tank < Tank.ALL_COUNT; tank++) {
@@ -117,13 +116,13 @@ public class TankEditorImpl extends RomBufferWrapperAbstractEditor implements IT
         // 读取坦克的底盘重量
         position(getTankInitChassisWeightsAddress());
         for (int playerTank = 0; playerTank < Tank.PLAYER_TANK_COUNT; playerTank++) {
-            tankInitialAttributes[playerTank].setWeight(NumberR.toInt(getBuffer().get(), getBuffer().get()));
+            tankInitialAttributes[playerTank].setWeight(getBuffer().getU16LE());
         }
 
         // 读取坦克的初始SP
         position(getTankInitSPAddress());
         for (int playerTank = 0; playerTank < Tank.PLAYER_TANK_COUNT; playerTank++) {
-            tankInitialAttributes[playerTank].setSp(NumberR.toInt(getBuffer().get(), getBuffer().get()));
+            tankInitialAttributes[playerTank].setSp(getBuffer().getU16LE());
         }
 
         // 读取坦克的初始坐标
@@ -18,6 +18,7 @@ public class TankEngine extends TankEquipmentItem {
      * 单位：1:1t
      */
     public void setCapacity(@Range(from = 0x00, to = 0xFF) int capacity) {
+        markDirty();
         value = (byte) (capacity & 0xFF);
     }
 
@@ -39,6 +40,7 @@ public class TankEngine extends TankEquipmentItem {
      * 设置是否能够被改造
      */
     public void setImprovable(boolean improvable) {
+        markDirty();
         this.improvable = improvable;
     }
 
@@ -44,6 +44,7 @@ public class TankEquipmentItem extends Item {
      * 1:0.1t
      */
     public void setWeight(byte weight) {
+        markDirty();
         this.weight = weight;
     }
 
@@ -62,6 +63,7 @@ public class TankEquipmentItem extends Item {
      * @see IDataValueEditor#get2ByteValues()
      */
     public void setDefense(byte defense) {
+        markDirty();
         this.defense = defense;
     }
 
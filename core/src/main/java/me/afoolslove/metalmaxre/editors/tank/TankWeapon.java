@@ -26,6 +26,7 @@ public class TankWeapon extends TankEquipmentItem {
      * 设置攻击动画
      */
     public void setAttackAnim(@Range(from = 0x00, to = 0xFF) int attackAnim) {
+        markDirty();
         this.attackAnim = (byte) (attackAnim & 0xFF);
     }
 
@@ -44,6 +45,7 @@ public class TankWeapon extends TankEquipmentItem {
      * @see IDataValueEditor#get2ByteValues()
      */
     public void setAttack(byte attack) {
+        markDirty();
         value = attack;
     }
 
@@ -51,6 +53,7 @@ public class TankWeapon extends TankEquipmentItem {
      * 设置攻击的范围
      */
     public void setAttackRange(@NotNull AttackRange range) {
+        markDirty();
         // 清除当前攻击范围数据
         canEquipped &= 0B1110_0111;
         // 设置攻击范围
@@ -61,6 +64,7 @@ public class TankWeapon extends TankEquipmentItem {
      * 设置改装备的炮弹容量
      */
     public void setShellCapacity(@NotNull TankShellCapacity capacity) {
+        markDirty();
         // 清除之前的容量
         canEquipped &= 0B1111_1000;
         // 设置容量
@@ -71,6 +75,7 @@ public class TankWeapon extends TankEquipmentItem {
      * 设置可装备此装备的穴
      */
     public void setCanEquipped(@Range(from = 0x00, to = 0xFF) int canEquipped) {
+        markDirty();
         this.canEquipped = (byte) (canEquipped & 0xFF);
     }
 
@@ -78,6 +83,7 @@ public class TankWeapon extends TankEquipmentItem {
      * 设置可装备此装备的穴
      */
     public void setCanEquipped(@NotNull TankWeaponSlot... tankWeaponSlots) {
+        markDirty();
         canEquipped &= 0B0001_1111;
         if (tankWeaponSlots.length == 0) {
             // 谁也不能装备
@@ -0,0 +1,169 @@
+package me.afoolslove.metalmaxre.editors.text;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 由 {@link WordBank#ALL_FONTS} 和 {@link WordBank#OPCODES} 编译的解码表
+ * <p>
+ * 第一个字节直接查表得到单字节文字和操作码长度，多字节文字通过字节树继续匹配
+ * <p>
+ * 多个文字都能匹配时，和 {@link WordBank#ALL_FONTS} 的顺序一致，靠前的优先
+ * <p>
+ * *多字节文字后面至少还需要一个字节才能匹配
+ *
+ * @author AFoolLove
+ */
+final class FontDecoder {
+    /**
+     * 没有匹配
+     */
+    static final int NONE = -1;
+
+    static final FontDecoder INSTANCE = new FontDecoder(WordBank.ALL_FONTS, WordBank.OPCODES);
+
+    /**
+     * 单字节文字在 {@link WordBank#ALL_FONTS} 中的索引
+     */
+    private final int[] singleIndexes = new int[0x100];
+    private final char[] singleChars = new char[0x100];
+    /**
+     * 操作码的参数长度
+     */
+    private final int[] opcodeLengths = new int[0x100];
+
+    /**
+     * 字节树，第0个为根节点，子节点为0时没有后续
+     */
+    private final int[][] children;
+    /**
+     * 在该节点结束的文字在 {@link WordBank#ALL_FONTS} 中的索引
+     */
+    private final int[] nodeIndexes;
+    private final char[] nodeChars;
+
+    FontDecoder(@NotNull List<Map.Entry<Character, ?>> fonts, @NotNull Map<Byte, Integer> opcodes) {
+        Arrays.fill(singleIndexes, Integer.MAX_VALUE);
+        Arrays.fill(opcodeLengths, NONE);
+
+        List<int[]> children = new ArrayList<>();
+        List<Integer> nodeIndexes = new ArrayList<>();
+        List<Character> nodeChars = new ArrayList<>();
+        children.add(null);
+        nodeIndexes.add(Integer.MAX_VALUE);
+        nodeChars.add('\0');
+
+        for (int index = 0; index < fonts.size(); index++) {
+            var entry = fonts.get(index);
+            if (entry.getValue() instanceof byte[] bs) {
+                if (bs.length == 0) {
+                    continue;
+                }
+                int node = 0;
+                for (byte b : bs) {
+                    int[] next = children.get(node);
+                    if (next == null) {
+                        children.set(node, next = new int[0x100]);
+                    }
+                    if (next[b & 0xFF] == 0) {
+                        next[b & 0xFF] = children.size();
+                        children.add(null);
+                        nodeIndexes.add(Integer.MAX_VALUE);
+                        nodeChars.add('\0');
+                    }
+                    node = next[b & 0xFF];
+                }
+                if (nodeIndexes.get(node) == Integer.MAX_VALUE) {
+                    nodeIndexes.set(node, index);
+                    nodeChars.set(node, entry.getKey());
+                }
+            } else if (entry.getValue() instanceof Byte b) {
+                if (singleIndexes[b & 0xFF] == Integer.MAX_VALUE) {
+                    singleIndexes[b & 0xFF] = index;
+                    singleChars[b & 0xFF] = entry.getKey();
+                }
+            }
+        }
+
+        this.children = children.toArray(new int[0][]);
+        this.nodeIndexes = new int[nodeIndexes.size()];
+        this.nodeChars = new char[nodeChars.size()];
+        for (int i = 0; i < this.nodeIndexes.length; i++) {
+            this.nodeIndexes[i] = nodeIndexes.get(i);
+            this.nodeChars[i] = nodeChars.get(i);
+        }
+
+        for (Map.Entry<Byte, Integer> entry : opcodes.entrySet()) {
+            opcodeLengths[entry.getKey() & 0xFF] = entry.getValue();
+        }
+    }
+
+    /**
+     * 匹配指定位置的文字
+     *
+     * @return {@link #NONE} 为没有匹配；否则低16位为文字，高16位为多字节文字的长度，单字节文字的长度为0
+     */
+    int match(byte[] bytes, int position) {
+        int first = bytes[position] & 0xFF;
+        int best = singleIndexes[first];
+        int result = best == Integer.MAX_VALUE ? NONE : singleChars[first];
+
+        // 多字节文字后面至少还需要一个字节
+        int limit = bytes.length - 1 - position;
+        int node = 0;
+        for (int length = 1; length <= limit; length++) {
+            int[] next = children[node];
+            if (next == null) {
+                break;
+            }
+            node = next[bytes[position + length - 1] & 0xFF];
+            if (node == 0) {
+                break;
+            }
+            if (nodeIndexes[node] < best) {
+                best = nodeIndexes[node];
+                result = (length << 16) | nodeChars[node];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 跳过指定位置的文字或操作码（包括参数）
+     *
+     * @return 下一个文字或操作码的位置
+     */
+    int skip(byte[] bytes, int position) {
+        int font = match(bytes, position);
+        if (font != NONE) {
+            return position + Math.max(1, font >>> 16);
+        }
+        if ((bytes[position] & 0xFF) == 0xF6) {
+            // 读取到 0x9F 或 0x63 后结束
+            for (position++; position < bytes.length; position++) {
+                switch (bytes[position] & 0xFF) {
+                    case 0x9E -> position++;
+                    case 0x8C -> position += 2;
+                    case 0x63, 0x9F -> {
+                        return position + 1;
+                    }
+                    default -> {
+                    }
+                }
+            }
+            return bytes.length;
+        }
+        return position + 1 + Math.max(0, getOpcodeLength(bytes[position]));
+    }
+
+    /**
+     * @return 操作码的参数长度，不是操作码时为 {@link #NONE}
+     */
+    int getOpcodeLength(byte opcode) {
+        return opcodeLengths[opcode & 0xFF];
+    }
+}
@@ -0,0 +1,338 @@
+package me.afoolslove.metalmaxre.editors.text;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 由 {@link WordBank} 编译的编码表
+ * <p>
+ * 中日韩统一表意文字直接查表，其余的文字使用完美哈希查找，编码时不会为每个文字创建对象
+ * <p>
+ * 文字对应的字节和 {@link WordBank#getValue(char)} 一致
+ *
+ * @author AFoolLove
+ */
+final class FontEncoder {
+    /**
+     * 没有对应的字节
+     */
+    private static final int NONE = -1;
+
+    /**
+     * 中日韩统一表意文字 [4E00-9FFF]
+     */
+    private static final int CJK_START = 0x4E00;
+    private static final int CJK_END = 0xA000;
+
+    /**
+     * 字符在 {@link WordBank#HEX_DIGITS} 中的位置
+     */
+    private static final int[] HEX_INDEXES = new int[0x80];
+
+    static {
+        Arrays.fill(HEX_INDEXES, NONE);
+        for (int i = 0; i < WordBank.HEX_DIGITS.length(); i++) {
+            HEX_INDEXES[WordBank.HEX_DIGITS.charAt(i)] = i;
+        }
+    }
+
+    /**
+     * 每个线程复制文本使用的临时数组
+     */
+    private static final ThreadLocal<char[]> CHARS = ThreadLocal.withInitial(() -> new char[0x100]);
+
+    static final FontEncoder INSTANCE = new FontEncoder();
+
+    /**
+     * 所有文字对应的字节
+     */
+    private final byte[] pool;
+    /**
+     * 中日韩统一表意文字对应的字节，高8位为字节数量，低24位为在 {@link #pool} 中的位置
+     */
+    private final int[] cjkCodes = new int[CJK_END - CJK_START];
+    /**
+     * 其余文字的完美哈希表
+     */
+    private final char[] keys;
+    private final int[] codes;
+    private final int multiplier;
+    private final int shift;
+
+    private FontEncoder() {
+        Set<Character> chars = new LinkedHashSet<>();
+        chars.addAll(WordBank.FONTS_SINGLE_REPEATED.keySet());
+        chars.addAll(WordBank.FONTS_SINGLE.keySet());
+        chars.addAll(WordBank.FONTS.keySet());
+        chars.addAll(WordBank.FONTS_REPEATED.keySet());
+
+        ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        Arrays.fill(cjkCodes, NONE);
+        char[] others = new char[chars.size()];
+        int[] otherCodes = new int[chars.size()];
+        int otherCount = 0;
+        for (Character ch : chars) {
+            Object value = WordBank.getValue(ch);
+            byte[] bytes = value instanceof byte[] bs ? bs : new byte[]{(Byte) value};
+            int code = (bytes.length << 24) | pool.size();
+            pool.writeBytes(bytes);
+            if (ch >= CJK_START && ch < CJK_END) {
+                cjkCodes[ch - CJK_START] = code;
+            } else {
+                others[otherCount] = ch;
+                otherCodes[otherCount++] = code;
+            }
+        }
+        this.pool = pool.toByteArray();
+
+        // 查找没有冲突的乘数
+        int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(1, otherCount * 2 - 1)));
+        int multiplier = 0;
+        char[] keys = null;
+        int[] codes = null;
+        search:
+        for (; bits <= 16; bits++) {
+            // 16位时使用 0x10000 作为乘数，结果就是文字本身，不会冲突
+            int attempts = bits == 16 ? 1 : 0x1000;
+            for (int attempt = 0; attempt < attempts; attempt++) {
+                multiplier = bits == 16 ? 0x10000 : (0x9E3779B1 * (attempt + 1)) | 1;
+                keys = new char[1 << bits];
+                codes = new int[1 << bits];
+                Arrays.fill(codes, NONE);
+                boolean collided = false;
+                for (int i = 0; i < otherCount; i++) {
+                    int slot = (others[i] * multiplier) >>> (32 - bits);
+                    if (codes[slot] != NONE) {
+                        collided = true;
+                        break;
+                    }
+                    keys[slot] = others[i];
+                    codes[slot] = otherCodes[i];
+                }
+                if (!collided) {
+                    break search;
+                }
+            }
+        }
+        this.keys = keys;
+        this.codes = codes;
+        this.multiplier = multiplier;
+        this.shift = 32 - bits;
+    }
+
+    /**
+     * @return 文字对应的字节，高8位为字节数量，低24位为在 {@link #pool} 中的位置，没有时为 {@link #NONE}
+     */
+    private int getCode(char ch) {
+        if (ch >= CJK_START && ch < CJK_END) {
+            return cjkCodes[ch - CJK_START];
+        }
+        int slot = (ch * multiplier) >>> shift;
+        return keys[slot] == ch ? codes[slot] : NONE;
+    }
+
+    /**
+     * @return 文字对应的字节数量，没有对应的字节时为0
+     */
+    int getLength(char ch) {
+        int code = getCode(ch);
+        return code == NONE ? 0 : code >>> 24;
+    }
+
+    /**
+     * 获取文本转换为游戏中的文本后的字节数量
+     */
+    int getLength(@NotNull CharSequence text) {
+        return encode(toChars(text), text.length(), null, 0, null);
+    }
+
+    /**
+     * 获取文本转换为游戏中的文本后的字节数量
+     */
+    int getLength(@NotNull char[] chars) {
+        return encode(chars, chars.length, null, 0, null);
+    }
+
+    /**
+     * 将文本转换为游戏中的文本，写入到数组中
+     *
+     * @return 写入的字节数量
+     */
+    int encode(@NotNull CharSequence text, @NotNull byte[] dest, int offset) {
+        return encode(toChars(text), text.length(), dest, offset, null);
+    }
+
+    /**
+     * 将文本转换为游戏中的文本，写入到数组中
+     *
+     * @return 写入的字节数量
+     */
+    int encode(@NotNull char[] chars, @NotNull byte[] dest, int offset) {
+        return encode(chars, chars.length, dest, offset, null);
+    }
+
+    /**
+     * 将文本转换为游戏中的文本，从当前位置写入到buffer中
+     * <p>
+     * *剩余空间不足时不会写入任何数据
+     *
+     * @return 写入的字节数量
+     * @throws BufferOverflowException 剩余空间不足
+     */
+    int encode(@NotNull CharSequence text, @NotNull ByteBuffer buffer) {
+        char[] chars = toChars(text);
+        int count = text.length();
+        int length = encode(chars, count, null, 0, null);
+        if (length > buffer.remaining()) {
+            throw new BufferOverflowException();
+        }
+        if (buffer.hasArray() && !buffer.isReadOnly()) {
+            encode(chars, count, buffer.array(), buffer.arrayOffset() + buffer.position(), null);
+        } else {
+            encode(chars, count, null, buffer.position(), buffer);
+        }
+        buffer.position(buffer.position() + length);
+        return length;
+    }
+
+    /**
+     * 将文本复制到当前线程的临时数组中
+     */
+    private static char[] toChars(@NotNull CharSequence text) {
+        final int count = text.length();
+        char[] chars = CHARS.get();
+        if (chars.length < count) {
+            chars = new char[Math.max(count, chars.length * 2)];
+            CHARS.set(chars);
+        }
+        if (text instanceof String string) {
+            string.getChars(0, count, chars, 0);
+        } else if (text instanceof StringBuilder builder) {
+            builder.getChars(0, count, chars, 0);
+        } else {
+            for (int i = 0; i < count; i++) {
+                chars[i] = text.charAt(i);
+            }
+        }
+        return chars;
+    }
+
+    /**
+     * 写入到dest或buffer中，都为null时只计算字节数量
+     *
+     * @param chars 文本
+     * @param count 文本的长度
+     * @return 写入的字节数量
+     */
+    private int encode(@NotNull char[] chars, int count, @Nullable byte[] dest, int offset, @Nullable ByteBuffer buffer) {
+        int length = 0;
+
+        // 通过字符获取游戏文本字节
+        charsLoop:
+        for (int i = 0; i < count; ) {
+            char ch = chars[i];
+
+            // 被 [] 所包围的文本属于十六进制 1byte，使用十六进制解析
+            if (ch == '[') {
+                while (true) {
+                    // 获取源字节
+                    if (++i >= count) {
+                        throw new ArrayIndexOutOfBoundsException(i);
+                    }
+                    ch = chars[i];
+
+                    if (ch == ' ') {
+                        // 为空就获取下一个字符
+                        continue;
+                    }
+
+                    if (ch == ']') {
+                        // 源字节读取结束
+                        i++;
+                        continue charsLoop;
+                    }
+
+                    if (++i >= count) {
+                        // 所有字节读取完毕
+                        // 写入单个源字节
+                        put(dest, buffer, offset + length++, hexDigit(ch));
+                        return length;
+                    }
+
+                    char next = chars[i];
+                    if (next == ' ') {
+                        // 写入单个源字节
+                        put(dest, buffer, offset + length++, hexDigit(ch));
+                        continue;
+                    }
+
+                    if (next == ']') {
+                        // 读取到结束符
+                        i++;
+
+                        // ']' : FF F] <-this
+                        // 写入单个源字节
+                        put(dest, buffer, offset + length++, hexDigit(ch));
+                        continue charsLoop;
+                    } else {
+                        // 写入两个字符组成的十六进制
+                        if (ch >= 'a' && ch <= 'f') {
+                            ch -= 32;
+                        }
+                        if (next >= 'a' && next <= 'f') {
+                            next -= 32;
+                        }
+                        put(dest, buffer, offset + length++, (byte) ((hexIndex(ch) * 0x10) + hexIndex(next)));
+                    }
+                }
+            }
+
+            int code = getCode(ch);
+            if (code != NONE) {
+                int start = code & 0x00FFFFFF;
+                int end = start + (code >>> 24);
+                for (int j = start; j < end; j++) {
+                    put(dest, buffer, offset + length++, pool[j]);
+                }
+            } else if (dest != null || buffer != null) {
+                // 没有这个字符
+                System.out.println("未知字符：" + ch);
+            }
+            i++;
+        }
+        return length;
+    }
+
+    private static void put(@Nullable byte[] dest, @Nullable ByteBuffer buffer, int index, byte value) {
+        if (dest != null) {
+            dest[index] = value;
+        } else if (buffer != null) {
+            buffer.put(index, value);
+        }
+    }
+
+    /**
+     * 和 {@code WordBank.HEX_DIGITS.indexOf(ch)} 一致
+     */
+    private static int hexIndex(char ch) {
+        return ch < HEX_INDEXES.length ? HEX_INDEXES[ch] : NONE;
+    }
+
+    /**
+     * 和 {@code Integer.parseInt(String.valueOf(ch), 16)} 一致
+     */
+    private static byte hexDigit(char ch) {
+        int digit = Character.digit(ch, 16);
+        if (digit < 0) {
+            throw new NumberFormatException("For input string: \"" + ch + "\"");
+        }
+        return (byte) digit;
+    }
+}
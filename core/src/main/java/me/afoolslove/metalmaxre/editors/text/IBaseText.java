@@ -24,6 +24,19 @@ public interface IBaseText extends Comparable<IBaseText> {
      */
     byte[] toByteArray();
 
+    /**
+     * 将游戏中使用的文本字节写入到数组中
+     *
+     * @param dest   写入的数组
+     * @param offset 数组中的起始位置
+     * @return 写入的字节数量
+     */
+    default int toByteArray(@NotNull byte[] dest, int offset) {
+        byte[] bytes = toByteArray();
+        System.arraycopy(bytes, 0, dest, offset, bytes.length);
+        return bytes.length;
+    }
+
     /**
      * @return 转换为文本
      */
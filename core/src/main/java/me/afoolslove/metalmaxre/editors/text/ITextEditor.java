@@ -2,6 +2,8 @@ package me.afoolslove.metalmaxre.editors.text;
 
 import me.afoolslove.metalmaxre.editors.IRomEditor;
 import me.afoolslove.metalmaxre.utils.DataAddress;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
 import java.util.Map;
@@ -37,6 +39,54 @@ public interface ITextEditor extends IRomEditor {
         return null;
     }
 
+    /**
+     * 获取每页文本在上一次应用后剩余的字节数量
+     * <p>
+     * 负数为溢出未写入的字节数量
+     *
+     * @return 页和剩余的字节数量
+     */
+    Map<Integer, Integer> getPageSlack();
+
+    /**
+     * @return 文本页溢出时是否将文本转移到其它有剩余空间的页
+     */
+    boolean isRelocateOverflow();
+
+    /**
+     * 设置文本页溢出时是否将文本转移到其它有剩余空间的页，默认开启
+     * <p>
+     * 被转移的文本追加到其它页的末尾，原位置替换为引用该文本的 [F7 文本段 页]
+     *
+     * @param relocateOverflow 是否转移
+     */
+    void setRelocateOverflow(boolean relocateOverflow);
+
+    /**
+     * @return 应用前压缩文本使用的字典压缩，未开启时为 {@code null}
+     */
+    @Nullable
+    TextCompressor getTextCompressor();
+
+    /**
+     * 设置应用前压缩文本使用的字典压缩，默认不开启
+     * <p>
+     * 压缩在文本页溢出转移之前，压缩后的剩余空间也可以用于转移
+     *
+     * @param textCompressor 字典压缩，{@code null} 为不压缩
+     */
+    void setTextCompressor(@Nullable TextCompressor textCompressor);
+
+    /**
+     * 获取所有文本页的全文索引
+     * <p>
+     * 读取后第一次查找时建立索引，之后修改的文本会在下次查找前重新索引
+     *
+     * @return 全文索引
+     */
+    @NotNull
+    TextSearchIndex getSearchIndex();
+
     /**
      * 获取城镇的名称
      *
@@ -1,5 +1,7 @@
 package me.afoolslove.metalmaxre.editors.text;
 
+import org.jetbrains.annotations.NotNull;
+
 /**
  * 游戏中的一段文本
  * <p>
@@ -34,8 +36,14 @@ public class Text extends AbstractBaseText {
 
     @Override
     public byte[] toByteArray() {
-        var chars = builder.toString();
-        return WordBank.toBytes(chars);
+        byte[] bytes = new byte[length()];
+        WordBank.toBytes(builder, bytes, 0);
+        return bytes;
+    }
+
+    @Override
+    public int toByteArray(@NotNull byte[] dest, int offset) {
+        return WordBank.toBytes(builder, dest, offset);
     }
 
     @Override
@@ -45,7 +53,7 @@ public class Text extends AbstractBaseText {
 
     @Override
     public int length() {
-        return toByteArray().length;
+        return WordBank.getLength(builder);
     }
 
     @Override
@@ -1,5 +1,6 @@
 package me.afoolslove.metalmaxre.editors.text;
 
+import me.afoolslove.metalmaxre.editors.AbstractEditorModel;
 import me.afoolslove.metalmaxre.editors.text.action.*;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -8,7 +9,7 @@ import org.slf4j.LoggerFactory;
 import java.io.ByteArrayOutputStream;
 import java.util.*;
 
-public class TextBuilder implements IBaseText {
+public class TextBuilder extends AbstractEditorModel implements IBaseText {
     private static final Logger LOGGER = LoggerFactory.getLogger(TextBuilder.class);
 
     private final List<IBaseText> texts = new ArrayList<>();
@@ -31,6 +32,7 @@ public class TextBuilder implements IBaseText {
     }
 
     public TextBuilder add(@NotNull IBaseText baseText) {
+        markDirty();
         // 如果上一个和当前都是Text，直接添加到上一个里，而不是添加到当前list里
         if (baseText instanceof Text text && !texts.isEmpty()) {
             IBaseText lastBaseText = texts.get(texts.size() - 1);
@@ -46,29 +48,45 @@ public class TextBuilder implements IBaseText {
         return this;
     }
 
+    @Override
+    protected void markDirty() {
+        super.markDirty();
+        if (getEditor() instanceof TextEditorImpl textEditor) {
+            textEditor.onTextModified(this);
+        }
+    }
+
     public boolean has9F() {
         return has9F;
     }
 
     public boolean has9F(boolean has9F) {
+        markDirty();
         this.has9F = has9F;
         return has9F;
     }
 
     @Override
     public byte[] toByteArray() {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] bytes = new byte[length()];
+        toByteArray(bytes, 0);
+        return bytes;
+    }
+
+    @Override
+    public int toByteArray(@NotNull byte[] dest, int offset) {
+        int position = offset;
         for (IBaseText text : texts) {
-            outputStream.writeBytes(text.toByteArray());
+            position += text.toByteArray(dest, position);
         }
         if (has9F()) {
-            outputStream.write(0x9F);
+            dest[position++] = (byte) 0x9F;
         }
 //        if (texts.isEmpty() || !(texts.get(texts.size() - 1) instanceof SelectAction)) {
 //            // 如果最后一个不是SelectAction，就需要0x9F结尾，否则不需要
 //            outputStream.write(0x9F);
 //        }
-        return outputStream.toByteArray();
+        return position - offset;
     }
 
     public boolean isEmpty() {
@@ -123,47 +141,43 @@ public class TextBuilder implements IBaseText {
         text:
         for (int position = 0; position < bytes.length; ) {
             // 在字库中查找对应的字符文本
-            allFonts:
-            for (Map.Entry<Character, ?> entry : WordBank.ALL_FONTS) {
-                if (entry.getValue() instanceof byte[] bs) {
-                    if (!bytesStartsWith(bytes, position, bs)) {
-                        continue allFonts;
-                    }
-                    text.append(entry.getKey());
-                    position += bs.length;
+            int font = FontDecoder.INSTANCE.match(bytes, position);
+            if (font != FontDecoder.NONE) {
+                int fontLength = font >>> 16;
+                if (fontLength != 0) {
+                    // 多byte对应的字符
+                    text.append((char) font);
+                    position += fontLength;
                     continue text;
-                } else {
-                    if (Objects.equals(entry.getValue(), bytes[position])) {
-                        if (bytes[position] == (byte) 0x9F) {
-                            if (textBuilder == null) {
-                                textBuilder = new TextBuilder();
-                            }
-                            // 断句
-                            // 保存当前文本，并清空缓存文本
-                            if (!text.isEmpty()) {
-                                textBuilder.add(new Text(text.toString()));
-                                text.setLength(0);
-                            }
-                            textBuilder.has9F(true);
+                }
+                if (bytes[position] == (byte) 0x9F) {
+                    if (textBuilder == null) {
+                        textBuilder = new TextBuilder();
+                    }
+                    // 断句
+                    // 保存当前文本，并清空缓存文本
+                    if (!text.isEmpty()) {
+                        textBuilder.add(new Text(text.toString()));
+                        text.setLength(0);
+                    }
+                    textBuilder.has9F(true);
 
-                            textBuilders.add(textBuilder);
+                    textBuilders.add(textBuilder);
 
-                            textBuilder = null;
-                        } else {
-                            // 单byte对应的字符
-                            text.append(entry.getKey());
-                        }
-                        position++;
-                        continue text;
-                    }
+                    textBuilder = null;
+                } else {
+                    // 单byte对应的字符
+                    text.append((char) font);
                 }
+                position++;
+                continue text;
             }
 
             // 单字节的操作码
-            var opcodeLength = WordBank.OPCODES.get(bytes[position]);
-            if (opcodeLength == null) {
+            int opcodeLength = FontDecoder.INSTANCE.getOpcodeLength(bytes[position]);
+            if (opcodeLength == FontDecoder.NONE) {
                 // 未知的数据
-                text.append(String.format("[%02X]", bytes[position]));
+                appendHex(text.append('['), bytes[position]).append(']');
                 position++;
                 continue text;
             }
@@ -280,7 +294,7 @@ public class TextBuilder implements IBaseText {
                                     break text;
                                 }
                                 // 填充数量
-                                text.append(String.format("%02X ", bytes[position]));
+                                appendHex(text, bytes[position]).append(' ');
                                 break;
                             case 0x63: // 0x63             (结束)
                                 // 0xF6 的结束符
@@ -297,7 +311,7 @@ public class TextBuilder implements IBaseText {
                                     break text;
                                 }
                                 // 填充数量
-                                text.append(String.format("%02X", bytes[position]));
+                                appendHex(text, bytes[position]);
                                 if (++position >= bytes.length) {
                                     // 读取完毕
                                     // 没有字符，直接结束
@@ -305,7 +319,7 @@ public class TextBuilder implements IBaseText {
                                     break text;
                                 }
                                 // 填充字符
-                                text.append(String.format("%02X ", bytes[position]));
+                                appendHex(text, bytes[position]).append(' ');
                                 break;
                             case 0x9F:
                                 if (textBuilder == null) {
@@ -329,7 +343,7 @@ public class TextBuilder implements IBaseText {
                                 break whileF6;
                             default:
                                 // 写入不认识的字节
-                                text.append(String.format("%02X", bytes[position]));
+                                appendHex(text, bytes[position]);
                                 break;
                         }
                     }
@@ -338,12 +352,12 @@ public class TextBuilder implements IBaseText {
                     // 未知或无特殊数据的，直接读取相应的字节数量
                     int len = opcodeLength + 1; // 包含opcode
                     if (len == 1) {
-                        text.append(String.format("[%02X]", bytes[position]));
+                        appendHex(text.append('['), bytes[position]).append(']');
                         position++;
                     } else {
                         text.append('[');
                         for (int j = 0; j < len; j++) {
-                            text.append(String.format("%02X", bytes[position + j]));
+                            appendHex(text, bytes[position + j]);
                         }
                         // 读取结束
                         text.append(']');
@@ -365,20 +379,11 @@ public class TextBuilder implements IBaseText {
     }
 
     /**
-     * 在数组中查找是否存在指定的数组
+     * 以两位大写十六进制添加字节
      */
-    private static boolean bytesStartsWith(byte[] bytes, int index, byte[] data) {
-        if ((bytes.length - 1) - index < data.length) {
-            // bytes里的数据，不够验证data
-            return false;
-        }
-
-        for (int i = 0; i < data.length; i++) {
-            if (bytes[index + i] != data[i]) {
-                return false;
-            }
-        }
-        return true;
+    private static StringBuilder appendHex(StringBuilder builder, byte value) {
+        return builder.append(WordBank.HEX_DIGITS.charAt((value >> 4) & 0x0F))
+                .append(WordBank.HEX_DIGITS.charAt(value & 0x0F));
     }
 
     public static List<TextBuilder> fromTexts(String text) {
@@ -0,0 +1,398 @@
+package me.afoolslove.metalmaxre.editors.text;
+
+import me.afoolslove.metalmaxre.utils.DataAddress;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 文本字典压缩
+ * <p>
+ * 将同一页中重复出现的文字作为字典追加到该页的末尾，原位置替换为引用字典的 [F7 文本段 页]
+ * <p>
+ * *只修改传入的文本列表，应用时传入文本的副本，编辑器中的文本保持不变
+ * <p>
+ * 每页单独压缩，可以并行；使用后缀数组统计重复的文字，每次贪心选择节省字节最多的文字
+ * <p>
+ * *只压缩所有文本都以 0x9F 或选择（E3、EB）结尾的页，城镇、物品和怪物名称所在的页，以及被 F7 引用的文本不会被压缩
+ *
+ * @author AFoolLove
+ */
+public class TextCompressor {
+    /**
+     * [F7 文本段 页] 的字节数量
+     */
+    private static final int REFERENCE_LENGTH = 3;
+    /**
+     * 不同文本之间的分隔符
+     */
+    private static final char SEPARATOR = '\0';
+
+    private int minEntryLength = 2;
+    private int maxEntryLength = 0x10;
+
+    private volatile Map<Integer, Integer> saved = Map.of();
+
+    /**
+     * 压缩所有页
+     *
+     * @param textEditor 文本编辑器，用于获取每页的地址
+     * @param pages      每页的文本，压缩后的文本和字典都会写入
+     * @return 每页节省的字节数量
+     */
+    public Map<Integer, Integer> compress(@NotNull ITextEditor textEditor, @NotNull Map<Integer, List<TextBuilder>> pages) {
+        // 不压缩名称所在的页
+        Set<DataAddress> namePages = new HashSet<>(Arrays.asList(textEditor.getTownNameAddress(), textEditor.getItemNameAddress(), textEditor.getMonsterNameAddress()));
+        Set<Integer> excludedPages = new HashSet<>();
+        for (Map.Entry<Integer, DataAddress> entry : textEditor.getTextAddresses().entrySet()) {
+            if (namePages.contains(entry.getValue())) {
+                excludedPages.add(entry.getKey());
+            }
+        }
+
+        // 被 F7 引用的文本
+        Map<Integer, Set<Integer>> referenced = new HashMap<>();
+        for (List<TextBuilder> texts : pages.values()) {
+            if (texts == null) {
+                continue;
+            }
+            for (TextBuilder textBuilder : texts) {
+                byte[] bytes = textBuilder.toByteArray();
+                for (int position = 0; position < bytes.length; position = FontDecoder.INSTANCE.skip(bytes, position)) {
+                    if ((bytes[position] & 0xFF) == 0xF7 && position + 2 < bytes.length
+                        && FontDecoder.INSTANCE.match(bytes, position) == FontDecoder.NONE) {
+                        referenced.computeIfAbsent(bytes[position + 2] & 0xFF, k -> new HashSet<>()).add(bytes[position + 1] & 0xFF);
+                    }
+                }
+            }
+        }
+
+        Map<Integer, Integer> saved = new ConcurrentHashMap<>();
+        pages.entrySet().parallelStream()
+                .filter(entry -> entry.getValue() != null)
+                .filter(entry -> entry.getKey() >= 0x00 && entry.getKey() <= 0xFF)
+                .filter(entry -> !excludedPages.contains(entry.getKey()))
+                .forEach(entry -> saved.put(entry.getKey(), compress(entry.getKey(), entry.getValue(), referenced.getOrDefault(entry.getKey(), Set.of()))));
+        this.saved = Collections.unmodifiableMap(new TreeMap<>(saved));
+        return this.saved;
+    }
+
+    /**
+     * 压缩一页文本
+     *
+     * @param page       页
+     * @param texts      该页的文本，压缩后的文本和字典都会写入
+     * @param referenced 被 F7 引用的文本段，这些文本不会被压缩
+     * @return 节省的字节数量
+     */
+    public int compress(int page, @NotNull List<TextBuilder> texts, @NotNull Set<Integer> referenced) {
+        if (texts.size() > 0xFF) {
+            return 0;
+        }
+        for (TextBuilder textBuilder : texts) {
+            if (!isTerminated(textBuilder)) {
+                // 不能确定追加的文本段索引
+                return 0;
+            }
+        }
+
+        int before = 0;
+        for (TextBuilder textBuilder : texts) {
+            before += textBuilder.length();
+        }
+
+        // 能够压缩的文本
+        Map<Integer, List<Segment>> rows = new TreeMap<>();
+        for (int row = 0; row < texts.size(); row++) {
+            if (!referenced.contains(row)) {
+                rows.put(row, Segment.split(texts.get(row).toText()));
+            }
+        }
+
+        Set<String> entries = new HashSet<>();
+        Set<Integer> changedRows = new TreeSet<>();
+        while (texts.size() <= 0xFF) {
+            String entry = findEntry(rows.values(), entries);
+            if (entry == null) {
+                break;
+            }
+            entries.add(entry);
+
+            int entryRow = texts.size();
+            var dictionary = new TextBuilder(new Text(entry), true);
+            texts.add(dictionary);
+
+            String reference = String.format("[F7%02X%02X]", entryRow, page);
+            for (Map.Entry<Integer, List<Segment>> row : rows.entrySet()) {
+                if (Segment.replace(row.getValue(), entry, reference)) {
+                    changedRows.add(row.getKey());
+                }
+            }
+        }
+
+        for (int row : changedRows) {
+            StringBuilder builder = new StringBuilder();
+            for (Segment segment : rows.get(row)) {
+                builder.append(segment.text);
+            }
+            texts.set(row, new TextBuilder(new Text(builder.toString()), texts.get(row).has9F()));
+        }
+
+        int after = 0;
+        for (TextBuilder textBuilder : texts) {
+            after += textBuilder.length();
+        }
+        return before - after;
+    }
+
+    /**
+     * 使用后缀数组查找节省字节最多的字典条目
+     *
+     * @param rows     所有文本
+     * @param excluded 已经使用过的字典条目
+     * @return 字典条目，没有能够节省字节的条目时为 {@code null}
+     */
+    @Nullable
+    private String findEntry(@NotNull Collection<List<Segment>> rows, @NotNull Set<String> excluded) {
+        // 将所有能够压缩的文字使用分隔符连接
+        StringBuilder builder = new StringBuilder();
+        for (List<Segment> segments : rows) {
+            for (Segment segment : segments) {
+                if (segment.plain) {
+                    builder.append(segment.text).append(SEPARATOR);
+                }
+            }
+        }
+        final char[] chars = builder.toString().toCharArray();
+        final int length = chars.length;
+        if (length == 0) {
+            return null;
+        }
+
+        // 每个文字开始的字节数量前缀和，以及到分隔符的距离
+        final int[] byteOffsets = new int[length + 1];
+        final int[] runLengths = new int[length];
+        for (int i = 0; i < length; i++) {
+            byteOffsets[i + 1] = byteOffsets[i] + FontEncoder.INSTANCE.getLength(chars[i]);
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            runLengths[i] = chars[i] == SEPARATOR ? 0 : (i + 1 < length ? runLengths[i + 1] : 0) + 1;
+        }
+
+        // 只需要比较前 maxEntryLength 个文字的后缀数组
+        final int maxLength = maxEntryLength;
+        Integer[] suffixes = new Integer[length];
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            if (runLengths[i] >= minEntryLength) {
+                suffixes[count++] = i;
+            }
+        }
+        suffixes = Arrays.copyOf(suffixes, count);
+        Arrays.sort(suffixes, (a, b) -> {
+            int limit = Math.min(maxLength, Math.min(runLengths[a], runLengths[b]));
+            for (int i = 0; i < limit; i++) {
+                if (chars[a + i] != chars[b + i]) {
+                    return Character.compare(chars[a + i], chars[b + i]);
+                }
+            }
+            return Integer.compare(Math.min(maxLength, runLengths[a]), Math.min(maxLength, runLengths[b]));
+        });
+        // 相邻后缀的公共前缀长度
+        int[] lcp = new int[count];
+        for (int i = 1; i < count; i++) {
+            int a = suffixes[i - 1];
+            int b = suffixes[i];
+            int limit = Math.min(maxLength, Math.min(runLengths[a], runLengths[b]));
+            int l = 0;
+            while (l < limit && chars[a + l] == chars[b + l]) {
+                l++;
+            }
+            lcp[i] = l;
+        }
+
+        String best = null;
+        int bestGain = 0;
+        for (int entryLength = minEntryLength; entryLength <= maxLength; entryLength++) {
+            for (int start = 0; start < count; ) {
+                int end = start + 1;
+                while (end < count && lcp[end] >= entryLength) {
+                    end++;
+                }
+                int first = suffixes[start];
+                if (end - start >= 2 && runLengths[first] >= entryLength) {
+                    int entryBytes = byteOffsets[first + entryLength] - byteOffsets[first];
+                    // 重叠的次数作为上限
+                    if (gain(end - start, entryBytes) > bestGain) {
+                        int occurrences = countNonOverlapping(suffixes, start, end, entryLength);
+                        int gain = gain(occurrences, entryBytes);
+                        if (gain > bestGain) {
+                            String entry = new String(chars, first, entryLength);
+                            if (!excluded.contains(entry)) {
+                                best = entry;
+                                bestGain = gain;
+                            }
+                        }
+                    }
+                }
+                start = end;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 以 0x9F 或选择（E3、EB）结尾的文本
+     */
+    private static boolean isTerminated(@NotNull TextBuilder textBuilder) {
+        if (textBuilder.has9F()) {
+            return true;
+        }
+        byte[] bytes = textBuilder.toByteArray();
+        int last = -1;
+        for (int position = 0; position < bytes.length; position = FontDecoder.INSTANCE.skip(bytes, position)) {
+            last = position;
+        }
+        if (last < 0 || FontDecoder.INSTANCE.match(bytes, last) != FontDecoder.NONE) {
+            return false;
+        }
+        return switch (bytes[last] & 0xFF) {
+            case 0xE3 -> last + 1 == bytes.length;
+            case 0xEB -> last + 3 == bytes.length;
+            default -> false;
+        };
+    }
+
+    /**
+     * @return 使用字典后节省的字节数量
+     */
+    private static int gain(int occurrences, int entryBytes) {
+        // 字典条目需要 0x9F 结尾
+        return occurrences * (entryBytes - REFERENCE_LENGTH) - (entryBytes + 1);
+    }
+
+    /**
+     * @return 从左到右替换时不重叠的次数
+     */
+    private static int countNonOverlapping(Integer[] suffixes, int start, int end, int entryLength) {
+        int[] positions = new int[end - start];
+        for (int i = start; i < end; i++) {
+            positions[i - start] = suffixes[i];
+        }
+        Arrays.sort(positions);
+        int occurrences = 0;
+        int next = Integer.MIN_VALUE;
+        for (int position : positions) {
+            if (position >= next) {
+                occurrences++;
+                next = position + entryLength;
+            }
+        }
+        return occurrences;
+    }
+
+    /**
+     * 每页节省的字节数量
+     *
+     * @return 上一次压缩时每页节省的字节数量
+     */
+    public Map<Integer, Integer> getSaved() {
+        return saved;
+    }
+
+    public int getMinEntryLength() {
+        return minEntryLength;
+    }
+
+    /**
+     * 设置字典条目的最少文字数量
+     */
+    public void setMinEntryLength(int minEntryLength) {
+        this.minEntryLength = Math.max(1, minEntryLength);
+    }
+
+    public int getMaxEntryLength() {
+        return maxEntryLength;
+    }
+
+    /**
+     * 设置字典条目的最多文字数量，越多越慢
+     */
+    public void setMaxEntryLength(int maxEntryLength) {
+        this.maxEntryLength = Math.max(1, maxEntryLength);
+    }
+
+    /**
+     * 文本中的一段，纯文字或不能压缩的 [] 和特殊字符
+     */
+    private static final class Segment {
+        private final String text;
+        private final boolean plain;
+
+        private Segment(String text, boolean plain) {
+            this.text = text;
+            this.plain = plain;
+        }
+
+        /**
+         * 分割文本为纯文字和不能压缩的段
+         */
+        private static List<Segment> split(@NotNull String text) {
+            List<Segment> segments = new ArrayList<>();
+            int start = 0;
+            for (int i = 0; i < text.length(); ) {
+                char ch = text.charAt(i);
+                if (ch == '[' || ch == SEPARATOR || ch == '\n' || FontEncoder.INSTANCE.getLength(ch) == 0) {
+                    if (start < i) {
+                        segments.add(new Segment(text.substring(start, i), true));
+                    }
+                    int end = i + 1;
+                    if (ch == '[') {
+                        int close = text.indexOf(']', i);
+                        end = close < 0 ? text.length() : close + 1;
+                    }
+                    segments.add(new Segment(text.substring(i, end), false));
+                    i = start = end;
+                } else {
+                    i++;
+                }
+            }
+            if (start < text.length()) {
+                segments.add(new Segment(text.substring(start), true));
+            }
+            return segments;
+        }
+
+        /**
+         * 从左到右替换纯文字中的字典条目
+         *
+         * @return 是否替换
+         */
+        private static boolean replace(@NotNull List<Segment> segments, @NotNull String entry, @NotNull String reference) {
+            boolean replaced = false;
+            for (ListIterator<Segment> iterator = segments.listIterator(); iterator.hasNext(); ) {
+                Segment segment = iterator.next();
+                if (!segment.plain || !segment.text.contains(entry)) {
+                    continue;
+                }
+                iterator.remove();
+                int start = 0;
+                int index;
+                while ((index = segment.text.indexOf(entry, start)) >= 0) {
+                    if (start < index) {
+                        iterator.add(new Segment(segment.text.substring(start, index), true));
+                    }
+                    iterator.add(new Segment(reference, false));
+                    start = index + entry.length();
+                }
+                if (start < segment.text.length()) {
+                    iterator.add(new Segment(segment.text.substring(start), true));
+                }
+                replaced = true;
+            }
+            return replaced;
+        }
+    }
+}
@@ -6,13 +6,11 @@ import me.afoolslove.metalmaxre.editors.Editor;
 import me.afoolslove.metalmaxre.utils.DataAddress;
 import me.afoolslove.metalmaxre.utils.NumberR;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  * 文本编辑器
@@ -28,6 +26,16 @@ public class TextEditorImpl extends RomBufferWrapperAbstractEditor implements IT
 
     private final Map<DataAddress, List<TextBuilder>> text = new HashMap<>();
 
+    /**
+     * 引用其它页文本的 [F7 文本段 页] 和 0x9F 的字节数量
+     */
+    private static final int RELOCATE_STUB_LENGTH = 4;
+
+    private volatile boolean relocateOverflow = true;
+    private volatile Map<Integer, Integer> pageSlack = Map.of();
+    private volatile TextCompressor textCompressor;
+    private final TextSearchIndex searchIndex = new TextSearchIndex(this);
+
     public Map<DataAddress, List<TextBuilder>> getText() {
         return text;
     }
@@ -73,19 +81,56 @@ public class TextEditorImpl extends RomBufferWrapperAbstractEditor implements IT
             // 定位，读取
             getBuffer().get(textAddress, bytes);
 
-            this.text.put(textAddress, TextBuilder.fromBytes(bytes));
+            var textBuilders = TextBuilder.fromBytes(bytes);
+            textBuilders.forEach(textBuilder -> textBuilder.setEditor(this));
+            this.text.put(textAddress, textBuilders);
         });
+        searchIndex.rebuild();
     }
 
     @Editor.Apply
     public void onApply() {
-        text.entrySet().parallelStream().forEach(entry -> {
+        // 应用时使用的文本，压缩和转移溢出的文本只修改这里的列表，编辑器中的文本保持不变
+        final Map<DataAddress, List<TextBuilder>> output = new HashMap<>();
+        for (Map.Entry<DataAddress, List<TextBuilder>> entry : text.entrySet()) {
+            output.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+
+        final TextCompressor textCompressor = getTextCompressor();
+        if (textCompressor != null) {
+            Map<Integer, List<TextBuilder>> pages = new HashMap<>();
+            for (Map.Entry<Integer, DataAddress> entry : getTextAddresses().entrySet()) {
+                pages.put(entry.getKey(), output.get(entry.getValue()));
+            }
+            long start = System.nanoTime();
+            Map<Integer, Integer> saved = textCompressor.compress(this, pages);
+            LOGGER.info("文本编辑器：字典压缩节省{}个字节，耗时{}ms",
+                    saved.values().stream().mapToInt(Integer::intValue).sum(), (System.nanoTime() - start) / 1_000_000L);
+        }
+
+        // 每段地址的文本转换为游戏使用的字节后的字节数量
+        final Map<DataAddress, Integer> sizes = new HashMap<>();
+        for (Map.Entry<DataAddress, List<TextBuilder>> entry : output.entrySet()) {
+            int size = 0;
+            for (TextBuilder textBuilder : entry.getValue()) {
+                size += textBuilder.length();
+            }
+            sizes.put(entry.getKey(), size);
+        }
+
+        if (isRelocateOverflow()) {
+            relocateOverflow(output, sizes);
+        }
+
+        output.entrySet().parallelStream().forEach(entry -> {
             final int length = entry.getKey().length();
 
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(length);
             // 将该段地址的文本转换为游戏使用的字节
-            entry.getValue().stream().map(TextBuilder::toByteArray).forEach(outputStream::writeBytes);
-            byte[] bytes = outputStream.toByteArray();
+            byte[] bytes = new byte[sizes.get(entry.getKey())];
+            int position = 0;
+            for (TextBuilder textBuilder : entry.getValue()) {
+                position += textBuilder.toByteArray(bytes, position);
+            }
             // 覆盖写入该段地址的文本
             getBuffer().put(entry.getKey(), bytes, 0, Math.min(bytes.length, length));
 
@@ -101,6 +146,181 @@ public class TextEditorImpl extends RomBufferWrapperAbstractEditor implements IT
                 }
             }
         });
+
+        Map<Integer, Integer> pageSlack = new HashMap<>();
+        for (Map.Entry<Integer, DataAddress> entry : getTextAddresses().entrySet()) {
+            Integer size = sizes.get(entry.getValue());
+            if (size != null) {
+                pageSlack.put(entry.getKey(), entry.getValue().length() - size);
+            }
+        }
+        this.pageSlack = Collections.unmodifiableMap(pageSlack);
+    }
+
+    /**
+     * 将溢出的页中的文本转移到其它有剩余空间的页
+     * <p>
+     * 被转移的文本追加到目标页的末尾，原位置替换为引用该文本的 [F7 文本段 页]，所有文本的索引都不会改变
+     * <p>
+     * *只修改应用时使用的文本，编辑器中的文本保持不变
+     * <p>
+     * *城镇、物品和怪物名称所在的页不参与转移
+     *
+     * @param texts 应用时使用的每段地址的文本，转移后会更新
+     * @param sizes 每段地址的文本的字节数量，转移后会更新
+     */
+    protected void relocateOverflow(@NotNull Map<DataAddress, List<TextBuilder>> texts, @NotNull Map<DataAddress, Integer> sizes) {
+        final Set<DataAddress> namePages = new HashSet<>(Arrays.asList(getTownNameAddress(), getItemNameAddress(), getMonsterNameAddress()));
+
+        for (Map.Entry<Integer, DataAddress> source : new TreeMap<>(getTextAddresses()).entrySet()) {
+            final DataAddress sourceAddress = source.getValue();
+            final List<TextBuilder> sourceTexts = texts.get(sourceAddress);
+            if (sourceTexts == null || namePages.contains(sourceAddress)) {
+                continue;
+            }
+            int overflow = sizes.get(sourceAddress) - sourceAddress.length();
+            if (overflow <= 0) {
+                continue;
+            }
+
+            // 能转移的文本，从短到长
+            List<Integer> rows = new ArrayList<>();
+            for (int row = 0; row < sourceTexts.size(); row++) {
+                TextBuilder textBuilder = sourceTexts.get(row);
+                if (textBuilder.length() > RELOCATE_STUB_LENGTH && isRelocatable(textBuilder)) {
+                    rows.add(row);
+                }
+            }
+            rows.sort(Comparator.comparingInt(row -> sourceTexts.get(row).length()));
+
+            while (overflow > 0 && !rows.isEmpty()) {
+                // 优先转移能够解决溢出的最短的文本，否则转移最长的文本
+                int index = rows.size() - 1;
+                for (int i = 0; i < rows.size(); i++) {
+                    if (sourceTexts.get(rows.get(i)).length() - RELOCATE_STUB_LENGTH >= overflow) {
+                        index = i;
+                        break;
+                    }
+                }
+                int row = rows.remove(index);
+                TextBuilder textBuilder = sourceTexts.get(row);
+                int length = textBuilder.length();
+
+                Map.Entry<Integer, DataAddress> target = findRelocateTarget(texts, sizes, namePages, sourceAddress, length);
+                if (target == null) {
+                    continue;
+                }
+                List<TextBuilder> targetTexts = texts.get(target.getValue());
+                int targetRow = targetTexts.size();
+
+                sourceTexts.set(row, new TextBuilder(new Text(String.format("[F7%02X%02X]", targetRow, target.getKey())), true));
+                targetTexts.add(textBuilder);
+
+                sizes.merge(sourceAddress, RELOCATE_STUB_LENGTH - length, Integer::sum);
+                sizes.merge(target.getValue(), length, Integer::sum);
+                overflow -= length - RELOCATE_STUB_LENGTH;
+
+                LOGGER.info("文本编辑器：第{}页第{}段文本（{}个字节）转移到第{}页第{}段",
+                        NumberR.toHex(2, source.getKey()), NumberR.toHex(2, row), length,
+                        NumberR.toHex(2, target.getKey()), NumberR.toHex(2, targetRow));
+            }
+        }
+    }
+
+    /**
+     * 查找能够追加指定长度文本的页，优先剩余空间最少的页
+     * <p>
+     * 目标页的所有文本都需要以 0x9F 结尾，并且追加后的文本段不能超过 0xFF
+     */
+    @Nullable
+    private Map.Entry<Integer, DataAddress> findRelocateTarget(@NotNull Map<DataAddress, List<TextBuilder>> texts,
+                                                              @NotNull Map<DataAddress, Integer> sizes,
+                                                              @NotNull Set<DataAddress> namePages,
+                                                              @NotNull DataAddress sourceAddress,
+                                                              int length) {
+        Map.Entry<Integer, DataAddress> target = null;
+        int targetSlack = Integer.MAX_VALUE;
+        for (Map.Entry<Integer, DataAddress> entry : new TreeMap<>(getTextAddresses()).entrySet()) {
+            final DataAddress address = entry.getValue();
+            final List<TextBuilder> addressTexts = texts.get(address);
+            if (addressTexts == null || address.equals(sourceAddress) || namePages.contains(address)
+                || entry.getKey() < 0x00 || entry.getKey() > 0xFF || addressTexts.size() > 0xFF) {
+                continue;
+            }
+            int slack = address.length() - sizes.get(address);
+            if (slack < length || slack >= targetSlack) {
+                continue;
+            }
+            if (!addressTexts.stream().allMatch(TextBuilder::has9F)) {
+                // 不能确定追加的文本段索引
+                continue;
+            }
+            target = entry;
+            targetSlack = slack;
+        }
+        return target;
+    }
+
+    /**
+     * 以 0x9F 结尾，并且不包含选择（E3、EB）、F6和引用（F7）的文本才能转移
+     */
+    private static boolean isRelocatable(@NotNull TextBuilder textBuilder) {
+        if (!textBuilder.has9F()) {
+            return false;
+        }
+        byte[] bytes = textBuilder.toByteArray();
+        // 最后一个字节为 0x9F
+        for (int position = 0; position < bytes.length - 1; position = FontDecoder.INSTANCE.skip(bytes, position)) {
+            if (FontDecoder.INSTANCE.match(bytes, position) != FontDecoder.NONE) {
+                continue;
+            }
+            switch (bytes[position] & 0xFF) {
+                case 0xE3, 0xEB, 0xF6, 0xF7:
+                    return false;
+                default:
+                    break;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Map<Integer, Integer> getPageSlack() {
+        return pageSlack;
+    }
+
+    @Override
+    @Nullable
+    public TextCompressor getTextCompressor() {
+        return textCompressor;
+    }
+
+    @Override
+    public void setTextCompressor(@Nullable TextCompressor textCompressor) {
+        this.textCompressor = textCompressor;
+    }
+
+    @Override
+    @NotNull
+    public TextSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * 文本通过方法修改后，重新索引该文本
+     */
+    void onTextModified(@NotNull TextBuilder textBuilder) {
+        searchIndex.invalidate(textBuilder);
+    }
+
+    @Override
+    public boolean isRelocateOverflow() {
+        return relocateOverflow;
+    }
+
+    @Override
+    public void setRelocateOverflow(boolean relocateOverflow) {
+        this.relocateOverflow = relocateOverflow;
     }
 
     @Override
@@ -146,7 +366,10 @@ public class TextEditorImpl extends RomBufferWrapperAbstractEditor implements IT
         if ((0x30 + townId) >= textBuilders.size()) {
             return;
         }
-        textBuilders.set(0x30 + townId, new TextBuilder(new Text(newName)));
+        var textBuilder = new TextBuilder(new Text(newName));
+        textBuilder.setEditor(this);
+        textBuilders.set(0x30 + townId, textBuilder);
+        setDirty(true);
     }
 
     @Override
@@ -155,7 +378,10 @@ public class TextEditorImpl extends RomBufferWrapperAbstractEditor implements IT
         if (itemId >= textBuilders.size()) {
             return;
         }
-        textBuilders.set(itemId, new TextBuilder(new Text(newName)));
+        var textBuilder = new TextBuilder(new Text(newName));
+        textBuilder.setEditor(this);
+        textBuilders.set(itemId, textBuilder);
+        setDirty(true);
     }
 
     @Override
@@ -164,7 +390,10 @@ public class TextEditorImpl extends RomBufferWrapperAbstractEditor implements IT
         if (monsterId >= textBuilders.size()) {
             return;
         }
-        textBuilders.set(monsterId, new TextBuilder(new Text(newName)));
+        var textBuilder = new TextBuilder(new Text(newName));
+        textBuilder.setEditor(this);
+        textBuilders.set(monsterId, textBuilder);
+        setDirty(true);
     }
 
     @Override
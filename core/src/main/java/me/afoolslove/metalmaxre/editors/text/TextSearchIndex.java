@@ -0,0 +1,659 @@
+package me.afoolslove.metalmaxre.editors.text;
+
+import me.afoolslove.metalmaxre.utils.DataAddress;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 所有文本页的全文索引
+ * <p>
+ * 使用单字和双字索引查找包含的文字，适用于中日文这种没有空格分隔的文本；另外将文本按文字、数字和 [] 控制码分词，用于精确和前缀查找
+ * <p>
+ * 第一次查找时索引所有文本，之后每次查找前只重新索引被替换或通过方法修改过的文本，没有修改时只比较每个文本段的对象
+ * <p>
+ * *直接修改 {@link TextBuilder} 中的 {@link Text} 时不会重新索引
+ *
+ * @author AFoolLove
+ */
+public class TextSearchIndex {
+    private static final int[] EMPTY = new int[0];
+
+    private final ITextEditor textEditor;
+
+    /**
+     * 通过方法修改过的文本
+     */
+    private final Set<TextBuilder> modified = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 每页每个文本段对应的文档
+     */
+    private final Map<Integer, int[]> pageDocs = new HashMap<>();
+
+    private int docCount;
+    private int[] docPages = new int[0x400];
+    private int[] docRows = new int[0x400];
+    private TextBuilder[] docBuilders = new TextBuilder[0x400];
+    /**
+     * 文档被索引的文本，被移除的文档为null
+     */
+    private String[] docTexts = new String[0x400];
+
+    private final Map<Character, Postings> unigrams = new HashMap<>();
+    private final Map<Integer, Postings> bigrams = new HashMap<>();
+    private final NavigableMap<String, Postings> tokens = new TreeMap<>();
+
+    public TextSearchIndex(@NotNull ITextEditor textEditor) {
+        this.textEditor = textEditor;
+    }
+
+    /**
+     * 清空索引，下次查找前重新索引所有文本
+     */
+    public synchronized void rebuild() {
+        modified.clear();
+        pageDocs.clear();
+        unigrams.clear();
+        bigrams.clear();
+        tokens.clear();
+        Arrays.fill(docBuilders, 0, docCount, null);
+        Arrays.fill(docTexts, 0, docCount, null);
+        docCount = 0;
+    }
+
+    /**
+     * 标记文本已被修改，下次查找前重新索引
+     */
+    public void invalidate(@NotNull TextBuilder textBuilder) {
+        modified.add(textBuilder);
+    }
+
+    /**
+     * 查找包含指定文字的文本
+     *
+     * @param text 文字
+     * @return 所有包含该文字的文本，按页和文本段排序
+     */
+    @NotNull
+    public synchronized List<Hit> search(@NotNull String text) {
+        refresh();
+        int[] candidates = candidates(text);
+        int count = 0;
+        for (int doc : candidates) {
+            if (docTexts[doc].contains(text)) {
+                candidates[count++] = doc;
+            }
+        }
+        return toHits(candidates, count);
+    }
+
+    /**
+     * 查找能够匹配正则表达式的文本
+     * <p>
+     * 先通过正则表达式中必须出现的文字缩小范围，再使用正则表达式确认
+     *
+     * @param pattern 正则表达式
+     * @return 所有能够匹配的文本，按页和文本段排序
+     */
+    @NotNull
+    public synchronized List<Hit> search(@NotNull Pattern pattern) {
+        refresh();
+        String literal = requiredLiteral(pattern);
+        int[] candidates = candidates(literal == null ? "" : literal);
+        int count = 0;
+        for (int doc : candidates) {
+            if (pattern.matcher(docTexts[doc]).find()) {
+                candidates[count++] = doc;
+            }
+        }
+        return toHits(candidates, count);
+    }
+
+    /**
+     * 查找包含指定词的文本
+     * <p>
+     * 词为连续的文字和数字，或者一个 [] 控制码，如：{@code 战车}、{@code [E8]}
+     *
+     * @param token 词
+     * @return 所有包含该词的文本，按页和文本段排序
+     */
+    @NotNull
+    public synchronized List<Hit> searchToken(@NotNull String token) {
+        refresh();
+        Postings postings = tokens.get(normalizeToken(token));
+        if (postings == null) {
+            return List.of();
+        }
+        return toHits(Arrays.copyOf(postings.docs, postings.size), postings.size);
+    }
+
+    /**
+     * 查找包含以指定文字开头的词的文本
+     *
+     * @param prefix 词的开头
+     * @return 所有包含这种词的文本，按页和文本段排序
+     */
+    @NotNull
+    public synchronized List<Hit> searchPrefix(@NotNull String prefix) {
+        refresh();
+        prefix = normalizeToken(prefix);
+        Postings result = new Postings();
+        for (Postings postings : tokens.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            for (int i = 0; i < postings.size; i++) {
+                result.add(postings.docs[i]);
+            }
+        }
+        return toHits(result.docs, result.size);
+    }
+
+    /**
+     * 重新索引被替换、增加、移除和修改过的文本
+     */
+    private void refresh() {
+        Set<TextBuilder> modified = null;
+        if (!this.modified.isEmpty()) {
+            modified = new HashSet<>(this.modified);
+            this.modified.removeAll(modified);
+        }
+
+        for (Map.Entry<Integer, DataAddress> entry : textEditor.getTextAddresses().entrySet()) {
+            final int page = entry.getKey();
+            List<TextBuilder> texts = textEditor.getPage(page);
+            int size = texts == null ? 0 : texts.size();
+
+            int[] docs = pageDocs.getOrDefault(page, EMPTY);
+            if (docs.length != size) {
+                // 移除多余的文本段
+                for (int row = size; row < docs.length; row++) {
+                    remove(docs[row]);
+                }
+                int[] resized = Arrays.copyOf(docs, size);
+                for (int row = docs.length; row < size; row++) {
+                    resized[row] = newDoc(page, row);
+                }
+                docs = resized;
+                pageDocs.put(page, docs);
+            }
+
+            for (int row = 0; row < size; row++) {
+                TextBuilder textBuilder = texts.get(row);
+                int doc = docs[row];
+                if (docBuilders[doc] != textBuilder || (modified != null && modified.contains(textBuilder))) {
+                    update(doc, textBuilder);
+                }
+            }
+        }
+    }
+
+    private int newDoc(int page, int row) {
+        if (docCount == docTexts.length) {
+            int capacity = docCount * 2;
+            docPages = Arrays.copyOf(docPages, capacity);
+            docRows = Arrays.copyOf(docRows, capacity);
+            docBuilders = Arrays.copyOf(docBuilders, capacity);
+            docTexts = Arrays.copyOf(docTexts, capacity);
+        }
+        docPages[docCount] = page;
+        docRows[docCount] = row;
+        return docCount++;
+    }
+
+    private void remove(int doc) {
+        if (docTexts[doc] != null) {
+            index(doc, docTexts[doc], false);
+        }
+        docBuilders[doc] = null;
+        docTexts[doc] = null;
+    }
+
+    private void update(int doc, @Nullable TextBuilder textBuilder) {
+        String text = textBuilder == null ? "" : textBuilder.toText();
+        docBuilders[doc] = textBuilder;
+        if (text.equals(docTexts[doc])) {
+            return;
+        }
+        if (docTexts[doc] != null) {
+            index(doc, docTexts[doc], false);
+        }
+        docTexts[doc] = text;
+        index(doc, text, true);
+    }
+
+    /**
+     * 添加或移除文档的所有单字、双字和词
+     */
+    private void index(int doc, @NotNull String text, boolean add) {
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char ch = text.charAt(i);
+            updatePostings(unigrams, ch, doc, add);
+            if (i + 1 < length) {
+                updatePostings(bigrams, bigram(ch, text.charAt(i + 1)), doc, add);
+            }
+        }
+        for (String token : tokenize(text)) {
+            updatePostings(tokens, token, doc, add);
+        }
+    }
+
+    private static <K> void updatePostings(@NotNull Map<K, Postings> map, @NotNull K key, int doc, boolean add) {
+        if (add) {
+            map.computeIfAbsent(key, k -> new Postings()).add(doc);
+        } else {
+            Postings postings = map.get(key);
+            if (postings != null && postings.remove(doc) && postings.size == 0) {
+                map.remove(key);
+            }
+        }
+    }
+
+    /**
+     * 可能包含指定文字的文档，包含所有的单字或双字
+     *
+     * @return 新的文档数组，可以直接修改
+     */
+    @NotNull
+    private int[] candidates(@NotNull String text) {
+        if (text.isEmpty()) {
+            int[] docs = new int[docCount];
+            int count = 0;
+            for (int doc = 0; doc < docCount; doc++) {
+                if (docTexts[doc] != null) {
+                    docs[count++] = doc;
+                }
+            }
+            return Arrays.copyOf(docs, count);
+        }
+        if (text.length() == 1) {
+            Postings postings = unigrams.get(text.charAt(0));
+            return postings == null ? EMPTY : Arrays.copyOf(postings.docs, postings.size);
+        }
+
+        // 从最少的双字开始求交集
+        Postings[] lists = new Postings[text.length() - 1];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = bigrams.get(bigram(text.charAt(i), text.charAt(i + 1)));
+            if (lists[i] == null) {
+                return EMPTY;
+            }
+        }
+        Arrays.sort(lists, Comparator.comparingInt(postings -> postings.size));
+        int[] docs = Arrays.copyOf(lists[0].docs, lists[0].size);
+        int count = docs.length;
+        for (int i = 1; i < lists.length && count > 0; i++) {
+            int kept = 0;
+            for (int j = 0; j < count; j++) {
+                if (lists[i].contains(docs[j])) {
+                    docs[kept++] = docs[j];
+                }
+            }
+            count = kept;
+        }
+        return Arrays.copyOf(docs, count);
+    }
+
+    @NotNull
+    private List<Hit> toHits(@NotNull int[] docs, int count) {
+        List<Hit> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hits.add(new Hit(docPages[docs[i]], docRows[docs[i]]));
+        }
+        hits.sort(null);
+        return hits;
+    }
+
+    private static int bigram(char first, char second) {
+        return (first << 16) | second;
+    }
+
+    /**
+     * 将文本分为连续的文字和数字，以及 [] 控制码
+     */
+    @NotNull
+    static Set<String> tokenize(@NotNull String text) {
+        Set<String> tokens = new HashSet<>();
+        final int length = text.length();
+        for (int i = 0; i < length; ) {
+            char ch = text.charAt(i);
+            if (ch == '[') {
+                int end = text.indexOf(']', i);
+                if (end < 0) {
+                    break;
+                }
+                tokens.add(normalizeToken(text.substring(i, end + 1)));
+                i = end + 1;
+            } else if (Character.isLetterOrDigit(ch)) {
+                int start = i;
+                while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                    i++;
+                }
+                tokens.add(text.substring(start, i));
+            } else {
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * [] 控制码不区分大小写和空格
+     */
+    @NotNull
+    private static String normalizeToken(@NotNull String token) {
+        if (token.startsWith("[")) {
+            return token.replace(" ", "").toUpperCase(Locale.ROOT);
+        }
+        return token;
+    }
+
+    /**
+     * 获取正则表达式匹配时必须出现的最长的文字
+     *
+     * @return 必须出现的文字，无法确定时为null
+     */
+    @Nullable
+    static String requiredLiteral(@NotNull Pattern pattern) {
+        final String regex = pattern.pattern();
+        if ((pattern.flags() & Pattern.LITERAL) != 0) {
+            return regex;
+        }
+        if ((pattern.flags() & (Pattern.CASE_INSENSITIVE | Pattern.COMMENTS)) != 0) {
+            return null;
+        }
+
+        String best = "";
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char ch = regex.charAt(i);
+            switch (ch) {
+                case '|':
+                    if (depth == 0) {
+                        // 可以匹配任意一边
+                        return null;
+                    }
+                    continue;
+                case '\\':
+                    if (++i >= regex.length()) {
+                        return null;
+                    }
+                    ch = regex.charAt(i);
+                    if (ch == 'Q') {
+                        return null;
+                    }
+                    if (Character.isLetterOrDigit(ch)) {
+                        int end = escapeEnd(regex, i);
+                        if (end < 0 || end >= regex.length()) {
+                            return null;
+                        }
+                        int escaped = escapedChar(regex, i, end);
+                        // 跳过转义的参数，如：\x41、\p{L}
+                        i = end;
+                        if (escaped < 0) {
+                            // 字符类和反向引用
+                            best = longer(best, run);
+                            continue;
+                        }
+                        ch = (char) escaped;
+                    }
+                    break;
+                case '[':
+                    // 跳过字符类
+                    best = longer(best, run);
+                    int nested = 0;
+                    for (i++; i < regex.length(); i++) {
+                        char c = regex.charAt(i);
+                        if (c == '\\') {
+                            i++;
+                        } else if (c == '[') {
+                            nested++;
+                        } else if (c == ']' && nested-- == 0) {
+                            break;
+                        }
+                    }
+                    continue;
+                case '(':
+                    depth++;
+                    best = longer(best, run);
+                    continue;
+                case ')':
+                    depth--;
+                    best = longer(best, run);
+                    continue;
+                case '*':
+                case '?':
+                case '{':
+                    // 前一个字可以不出现
+                    if (run.length() > 0) {
+                        run.setLength(run.length() - 1);
+                    }
+                    best = longer(best, run);
+                    if (ch == '{') {
+                        int end = regex.indexOf('}', i);
+                        if (end < 0) {
+                            return null;
+                        }
+                        i = end;
+                    }
+                    continue;
+                case '+':
+                case '.':
+                case '^':
+                case '$':
+                    best = longer(best, run);
+                    continue;
+                default:
+                    break;
+            }
+            if (depth == 0) {
+                run.append(ch);
+            }
+        }
+        best = longer(best, run);
+        return best.isEmpty() ? null : best;
+    }
+
+    /**
+     * 获取转义的最后一个字的位置
+     *
+     * @param start \ 之后的字的位置
+     * @return 转义的最后一个字的位置，格式错误时为-1
+     */
+    private static int escapeEnd(@NotNull String regex, int start) {
+        final int length = regex.length();
+        switch (regex.charAt(start)) {
+            case 'x':
+                // \xhh 或 \x{h...h}
+                if (start + 1 < length && regex.charAt(start + 1) == '{') {
+                    return regex.indexOf('}', start);
+                }
+                return start + 2;
+            case 'u':
+                // u和4位十六进制数
+                return start + 4;
+            case '0': {
+                // \0n、\0nn 或 \0mnn，m不超过3
+                int end = start;
+                while (end + 1 < length && end - start < 3 && isOctal(regex.charAt(end + 1))) {
+                    if (end - start == 2 && regex.charAt(start + 1) > '3') {
+                        break;
+                    }
+                    end++;
+                }
+                return end == start ? -1 : end;
+            }
+            case 'c':
+                // \cX
+                return start + 1;
+            case 'k':
+                // \k<name>
+                return regex.indexOf('>', start);
+            case 'p':
+            case 'P':
+                // \pL 或 \p{name}
+                if (start + 1 < length && regex.charAt(start + 1) == '{') {
+                    return regex.indexOf('}', start);
+                }
+                return start + 1;
+            case 'N':
+                // \N{name}
+                return regex.indexOf('}', start);
+            default:
+                break;
+        }
+        int end = start;
+        if (Character.isDigit(regex.charAt(start))) {
+            // 反向引用，可能有多位数字
+            while (end + 1 < length && Character.isDigit(regex.charAt(end + 1))) {
+                end++;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * 获取转义表示的单个字
+     *
+     * @param start \ 之后的字的位置
+     * @param end   转义的最后一个字的位置
+     * @return 转义表示的字，字符类、反向引用和超出 {@link Character#MAX_VALUE} 的字为-1
+     */
+    private static int escapedChar(@NotNull String regex, int start, int end) {
+        int value;
+        try {
+            value = switch (regex.charAt(start)) {
+                case 'x' -> regex.charAt(start + 1) == '{'
+                        ? Integer.parseInt(regex.substring(start + 2, end), 16)
+                        : Integer.parseInt(regex.substring(start + 1, end + 1), 16);
+                case 'u' -> Integer.parseInt(regex.substring(start + 1, end + 1), 16);
+                case '0' -> Integer.parseInt(regex.substring(start + 1, end + 1), 8);
+                case 't' -> '\t';
+                case 'n' -> '\n';
+                case 'r' -> '\r';
+                case 'f' -> '\f';
+                case 'a' -> 0x07;
+                case 'e' -> 0x1B;
+                default -> -1;
+            };
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        return value > Character.MAX_VALUE ? -1 : value;
+    }
+
+    private static boolean isOctal(char ch) {
+        return ch >= '0' && ch <= '7';
+    }
+
+    /**
+     * 比较后清空run
+     */
+    @NotNull
+    private static String longer(@NotNull String best, @NotNull StringBuilder run) {
+        if (run.length() > best.length()) {
+            best = run.toString();
+        }
+        run.setLength(0);
+        return best;
+    }
+
+    /**
+     * 有序的文档列表
+     */
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private int size;
+
+
+        boolean contains(int doc) {
+            return Arrays.binarySearch(docs, 0, size, doc) >= 0;
+        }
+
+        void add(int doc) {
+            // 新的文档总是最大的
+            if (size > 0 && docs[size - 1] < doc) {
+                if (size == docs.length) {
+                    docs = Arrays.copyOf(docs, size * 2);
+                }
+                docs[size++] = doc;
+                return;
+            }
+            int index = Arrays.binarySearch(docs, 0, size, doc);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            System.arraycopy(docs, index, docs, index + 1, size - index);
+            docs[index] = doc;
+            size++;
+        }
+
+        boolean remove(int doc) {
+            int index = Arrays.binarySearch(docs, 0, size, doc);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(docs, index + 1, docs, index, size - index - 1);
+            size--;
+            return true;
+        }
+    }
+
+    /**
+     * 查找到的文本段
+     */
+    public static final class Hit implements Comparable<Hit> {
+        private final int page;
+        private final int row;
+
+        public Hit(int page, int row) {
+            this.page = page;
+            this.row = row;
+        }
+
+        /**
+         * @return 文本页
+         */
+        public int getPage() {
+            return page;
+        }
+
+        /**
+         * @return 文本段
+         */
+        public int getRow() {
+            return row;
+        }
+
+        @Override
+        public int compareTo(@NotNull Hit o) {
+            int compare = Integer.compare(page, o.page);
+            return compare != 0 ? compare : Integer.compare(row, o.row);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            return o instanceof Hit hit && page == hit.page && row == hit.row;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * page + row;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%02X:%02X", page, row);
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package me.afoolslove.metalmaxre.editors.text;
 
 import me.afoolslove.metalmaxre.utils.ResourceManager;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 
@@ -265,83 +267,43 @@ public class WordBank {
      * @return 字符串转换为游戏中的文本
      */
     public static byte[] toBytes(@Nullable char[] chars) {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-        // 通过字符获取游戏文本字节
-        charsLoop:
-        for (int i = 0; i < chars.length; ) {
-            char ch = chars[i];
-
-            // 被 [] 所包围的文本属于十六进制 1byte，使用十六进制解析
-            if (ch == '[') {
-                // 梦的开始.jpg
-                while (true) {
-                    // 获取源字节
-                    ch = chars[++i];
-
-                    if (ch == ' ') {
-                        // 为空就获取下一个字符
-                        continue;
-                    }
-
-                    if (ch == ']') {
-                        // 源字节读取结束
-                        i++;
-                        continue charsLoop;
-                    }
-
-                    if (++i >= chars.length) {
-                        // 所有字节读取完毕
-                        // 写入单个源字节
-                        outputStream.write(Integer.parseInt(String.valueOf(ch), 16));
-                        return outputStream.toByteArray();
-                    }
-
-                    char next = chars[i];
-                    if (next == ' ') {
-                        // 写入单个源字节
-                        outputStream.write(Integer.parseInt(String.valueOf(ch), 16));
-                        continue;
-                    }
+        byte[] bytes = new byte[FontEncoder.INSTANCE.getLength(chars)];
+        FontEncoder.INSTANCE.encode(chars, bytes, 0);
+        return bytes;
+    }
 
-                    if (next == ']') {
-                        // 读取到结束符
-                        i++;
+    /**
+     * 将字符串转换为游戏中的文本，写入到数组中
+     * <p>
+     * *不会为每个文字创建对象，数组空间不足时抛出 {@link ArrayIndexOutOfBoundsException}
+     *
+     * @param text   字符串
+     * @param dest   写入的数组
+     * @param offset 数组中的起始位置
+     * @return 写入的字节数量
+     * @see #getLength(CharSequence)
+     */
+    public static int toBytes(@NotNull CharSequence text, @NotNull byte[] dest, int offset) {
+        return FontEncoder.INSTANCE.encode(text, dest, offset);
+    }
 
-                        // ']' : FF F] <-this
-                        // 写入单个源字节
-                        outputStream.write(Integer.parseInt(String.valueOf(ch), 16));
-                        continue charsLoop;
-                    } else {
-                        // 写入两个字符组成的十六进制
-                        if (ch >= 'a' && ch <= 'f') {
-                            ch -= 32;
-                        }
-                        if (next >= 'a' && next <= 'f') {
-                            next -= 32;
-                        }
-                        outputStream.write((HEX_DIGITS.indexOf(ch) * 0x10) + HEX_DIGITS.indexOf(next));
-                    }
-                }
-            }
+    /**
+     * 将字符串转换为游戏中的文本，从当前位置写入到buffer中
+     *
+     * @param text   字符串
+     * @param buffer 写入的buffer
+     * @return 写入的字节数量
+     * @throws java.nio.BufferOverflowException 剩余空间不足，不会写入任何数据
+     */
+    public static int toBytes(@NotNull CharSequence text, @NotNull ByteBuffer buffer) {
+        return FontEncoder.INSTANCE.encode(text, buffer);
+    }
 
-            // 从重复单byte中获取
-            Object temp = getValue(ch);
-            if (temp != null) {
-                if (temp instanceof byte[] bytes) {
-                    // 写入多字节
-                    outputStream.write(bytes, 0, bytes.length);
-                } else {
-                    // 写入单字节
-                    outputStream.write((byte) temp);
-                }
-            } else {
-                // 没有这个字符
-                System.out.println("未知字符：" + ch);
-            }
-            i++;
-        }
-        return outputStream.toByteArray();
+    /**
+     * @return 字符串转换为游戏中的文本后的字节数量
+     */
+    public static int getLength(@NotNull CharSequence text) {
+        return FontEncoder.INSTANCE.getLength(text);
     }
 
     /**
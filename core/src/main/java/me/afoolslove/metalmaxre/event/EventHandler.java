@@ -2,19 +2,131 @@ package me.afoolslove.metalmaxre.event;
 
 import me.afoolslove.metalmaxre.editors.Editor;
 import me.afoolslove.metalmaxre.event.editors.EditorEvent;
+import me.afoolslove.metalmaxre.event.editors.editor.EditorApplyEvent;
+import me.afoolslove.metalmaxre.event.editors.editor.EditorLoadEvent;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 事件处理器
+ * <p>
+ * 监听器的方法在注册时解析为 {@link MethodHandle}，每种事件第一次通知时生成该事件的调用表，
+ * 之后的通知只遍历调用表，注册或注销监听器后重新生成
+ * <p>
+ * 通过 {@link #setAsyncMode(AsyncMode)} 开启异步通知，每个监听器有自己的队列，
+ * 通知事件的线程（如加载编辑器的线程）不会等待监听器
  *
  * @author AFoolLove
  */
 public class EventHandler {
-    private final Map<Class<Event>, Set<EventListener>> eventListeners = new HashMap<>();
+    /**
+     * 调用监听方法的类型，参数为事件
+     */
+    private static final MethodType DISPATCH_TYPE = MethodType.methodType(void.class, Event.class);
+
+    /**
+     * 监听器类中所有监听方法
+     */
+    private static final ClassValue<ListenerMethod[]> LISTENER_METHODS = new ClassValue<>() {
+        @Override
+        protected ListenerMethod[] computeValue(@NotNull Class<?> type) {
+            var methods = new ArrayList<ListenerMethod>();
+            for (Method declaredMethod : type.getDeclaredMethods()) {
+                if (declaredMethod.getParameterCount() != 1) {
+                    continue;
+                }
+                var parameter = declaredMethod.getParameters()[0];
+                var targetEditor = parameter.getAnnotation(Editor.TargetEditor.class);
+                try {
+                    declaredMethod.setAccessible(true);
+                    var handle = MethodHandles.lookup().unreflect(declaredMethod);
+                    if (Modifier.isStatic(declaredMethod.getModifiers())) {
+                        // 与实例方法相同，第一个参数为监听器
+                        handle = MethodHandles.dropArguments(handle, 0, Object.class);
+                    }
+                    methods.add(new ListenerMethod(parameter.getType(), handle,
+                            // 如果没有指定编辑器，就是包括所有编辑器
+                            targetEditor == null || targetEditor.value().length == 0 ? null : targetEditor.value()));
+                } catch (RuntimeException | IllegalAccessException e) {
+                    // 无法访问的方法
+                    e.printStackTrace();
+                }
+            }
+            return methods.toArray(ListenerMethod[]::new);
+        }
+    };
+
+    private final Map<Class<Event>, Set<EventListener>> eventListeners = new LinkedHashMap<>();
+
+    /**
+     * key: 事件类
+     * value: 该事件需要调用的所有监听方法
+     */
+    private final Map<Class<?>, Dispatcher[]> dispatchers = new ConcurrentHashMap<>();
+
+    /**
+     * 异步通知的方式，为null时同步通知
+     */
+    @Nullable
+    private volatile AsyncMode asyncMode;
+    /**
+     * 异步通知时每个监听器的队列
+     */
+    private final Map<EventListener, ListenerQueue> listenerQueues = new ConcurrentHashMap<>();
+    /**
+     * 异步通知时因为队列已满或线程池拒绝被丢弃的事件数量
+     */
+    private final LongAdder droppedEvents = new LongAdder();
+
+    /**
+     * 设置异步通知
+     * <p>
+     * *切换为同步通知后，队列中剩余的事件仍然会被异步通知
+     *
+     * @param asyncMode 异步通知的方式，为null时同步通知
+     */
+    public void setAsyncMode(@Nullable AsyncMode asyncMode) {
+        this.asyncMode = asyncMode;
+    }
+
+    @Nullable
+    public AsyncMode getAsyncMode() {
+        return asyncMode;
+    }
+
+    /**
+     * @return 异步通知时因为队列已满或线程池拒绝被丢弃的事件数量
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    /**
+     * 等待所有监听器的队列中的事件通知完毕
+     *
+     * @param timeout 最长等待时间
+     * @param unit    时间单位
+     * @return 是否在等待时间内通知完毕
+     */
+    public boolean awaitIdle(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ListenerQueue queue : listenerQueues.values()) {
+            if (!queue.awaitIdle(deadline)) {
+                return false;
+            }
+        }
+        return true;
+    }
 
     /**
      * 注册这个监听器里的所有有效的事件监听器
@@ -22,12 +134,9 @@ public class EventHandler {
      * @param listener 被注册的监听器
      */
     public synchronized void register(@NotNull EventListener listener) {
-        for (Method declaredMethod : listener.getClass().getDeclaredMethods()) {
-            if (declaredMethod.getParameterCount() == 1) {
-                var parameter = declaredMethod.getParameters()[0];
-                if (Event.class.isAssignableFrom(parameter.getType())) {
-                    register((Class<Event>) parameter.getType(), listener);
-                }
+        for (ListenerMethod method : LISTENER_METHODS.get(listener.getClass())) {
+            if (Event.class.isAssignableFrom(method.eventType)) {
+                register((Class<Event>) method.eventType, listener);
             }
         }
     }
@@ -39,8 +148,10 @@ public class EventHandler {
      * @param listener  被注册的监听器
      */
     public synchronized void register(@NotNull Class<Event> eventType, @NotNull EventListener listener) {
-        var listeners = eventListeners.computeIfAbsent(eventType, k -> new HashSet<>());
-        listeners.add(listener);
+        var listeners = eventListeners.computeIfAbsent(eventType, k -> new LinkedHashSet<>());
+        if (listeners.add(listener)) {
+            dispatchers.clear();
+        }
     }
 
     /**
@@ -49,12 +160,9 @@ public class EventHandler {
      * @param listener 被注销所有事件监听的监听器
      */
     public synchronized void unregister(@NotNull EventListener listener) {
-        for (Method declaredMethod : listener.getClass().getDeclaredMethods()) {
-            if (declaredMethod.getParameterCount() == 1) {
-                var parameter = declaredMethod.getParameters()[0];
-                if (Event.class.isAssignableFrom(parameter.getType())) {
-                    unregister((Class<Event>) parameter.getType(), listener);
-                }
+        for (ListenerMethod method : LISTENER_METHODS.get(listener.getClass())) {
+            if (Event.class.isAssignableFrom(method.eventType)) {
+                unregister((Class<Event>) method.eventType, listener);
             }
         }
     }
@@ -70,7 +178,16 @@ public class EventHandler {
         if (listeners == null || listeners.isEmpty()) {
             return;
         }
-        listeners.remove(listener);
+        if (listeners.remove(listener)) {
+            dispatchers.clear();
+            if (eventListeners.values().stream().noneMatch(set -> set.contains(listener))) {
+                // 丢弃还未通知的事件
+                var queue = listenerQueues.remove(listener);
+                if (queue != null) {
+                    queue.clear();
+                }
+            }
+        }
     }
 
     /**
@@ -79,47 +196,336 @@ public class EventHandler {
      * @param event 发生的事件
      */
     public void callEvent(@NotNull Event event) {
-        eventListeners.entrySet().stream()
-                // 过滤出相关事件
-                // 目标事件类和它父类才能接受事件
-                .filter(entry -> entry.getKey().isInstance(event))
-                .map(Map.Entry::getValue)
-                .flatMap(Collection::stream) // 将所有事件监听器合并
-                .distinct() // 去重
-                .forEach(eventListener -> {
-                    for (Method declaredMethod : eventListener.getClass().getDeclaredMethods()) {
-                        if (declaredMethod.getParameterCount() == 1) {
-                            var parameter = declaredMethod.getParameters()[0];
-                            if (!parameter.getType().isInstance(event)) {
-                                // 参数事件类与事件类不同或不是父子关系
-                                continue;
-                            }
-
-                            var targetEditor = parameter.getAnnotation(Editor.TargetEditor.class);
-                            if (targetEditor != null && event instanceof EditorEvent editorEvent) {
-                                // 如果没有指定编辑器，就是包括所有编辑器
-                                if (targetEditor.value().length != 0) {
-                                    // 指定了编辑器
-                                    var any = Arrays.stream(targetEditor.value())
-                                            .filter(clazz -> clazz.isInstance(editorEvent.getEditor()))
-                                            .findAny();
-                                    if (any.isEmpty()) {
-                                        // 不是指定的编辑器，不执行这个监听器
-                                        continue;
-                                    }
-                                }
-                            }
-
-                            try {
-                                declaredMethod.setAccessible(true);
-                                declaredMethod.invoke(eventListener, parameter.getType().cast(event));
-                            } catch (IllegalAccessException | InvocationTargetException ex) {
-                                // throw new RuntimeException(ex);
-                                ex.printStackTrace();
-                            }
-                        }
+        var eventDispatchers = dispatchers.get(event.getClass());
+        if (eventDispatchers == null) {
+            eventDispatchers = createDispatchers(event.getClass());
+        }
+        var asyncMode = this.asyncMode;
+        for (Dispatcher dispatcher : eventDispatchers) {
+            if (dispatcher.targetEditors != null && event instanceof EditorEvent editorEvent
+                && !dispatcher.isTargetEditor(editorEvent.getEditor())) {
+                // 不是指定的编辑器，不执行这个监听器
+                continue;
+            }
+            if (asyncMode != null) {
+                listenerQueues.computeIfAbsent(dispatcher.listener, k -> new ListenerQueue()).offer(asyncMode, dispatcher, event);
+                continue;
+            }
+            dispatcher.dispatch(event);
+        }
+    }
+
+    /**
+     * 异步通知时合并事件的键，同一个监听方法的同一个编辑器的同类事件只保留最新的一个
+     */
+    @Nullable
+    private static Object coalesceKey(@NotNull Dispatcher dispatcher, @NotNull Event event) {
+        if (event instanceof EditorLoadEvent || event instanceof EditorApplyEvent) {
+            return List.of(dispatcher, event.getClass(), ((EditorEvent) event).getEditor());
+        }
+        return null;
+    }
+
+    /**
+     * 异步通知的方式
+     */
+    public static class AsyncMode {
+        private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(@NotNull Runnable runnable) {
+                var thread = new Thread(runnable, "event-" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        private final int capacity;
+        private final boolean coalesce;
+        @NotNull
+        private final BackPressure backPressure;
+        @NotNull
+        private final Executor executor;
+
+        /**
+         * @param capacity     每个监听器的队列大小
+         * @param coalesce     合并同一个编辑器重复的 {@link EditorLoadEvent} 和 {@link EditorApplyEvent}
+         * @param backPressure 队列已满时的处理方式
+         */
+        public AsyncMode(int capacity, boolean coalesce, @NotNull BackPressure backPressure) {
+            this(capacity, coalesce, backPressure, DEFAULT_EXECUTOR);
+        }
+
+        /**
+         * @param capacity     每个监听器的队列大小
+         * @param coalesce     合并同一个编辑器重复的 {@link EditorLoadEvent} 和 {@link EditorApplyEvent}
+         * @param backPressure 队列已满时的处理方式
+         * @param executor     通知监听器的线程池，同一个监听器同时只会占用一个线程
+         */
+        public AsyncMode(int capacity, boolean coalesce, @NotNull BackPressure backPressure, @NotNull Executor executor) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("capacity must be positive: " + capacity);
+            }
+            this.capacity = capacity;
+            this.coalesce = coalesce;
+            this.backPressure = backPressure;
+            this.executor = executor;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public boolean isCoalesce() {
+            return coalesce;
+        }
+
+        @NotNull
+        public BackPressure getBackPressure() {
+            return backPressure;
+        }
+
+        @NotNull
+        public Executor getExecutor() {
+            return executor;
+        }
+    }
+
+    /**
+     * 异步通知时监听器的队列已满的处理方式
+     */
+    public enum BackPressure {
+        /**
+         * 丢弃队列中最早的事件
+         */
+        DROP_OLDEST,
+        /**
+         * 丢弃新的事件
+         */
+        DROP_NEWEST,
+        /**
+         * 等待队列有空位
+         * <p>
+         * *通知事件的线程会被阻塞，不要在监听器中通知事件
+         */
+        BLOCK
+    }
+
+    /**
+     * 一个监听器的事件队列，按顺序通知，同时只有一个线程在通知
+     */
+    private class ListenerQueue implements Runnable {
+        /**
+         * key: 合并事件的键，不合并时为事件本身
+         * value: 等待通知的事件
+         */
+        private final LinkedHashMap<Object, Pending> pending = new LinkedHashMap<>();
+        /**
+         * 是否正在通知
+         */
+        private boolean running = false;
+        private Executor executor;
+
+        synchronized void offer(@NotNull AsyncMode asyncMode, @NotNull Dispatcher dispatcher, @NotNull Event event) {
+            Object key = asyncMode.isCoalesce() ? coalesceKey(dispatcher, event) : null;
+            var value = new Pending(dispatcher, event);
+            if (key != null && pending.remove(key) != null) {
+                // 合并，移除旧的事件后添加到末尾
+                pending.put(key, value);
+                return;
+            }
+            while (pending.size() >= asyncMode.getCapacity()) {
+                if (asyncMode.getBackPressure() == BackPressure.DROP_NEWEST) {
+                    droppedEvents.increment();
+                    return;
+                } else if (asyncMode.getBackPressure() == BackPressure.DROP_OLDEST) {
+                    var iterator = pending.values().iterator();
+                    iterator.next();
+                    iterator.remove();
+                    droppedEvents.increment();
+                } else {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        droppedEvents.increment();
+                        return;
                     }
-                });
+                }
+            }
+            pending.put(key == null ? value : key, value);
+            if (!running) {
+                running = true;
+                executor = asyncMode.getExecutor();
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    rejected();
+                    throw e;
+                }
+            }
+        }
+
+        /**
+         * 线程池拒绝了通知，丢弃队列中的事件，之后的事件重新提交到线程池
+         */
+        private synchronized void rejected() {
+            droppedEvents.add(pending.size());
+            pending.clear();
+            running = false;
+            notifyAll();
+        }
+
+        @Override
+        public void run() {
+            // 每次最多通知一定数量的事件，避免一直占用线程
+            for (int i = 0; i < 0x100; i++) {
+                Pending next;
+                synchronized (this) {
+                    var iterator = pending.values().iterator();
+                    if (!iterator.hasNext()) {
+                        running = false;
+                        notifyAll();
+                        return;
+                    }
+                    next = iterator.next();
+                    iterator.remove();
+                    // 通知等待空位的线程
+                    notifyAll();
+                }
+                next.dispatcher.dispatch(next.event);
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // 如：线程池已经被关闭
+                rejected();
+                e.printStackTrace();
+            }
+        }
+
+        synchronized void clear() {
+            pending.clear();
+            notifyAll();
+        }
+
+        synchronized boolean awaitIdle(long deadline) throws InterruptedException {
+            while (running || !pending.isEmpty()) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 等待通知的事件
+     */
+    private static class Pending {
+        final Dispatcher dispatcher;
+        final Event event;
+
+        Pending(@NotNull Dispatcher dispatcher, @NotNull Event event) {
+            this.dispatcher = dispatcher;
+            this.event = event;
+        }
+    }
+
+    /**
+     * 生成事件的调用表
+     */
+    private synchronized Dispatcher[] createDispatchers(@NotNull Class<?> eventClass) {
+        var eventDispatchers = dispatchers.get(eventClass);
+        if (eventDispatchers != null) {
+            return eventDispatchers;
+        }
+        // 目标事件类和它父类才能接受事件
+        var listeners = new LinkedHashSet<EventListener>();
+        for (Map.Entry<Class<Event>, Set<EventListener>> entry : eventListeners.entrySet()) {
+            if (entry.getKey().isAssignableFrom(eventClass)) {
+                listeners.addAll(entry.getValue());
+            }
+        }
+        var list = new ArrayList<Dispatcher>();
+        for (EventListener listener : listeners) {
+            for (ListenerMethod method : LISTENER_METHODS.get(listener.getClass())) {
+                if (!method.eventType.isAssignableFrom(eventClass)) {
+                    // 参数事件类与事件类不同或不是父子关系
+                    continue;
+                }
+                var handle = method.handle.bindTo(listener).asType(DISPATCH_TYPE);
+                list.add(new Dispatcher(listener, handle, method.targetEditors));
+            }
+        }
+        eventDispatchers = list.toArray(Dispatcher[]::new);
+        dispatchers.put(eventClass, eventDispatchers);
+        return eventDispatchers;
+    }
 
+    /**
+     * 监听器类中的一个监听方法
+     */
+    private static class ListenerMethod {
+        /**
+         * 参数的事件类
+         */
+        final Class<?> eventType;
+        /**
+         * (监听器, 事件)void
+         */
+        final MethodHandle handle;
+        /**
+         * 指定的编辑器，为null时包括所有编辑器
+         */
+        final Class<?>[] targetEditors;
+
+        ListenerMethod(@NotNull Class<?> eventType, @NotNull MethodHandle handle, Class<?>[] targetEditors) {
+            this.eventType = eventType;
+            this.handle = handle.asType(MethodType.methodType(void.class, Object.class, eventType));
+            this.targetEditors = targetEditors;
+        }
+    }
+
+    /**
+     * 调用表中的一项，绑定了监听器的监听方法
+     */
+    private static class Dispatcher {
+        final EventListener listener;
+        /**
+         * (事件)void
+         */
+        final MethodHandle handle;
+        /**
+         * 指定的编辑器，为null时包括所有编辑器
+         */
+        final Class<?>[] targetEditors;
+
+        Dispatcher(@NotNull EventListener listener, @NotNull MethodHandle handle, Class<?>[] targetEditors) {
+            this.listener = listener;
+            this.handle = handle;
+            this.targetEditors = targetEditors;
+        }
+
+        void dispatch(@NotNull Event event) {
+            try {
+                handle.invokeExact(event);
+            } catch (Throwable ex) {
+                // throw new RuntimeException(ex);
+                ex.printStackTrace();
+            }
+        }
+
+        boolean isTargetEditor(Object editor) {
+            for (Class<?> targetEditor : targetEditors) {
+                if (targetEditor.isInstance(editor)) {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 }
@@ -0,0 +1,311 @@
+package me.afoolslove.metalmaxre.io;
+
+import me.afoolslove.metalmaxre.RomBuffer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * BPS补丁
+ * <p>
+ * 格式："BPS1" + 源大小 + 目标大小 + 元数据大小 + 元数据 + 操作... + 源CRC32 + 目标CRC32 + 补丁CRC32
+ *
+ * @author AFoolLove
+ */
+public class BpsPatch {
+    public static final byte[] HEADER = "BPS1".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int SOURCE_READ = 0;
+    private static final int TARGET_READ = 1;
+    private static final int SOURCE_COPY = 2;
+    private static final int TARGET_COPY = 3;
+
+    private static final int BLOCK_SIZE = 0x2000;
+
+    private BpsPatch() {
+    }
+
+    /**
+     * 对比源ROM和目标ROM，导出差异为BPS补丁
+     * <p>
+     * *只使用SourceRead和TargetRead操作
+     *
+     * @param source       源ROM
+     * @param sourceLength 源ROM的长度
+     * @param target       目标ROM
+     * @param targetLength 目标ROM的长度
+     * @param patch        补丁的输出流
+     */
+    public static void export(@NotNull InputStream source, long sourceLength,
+                              @NotNull InputStream target, long targetLength,
+                              @NotNull OutputStream patch) throws IOException {
+        var patchCrc = new CRC32();
+        var out = new CheckedOutputStream(new BufferedOutputStream(patch), patchCrc);
+        out.write(HEADER);
+        writeNumber(out, sourceLength);
+        writeNumber(out, targetLength);
+        writeNumber(out, 0); // 没有元数据
+
+        var sourceCrc = new CRC32();
+        var targetCrc = new CRC32();
+        byte[] src = new byte[BLOCK_SIZE];
+        byte[] dst = new byte[BLOCK_SIZE];
+        // 未写入的TargetRead数据，只会在一个块中
+        int targetReadStart = -1;
+        long sourceRead = 0;
+
+        long position = 0;
+        for (int dstLength; (dstLength = target.readNBytes(dst, 0x00000, BLOCK_SIZE)) > 0; ) {
+            int srcLength = source.readNBytes(src, 0x00000, dstLength);
+            sourceCrc.update(src, 0x00000, srcLength);
+            targetCrc.update(dst, 0x00000, dstLength);
+
+            for (int i = 0; i < dstLength; i++, position++) {
+                boolean equal = i < srcLength && position < sourceLength && src[i] == dst[i];
+                if (equal) {
+                    if (targetReadStart != -1) {
+                        writeTargetRead(out, dst, targetReadStart, i - targetReadStart);
+                        targetReadStart = -1;
+                    }
+                    sourceRead++;
+                } else {
+                    if (sourceRead > 0) {
+                        writeNumber(out, ((sourceRead - 1) << 2) | SOURCE_READ);
+                        sourceRead = 0;
+                    }
+                    if (targetReadStart == -1) {
+                        targetReadStart = i;
+                    }
+                }
+            }
+            if (targetReadStart != -1) {
+                writeTargetRead(out, dst, targetReadStart, dstLength - targetReadStart);
+                targetReadStart = -1;
+            }
+        }
+        if (sourceRead > 0) {
+            writeNumber(out, ((sourceRead - 1) << 2) | SOURCE_READ);
+        }
+
+        // 源ROM剩余的数据
+        for (int srcLength; (srcLength = source.readNBytes(src, 0x00000, BLOCK_SIZE)) > 0; ) {
+            sourceCrc.update(src, 0x00000, srcLength);
+        }
+
+        writeU32(out, sourceCrc.getValue());
+        writeU32(out, targetCrc.getValue());
+        writeU32(out, patchCrc.getValue());
+        out.flush();
+    }
+
+    private static void writeTargetRead(@NotNull OutputStream out, byte[] data, int offset, int length) throws IOException {
+        writeNumber(out, ((long) (length - 1) << 2) | TARGET_READ);
+        out.write(data, offset, length);
+    }
+
+    /**
+     * 将BPS补丁应用到ROM
+     * <p>
+     * *ROM需要与补丁的源ROM相同，不支持变更ROM大小的补丁
+     * <p>
+     * *应用失败时会还原被写入的数据
+     *
+     * @param patch  补丁的输入流
+     * @param target 被应用补丁的ROM
+     */
+    public static void apply(@NotNull InputStream patch, @NotNull RomBuffer target) throws IOException {
+        var patchCrc = new CRC32();
+        var in = new CheckedInputStream(new BufferedInputStream(patch), patchCrc);
+        if (!Arrays.equals(in.readNBytes(HEADER.length), HEADER)) {
+            throw new IOException("not a bps patch");
+        }
+        long sourceLength = readNumber(in);
+        long targetLength = readNumber(in);
+        in.skipNBytes(readNumber(in)); // 忽略元数据
+        if (sourceLength != target.getRomLength() || targetLength != sourceLength) {
+            throw new IOException(String.format("bps patch size is not supported: %X->%X, rom: %X", sourceLength, targetLength, target.getRomLength()));
+        }
+        final long sourceCrc = crc32(target);
+
+        // 被覆盖的源数据，用于SourceCopy和失败时还原
+        var originals = new TreeMap<Integer, byte[]>();
+        try {
+            byte[] data = new byte[BLOCK_SIZE];
+            int outputOffset = 0;
+            int sourceRelativeOffset = 0;
+            int targetRelativeOffset = 0;
+            while (outputOffset < targetLength) {
+                long command = readNumber(in);
+                int length = (int) ((command >>> 2) + 1);
+                if (outputOffset + (long) length > targetLength) {
+                    throw new IOException("bps patch out of rom range");
+                }
+                switch ((int) (command & 0B11)) {
+                    case SOURCE_READ -> {
+                        // 源数据与当前位置的数据相同，跳过
+                        outputOffset += length;
+                    }
+                    case TARGET_READ -> {
+                        while (length > 0) {
+                            int count = Math.min(length, BLOCK_SIZE);
+                            readFully(in, data, count);
+                            write(target, originals, outputOffset, data, count);
+                            outputOffset += count;
+                            length -= count;
+                        }
+                    }
+                    case SOURCE_COPY -> {
+                        sourceRelativeOffset += readOffset(in);
+                        while (length > 0) {
+                            int count = Math.min(length, BLOCK_SIZE);
+                            readSource(target, originals, sourceRelativeOffset, data, count);
+                            write(target, originals, outputOffset, data, count);
+                            sourceRelativeOffset += count;
+                            outputOffset += count;
+                            length -= count;
+                        }
+                    }
+                    case TARGET_COPY -> {
+                        targetRelativeOffset += readOffset(in);
+                        while (length > 0) {
+                            // 目标数据可能与输出的数据重叠，每次最多复制到当前输出的位置
+                            int count = Math.min(Math.min(length, BLOCK_SIZE), outputOffset - targetRelativeOffset);
+                            if (count <= 0) {
+                                throw new IOException("bps patch target copy out of range");
+                            }
+                            target.getRaw(targetRelativeOffset, data, 0x00000, count);
+                            write(target, originals, outputOffset, data, count);
+                            targetRelativeOffset += count;
+                            outputOffset += count;
+                            length -= count;
+                        }
+                    }
+                }
+            }
+
+            long expectedSourceCrc = readU32(in);
+            long expectedTargetCrc = readU32(in);
+            long actualPatchCrc = patchCrc.getValue();
+            long expectedPatchCrc = readU32(in);
+            if (expectedPatchCrc != actualPatchCrc) {
+                throw new IOException("bps patch checksum mismatch");
+            }
+            if (expectedSourceCrc != sourceCrc) {
+                throw new IOException("bps patch source checksum mismatch");
+            }
+            if (expectedTargetCrc != crc32(target)) {
+                throw new IOException("bps patch target checksum mismatch");
+            }
+        } catch (IOException | RuntimeException e) {
+            // 还原被写入的数据
+            for (Map.Entry<Integer, byte[]> entry : originals.entrySet()) {
+                target.putRaw(entry.getKey(), entry.getValue(), 0x00000, entry.getValue().length);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 写入数据并记录被覆盖的数据
+     */
+    private static void write(@NotNull RomBuffer target, @NotNull TreeMap<Integer, byte[]> originals, int position, byte[] data, int length) {
+        byte[] original = new byte[length];
+        target.getRaw(position, original, 0x00000, length);
+        originals.put(position, original);
+        target.putRaw(position, data, 0x00000, length);
+    }
+
+    /**
+     * 读取源数据，已经被覆盖的部分使用被覆盖前的数据
+     */
+    private static void readSource(@NotNull RomBuffer target, @NotNull TreeMap<Integer, byte[]> originals, int position, byte[] data, int length) {
+        target.getRaw(position, data, 0x00000, length);
+        var floor = originals.floorKey(position);
+        for (Map.Entry<Integer, byte[]> entry : originals.subMap(floor == null ? position : floor, true, position + length, false).entrySet()) {
+            int from = Math.max(position, entry.getKey());
+            int to = Math.min(position + length, entry.getKey() + entry.getValue().length);
+            if (from < to) {
+                System.arraycopy(entry.getValue(), from - entry.getKey(), data, from - position, to - from);
+            }
+        }
+    }
+
+    private static long crc32(@NotNull RomBuffer romBuffer) throws IOException {
+        var crc = new CRC32();
+        byte[] data = new byte[BLOCK_SIZE];
+        try (var in = romBuffer.newInputStream()) {
+            for (int length; (length = in.read(data)) > 0; ) {
+                crc.update(data, 0x00000, length);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void readFully(@NotNull InputStream in, byte[] data, int length) throws IOException {
+        if (in.readNBytes(data, 0x00000, length) != length) {
+            throw new EOFException();
+        }
+    }
+
+    private static void writeNumber(@NotNull OutputStream out, long data) throws IOException {
+        while (true) {
+            int x = (int) (data & 0x7F);
+            data >>>= 7;
+            if (data == 0) {
+                out.write(0x80 | x);
+                break;
+            }
+            out.write(x);
+            data--;
+        }
+    }
+
+    private static long readNumber(@NotNull InputStream in) throws IOException {
+        long data = 0;
+        long shift = 1;
+        while (true) {
+            int x = in.read();
+            if (x == -1) {
+                throw new EOFException();
+            }
+            data += (x & 0x7F) * shift;
+            if ((x & 0x80) != 0) {
+                break;
+            }
+            shift <<= 7;
+            data += shift;
+        }
+        return data;
+    }
+
+    private static int readOffset(@NotNull InputStream in) throws IOException {
+        long offset = readNumber(in);
+        return (int) ((offset & 1) != 0 ? -(offset >>> 1) : (offset >>> 1));
+    }
+
+    private static void writeU32(@NotNull OutputStream out, long value) throws IOException {
+        out.write((int) (value & 0xFF));
+        out.write((int) ((value >>> 8) & 0xFF));
+        out.write((int) ((value >>> 16) & 0xFF));
+        out.write((int) ((value >>> 24) & 0xFF));
+    }
+
+    private static long readU32(@NotNull InputStream in) throws IOException {
+        long value = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            value |= (long) b << (i * 8);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,176 @@
+package me.afoolslove.metalmaxre.io;
+
+import me.afoolslove.metalmaxre.RomBuffer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * IPS补丁
+ * <p>
+ * 格式："PATCH" + (offset(3) + length(2) + data)... + "EOF" [+ truncate(3)]
+ * <p>
+ * *length为0时为RLE记录：offset(3) + 0x0000 + length(2) + value(1)
+ *
+ * @author AFoolLove
+ */
+public class IpsPatch {
+    public static final byte[] HEADER = "PATCH".getBytes(StandardCharsets.US_ASCII);
+    public static final byte[] FOOTER = "EOF".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * 与"EOF"相同的偏移，不能作为记录的偏移
+     */
+    private static final int EOF_OFFSET = 0x454F46;
+    private static final int MAX_OFFSET = 0xFFFFFF;
+    private static final int MAX_RECORD_LENGTH = 0xFFFF;
+    /**
+     * 两段差异之间相同的数据不超过该长度时合并为一条记录，一条记录的头为5字节
+     */
+    private static final int MERGE_GAP = 5;
+    private static final int BLOCK_SIZE = 0x2000;
+
+    private IpsPatch() {
+    }
+
+    /**
+     * 对比源ROM和目标ROM，导出差异为IPS补丁
+     *
+     * @param source 源ROM
+     * @param target 目标ROM
+     * @param patch  补丁的输出流
+     */
+    public static void export(@NotNull InputStream source, @NotNull InputStream target, @NotNull OutputStream patch) throws IOException {
+        var out = new BufferedOutputStream(patch);
+        out.write(HEADER);
+
+        byte[] src = new byte[BLOCK_SIZE];
+        byte[] dst = new byte[BLOCK_SIZE];
+        byte[] record = new byte[MAX_RECORD_LENGTH];
+        int recordStart = 0;
+        int recordLength = 0;
+        // 记录末尾相同数据的数量
+        int gap = 0;
+        int previous = 0;
+
+        int position = 0;
+        for (int dstLength; (dstLength = target.readNBytes(dst, 0x00000, BLOCK_SIZE)) > 0; ) {
+            int srcLength = source.readNBytes(src, 0x00000, dstLength);
+            for (int i = 0; i < dstLength; i++, position++) {
+                boolean differ = i >= srcLength || src[i] != dst[i];
+                if (recordLength == 0) {
+                    if (!differ) {
+                        previous = dst[i];
+                        continue;
+                    }
+                    // 新的记录
+                    recordStart = position;
+                    if (recordStart == EOF_OFFSET) {
+                        // 向前一个字节，避免与"EOF"相同
+                        recordStart--;
+                        record[recordLength++] = (byte) previous;
+                    }
+                    gap = 0;
+                } else if (differ) {
+                    gap = 0;
+                } else if (++gap > MERGE_GAP) {
+                    // 相同的数据过多，结束这条记录
+                    writeRecord(out, recordStart, record, recordLength - gap + 1);
+                    recordLength = 0;
+                    previous = dst[i];
+                    continue;
+                }
+                record[recordLength++] = dst[i];
+                if (recordLength == MAX_RECORD_LENGTH) {
+                    writeRecord(out, recordStart, record, recordLength - gap);
+                    recordLength = 0;
+                }
+                previous = dst[i];
+            }
+        }
+        if (recordLength - gap > 0) {
+            writeRecord(out, recordStart, record, recordLength - gap);
+        }
+        out.write(FOOTER);
+
+        if (source.transferTo(OutputStream.nullOutputStream()) > 0) {
+            // 目标ROM比源ROM短，截断
+            writeU24(out, position);
+        }
+        out.flush();
+    }
+
+    private static void writeRecord(@NotNull OutputStream out, int offset, byte[] data, int length) throws IOException {
+        if (length <= 0) {
+            return;
+        }
+        if (offset + length - 1 > MAX_OFFSET) {
+            throw new IOException(String.format("ips patch offset out of range: %06X", offset));
+        }
+        writeU24(out, offset);
+        out.write((length >>> 8) & 0xFF);
+        out.write(length & 0xFF);
+        out.write(data, 0x00000, length);
+    }
+
+    private static void writeU24(@NotNull OutputStream out, int value) throws IOException {
+        out.write((value >>> 16) & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+        out.write(value & 0xFF);
+    }
+
+    /**
+     * 将IPS补丁应用到ROM
+     * <p>
+     * *不支持变更ROM大小的补丁
+     *
+     * @param patch  补丁的输入流
+     * @param target 被应用补丁的ROM
+     */
+    public static void apply(@NotNull InputStream patch, @NotNull RomBuffer target) throws IOException {
+        var in = new DataInputStream(new BufferedInputStream(patch));
+        if (!Arrays.equals(in.readNBytes(HEADER.length), HEADER)) {
+            throw new IOException("not an ips patch");
+        }
+
+        byte[] data = new byte[BLOCK_SIZE];
+        while (true) {
+            int offset = readU24(in);
+            if (offset == EOF_OFFSET) {
+                break;
+            }
+            int length = in.readUnsignedShort();
+            boolean rle = length == 0;
+            if (rle) {
+                length = in.readUnsignedShort();
+                Arrays.fill(data, in.readByte());
+            }
+            if (offset + length > target.getRomLength()) {
+                throw new IOException(String.format("ips patch out of rom range: %06X-%06X", offset, offset + length - 1));
+            }
+            while (length > 0) {
+                int count = Math.min(length, BLOCK_SIZE);
+                if (!rle) {
+                    in.readFully(data, 0x00000, count);
+                }
+                target.putRaw(offset, data, 0x00000, count);
+                offset += count;
+                length -= count;
+            }
+        }
+
+        byte[] truncate = in.readNBytes(3);
+        if (truncate.length == 3) {
+            int length = ((truncate[0] & 0xFF) << 16) | ((truncate[1] & 0xFF) << 8) | (truncate[2] & 0xFF);
+            if (length != target.getRomLength()) {
+                throw new IOException(String.format("ips patch truncation is not supported: %06X", length));
+            }
+        }
+    }
+
+    private static int readU24(@NotNull DataInputStream in) throws IOException {
+        return (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+    }
+}
@@ -0,0 +1,137 @@
+package me.afoolslove.metalmaxre.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * 范围集合，相交或相邻的范围会被合并
+ * <p>
+ * *范围为 [start, end)，不包含结束位置
+ *
+ * @author AFoolLove
+ */
+public class RangeSet {
+    /**
+     * key: 起始位置
+     * value: 结束位置（不包含
+     */
+    private final TreeMap<Integer, Integer> ranges = new TreeMap<>();
+
+    /**
+     * 添加一个范围
+     *
+     * @param start 起始位置
+     * @param end   结束位置（不包含
+     */
+    public synchronized void add(int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        var floor = ranges.floorEntry(start);
+        if (floor != null && floor.getValue() >= start) {
+            if (floor.getValue() >= end) {
+                // 已经包含了这个范围
+                return;
+            }
+            // 与前一个范围合并
+            start = floor.getKey();
+        }
+        // 合并之后所有相交或相邻的范围
+        for (var next = ranges.ceilingEntry(start); next != null && next.getKey() <= end; next = ranges.ceilingEntry(start)) {
+            end = Math.max(end, next.getValue());
+            ranges.remove(next.getKey());
+        }
+        ranges.put(start, end);
+    }
+
+    /**
+     * 添加另一个集合中的所有范围
+     */
+    public void addAll(@NotNull RangeSet rangeSet) {
+        for (Map.Entry<Integer, Integer> entry : rangeSet.toMap().entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * 是否与范围相交
+     *
+     * @param start 起始位置
+     * @param end   结束位置（不包含
+     */
+    public synchronized boolean intersects(int start, int end) {
+        var floor = ranges.lowerEntry(end);
+        return floor != null && floor.getValue() > start;
+    }
+
+    /**
+     * 获取与另一个集合相交的范围
+     *
+     * @param rangeSet 另一个集合
+     * @return 相交的范围
+     */
+    @NotNull
+    public RangeSet intersection(@NotNull RangeSet rangeSet) {
+        var result = new RangeSet();
+        var others = rangeSet.toMap();
+        for (Map.Entry<Integer, Integer> entry : toMap().entrySet()) {
+            int start = entry.getKey();
+            int end = entry.getValue();
+            var floor = others.lowerKey(start + 1);
+            for (var other : others.subMap(floor == null ? start : floor, true, end, false).entrySet()) {
+                result.add(Math.max(start, other.getKey()), Math.min(end, other.getValue()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return 范围的数量
+     */
+    public synchronized int size() {
+        return ranges.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return ranges.isEmpty();
+    }
+
+    /**
+     * @return 所有范围包含的总长度
+     */
+    public synchronized int length() {
+        int length = 0;
+        for (Map.Entry<Integer, Integer> entry : ranges.entrySet()) {
+            length += entry.getValue() - entry.getKey();
+        }
+        return length;
+    }
+
+    public synchronized void clear() {
+        ranges.clear();
+    }
+
+    /**
+     * 获取所有范围的副本
+     *
+     * @return key: 起始位置，value: 结束位置（不包含
+     */
+    public synchronized NavigableMap<Integer, Integer> toMap() {
+        return new TreeMap<>(ranges);
+    }
+
+    @Override
+    public synchronized String toString() {
+        var builder = new StringBuilder("[");
+        for (Map.Entry<Integer, Integer> entry : ranges.entrySet()) {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(String.format("%05X-%05X", entry.getKey(), entry.getValue() - 1));
+        }
+        return builder.append(']').toString();
+    }
+}
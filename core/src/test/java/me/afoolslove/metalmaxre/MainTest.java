@@ -231,7 +231,7 @@ public class MainTest {
         // 地图出入口和边界编辑器
         // 拉多的所有入口的目的地（酒吧等）X偏移
         IMapEntranceEditor iMapEntranceEditor = editorManager.getEditor(IMapEntranceEditor.class);
-        for (Map.Entry<MapPoint, MapPoint> entry : iMapEntranceEditor.getMapEntrance(0x01).getEntrances().entrySet()) {
+        for (Map.Entry<MapPoint, MapPoint> entry : iMapEntranceEditor.getMapEntrance(0x01).getEntrances()) {
             entry.getValue().offsetX(1);
         }
     }
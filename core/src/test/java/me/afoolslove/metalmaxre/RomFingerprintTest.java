@@ -0,0 +1,91 @@
+package me.afoolslove.metalmaxre;
+
+import me.afoolslove.metalmaxre.utils.ResourceManager;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 通过指纹识别ROM的版本
+ */
+public class RomFingerprintTest {
+
+    private static byte[] zip(byte[] rom) throws IOException {
+        var outputStream = new ByteArrayOutputStream();
+        try (var zipOutputStream = new ZipOutputStream(outputStream)) {
+            zipOutputStream.putNextEntry(new ZipEntry("rom.nes"));
+            zipOutputStream.write(rom);
+            zipOutputStream.closeEntry();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] emptyZip() throws IOException {
+        var outputStream = new ByteArrayOutputStream();
+        new ZipOutputStream(outputStream).close();
+        return outputStream.toByteArray();
+    }
+
+    @Test
+    void match() throws Exception {
+        for (Map.Entry<String, RomVersion> entry : RomVersion.getVersions().entrySet()) {
+            var path = Files.createTempFile("metalmaxre", ".nes");
+            try {
+                var bytes = ResourceManager.getAsBytes(entry.getValue().getPath());
+                Files.write(path, bytes);
+                var match = RomFingerprint.match(path);
+                assertTrue(match.isExact(), entry.getKey());
+                assertEquals(entry.getValue(), match.getVersion());
+
+                // 修改部分数据后推荐最接近的版本
+                bytes[0x05000] ^= 0x01;
+                bytes[0x30000] ^= 0x01;
+                Files.write(path, bytes);
+                match = RomFingerprint.match(path);
+                assertFalse(match.isExact(), entry.getKey());
+                assertEquals(entry.getValue(), match.getVersion());
+            } finally {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    void zip() throws Exception {
+        var rom = ResourceManager.getAsBytes(RomVersion.getChinese().getPath());
+        var expected = RomFingerprint.of(new ByteArrayInputStream(rom));
+        var path = Files.createTempFile("metalmaxre", ".zip");
+        try {
+            Files.write(path, zip(rom));
+            assertEquals(expected.getCrc32c(), RomFingerprint.of(path).getCrc32c());
+
+            // 分卷的zip，以 PK 07 08 开头
+            var zip = zip(rom);
+            var spanned = new byte[zip.length + 0x04];
+            System.arraycopy(new byte[]{0x50, 0x4B, 0x07, 0x08}, 0x00, spanned, 0x00, 0x04);
+            System.arraycopy(zip, 0x00, spanned, 0x04, zip.length);
+            Files.write(path, spanned);
+            assertEquals(expected.getCrc32c(), RomFingerprint.of(path).getCrc32c());
+            assertEquals(RomVersion.getChinese(), RomFingerprint.match(path).getVersion());
+            try (var buffer = new RomBuffer(RomVersion.getChinese(), path)) {
+                assertArrayEquals(rom, buffer.toByteArray());
+            }
+
+            // 空的zip，以 PK 05 06 开头
+            Files.write(path, emptyZip());
+            var exception = assertThrows(IOException.class, () -> RomFingerprint.of(path));
+            assertTrue(exception.getMessage().contains("zip"), exception.getMessage());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package me.afoolslove.metalmaxre;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ROM数据写入记录的撤销和重做
+ */
+public class RomJournalTest {
+
+    @Test
+    void undoRedo() throws Exception {
+        var buffer = new RomBuffer(RomVersion.getChinese(), (Path) null);
+        var journal = new RomJournal(0x100000);
+        buffer.setJournal(journal);
+        var original = buffer.toByteArray();
+
+        buffer.putPrg(0x00100, (byte) 0x55);
+        buffer.putPrg(0x00101, new byte[]{0x01, 0x02, 0x03, 0x04});
+        var first = buffer.toByteArray();
+        journal.checkpoint();
+        buffer.putPrg(0x03000, (byte) 0x09);
+        buffer.putChr(0x00000, (byte) 0x09);
+        var second = buffer.toByteArray();
+
+        assertTrue(journal.undo());
+        assertArrayEquals(first, buffer.toByteArray());
+        assertTrue(journal.undo());
+        assertArrayEquals(original, buffer.toByteArray());
+        assertFalse(journal.undo());
+
+        assertTrue(journal.redo());
+        assertArrayEquals(first, buffer.toByteArray());
+        assertTrue(journal.redo());
+        assertArrayEquals(second, buffer.toByteArray());
+        assertFalse(journal.redo());
+
+        // 新的写入后不能再重做
+        assertTrue(journal.undo());
+        buffer.putPrg(0x00200, (byte) 0x01);
+        assertFalse(journal.canRedo());
+    }
+
+    @Test
+    void snapshotCheckpoint() throws Exception {
+        var buffer = new RomBuffer(RomVersion.getChinese(), (Path) null);
+        var journal = new RomJournal(0x100000);
+        buffer.setJournal(journal);
+
+        buffer.putPrg(0x00100, (byte) 0x55);
+        var snapshot = buffer.snapshot();
+        buffer.putPrg(0x00100, (byte) 0x66);
+
+        // 快照结束了之前的组
+        assertTrue(journal.undo());
+        assertArrayEquals(snapshot.toByteArray(), buffer.toByteArray());
+    }
+
+    @Test
+    void limit() throws Exception {
+        var buffer = new RomBuffer(RomVersion.getChinese(), (Path) null);
+        var journal = new RomJournal(100);
+        buffer.setJournal(journal);
+
+        // 超出限制后移除最早的组
+        for (int i = 0; i < 10; i++) {
+            buffer.putPrg(i * 0x100, new byte[20]);
+            journal.checkpoint();
+        }
+        assertTrue(journal.size() <= journal.getLimit());
+        int groups = 0;
+        while (journal.undo()) {
+            groups++;
+        }
+        assertEquals(2, groups);
+    }
+
+    @Test
+    void overflow() throws Exception {
+        var buffer = new RomBuffer(RomVersion.getChinese(), (Path) null);
+        var journal = new RomJournal(100);
+        buffer.setJournal(journal);
+
+        buffer.putPrg(0x00010, new byte[10]);
+        journal.checkpoint();
+        // 一组写入超出了限制，清空所有记录，不能撤销到与未记录的写入混合的状态
+        buffer.putPrg(0x00100, new byte[]{0x01, 0x02, 0x03});
+        buffer.putPrg(0x00200, new byte[60]);
+        assertTrue(journal.isOverflowed());
+        assertFalse(journal.canUndo());
+        assertEquals(0, journal.size());
+
+        // 下一个检查点后重新记录
+        journal.checkpoint();
+        assertFalse(journal.isOverflowed());
+        var before = buffer.toByteArray();
+        buffer.putPrg(0x00300, (byte) 0x07);
+        assertTrue(journal.undo());
+        assertArrayEquals(before, buffer.toByteArray());
+    }
+
+    @Test
+    void undoThenWrite() throws Exception {
+        var buffer = new RomBuffer(RomVersion.getChinese(), (Path) null);
+        var journal = new RomJournal(100);
+        buffer.setJournal(journal);
+
+        // 撤销后写入会移除重做的记录，占用的字节数量不会持续增长
+        for (int i = 0; i < 10; i++) {
+            buffer.putPrg(0x00100, new byte[20]);
+            journal.checkpoint();
+            assertTrue(journal.undo());
+            buffer.putPrg(0x00200, new byte[20]);
+            journal.checkpoint();
+            assertEquals(40, journal.size());
+            assertTrue(journal.canUndo());
+            assertFalse(journal.isOverflowed());
+            assertTrue(journal.undo());
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package me.afoolslove.metalmaxre;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在后台线程原子地保存ROM
+ */
+public class RomSaverTest {
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.toList();
+        }
+    }
+
+    @Test
+    void save() throws Exception {
+        var directory = Files.createTempDirectory("metalmaxre");
+        try (var saver = new RomSaver()) {
+            var buffer = new RomBuffer(RomVersion.getChinese(), (Path) null);
+            var path = directory.resolve("rom.nes");
+            // 原文件更长，替换后不会残留多余的数据
+            Files.write(path, new byte[0x100000]);
+
+            buffer.putPrg(0x00100, (byte) 0x55);
+            var expected = buffer.toByteArray();
+            var future = saver.save(buffer, path);
+            // 保存时的数据，之后的写入不会被保存
+            buffer.putPrg(0x00100, (byte) 0x66);
+            assertEquals(path.toAbsolutePath().normalize(), future.get(10, TimeUnit.SECONDS));
+            assertArrayEquals(expected, Files.readAllBytes(path));
+            // 不会残留临时文件
+            assertEquals(List.of(path), list(directory));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void coalesce() throws Exception {
+        var directory = Files.createTempDirectory("metalmaxre");
+        try (var saver = new RomSaver()) {
+            var buffer = new RomBuffer(RomVersion.getChinese(), (Path) null);
+            var path = directory.resolve("rom.nes");
+
+            // 还未开始写入的保存合并为一次，最后保存的数据生效
+            List<CompletableFuture<Path>> futures = new ArrayList<>();
+            for (int i = 0; i < 0x40; i++) {
+                buffer.putPrg(0x00100, (byte) i);
+                futures.add(saver.save(buffer, path));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+            assertArrayEquals(buffer.toByteArray(), Files.readAllBytes(path));
+            assertEquals(List.of(path), list(directory));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void journal() throws Exception {
+        var directory = Files.createTempDirectory("metalmaxre");
+        try (var saver = new RomSaver()) {
+            var buffer = new RomBuffer(RomVersion.getChinese(), (Path) null);
+            var journal = new RomJournal(0x100000);
+            buffer.setJournal(journal);
+            var original = buffer.toByteArray();
+
+            // 保存不会结束当前的撤销组
+            buffer.putPrg(0x00100, (byte) 0x55);
+            saver.save(buffer, directory.resolve("rom.nes")).get(10, TimeUnit.SECONDS);
+            buffer.putPrg(0x00200, (byte) 0x55);
+            assertTrue(journal.undo());
+            assertArrayEquals(original, buffer.toByteArray());
+            assertFalse(journal.canUndo());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void permissions() throws Exception {
+        var directory = Files.createTempDirectory("metalmaxre");
+        try (var saver = new RomSaver()) {
+            var buffer = new RomBuffer(RomVersion.getChinese(), (Path) null);
+            var path = directory.resolve("rom.nes");
+            Files.write(path, new byte[0x10]);
+            var view = Files.getFileAttributeView(path, PosixFileAttributeView.class);
+            if (view == null) {
+                // 不支持POSIX权限的文件系统
+                return;
+            }
+            var permissions = PosixFilePermissions.fromString("rw-r-----");
+            view.setPermissions(permissions);
+
+            // 替换后保持原文件的权限
+            saver.save(buffer, path).get(10, TimeUnit.SECONDS);
+            assertEquals(permissions, Files.getPosixFilePermissions(path));
+            assertArrayEquals(buffer.toByteArray(), Files.readAllBytes(path));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void failure() throws Exception {
+        var directory = Files.createTempDirectory("metalmaxre");
+        try (var saver = new RomSaver()) {
+            var buffer = new RomBuffer(RomVersion.getChinese(), (Path) null);
+            var file = directory.resolve("rom.nes");
+            Files.write(file, new byte[0x10]);
+
+            // 保存失败时通过future通知，不会影响已有的文件
+            var exception = assertThrows(ExecutionException.class, () -> saver.save(buffer, file.resolve("rom.nes")).get(10, TimeUnit.SECONDS));
+            assertTrue(exception.getCause() instanceof IOException, String.valueOf(exception.getCause()));
+            assertArrayEquals(new byte[0x10], Files.readAllBytes(file));
+            assertEquals(List.of(file), list(directory));
+
+            // 之后的保存不受影响
+            saver.save(buffer, file).get(10, TimeUnit.SECONDS);
+            assertArrayEquals(buffer.toByteArray(), Files.readAllBytes(file));
+        } finally {
+            delete(directory);
+        }
+    }
+}
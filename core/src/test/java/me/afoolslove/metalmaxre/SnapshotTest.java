@@ -0,0 +1,95 @@
+package me.afoolslove.metalmaxre;
+
+import me.afoolslove.metalmaxre.utils.ResourceManager;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ROM的快照和恢复
+ */
+public class SnapshotTest {
+
+    @Test
+    void snapshotIsolated() throws Exception {
+        var buffer = new RomBuffer(RomVersion.getChinese(), (Path) null);
+        var original = buffer.toByteArray();
+        var snapshot = buffer.snapshot();
+
+        buffer.putPrg(0x00100, (byte) 0x55);
+        buffer.putPrg(0x04000, new byte[]{0x01, 0x02, 0x03, 0x04});
+        assertArrayEquals(original, snapshot.toByteArray());
+
+        var modified = buffer.toByteArray();
+        snapshot.putPrg(0x00200, (byte) 0x66);
+        assertArrayEquals(modified, buffer.toByteArray());
+    }
+
+    @Test
+    void restore() throws Exception {
+        var buffer = new RomBuffer(RomVersion.getChinese(), (Path) null);
+        var original = buffer.toByteArray();
+        var snapshot = buffer.snapshot();
+
+        buffer.putPrg(0x00100, (byte) 0x55);
+        buffer.putChr(0x00100, (byte) 0x55);
+        buffer.restore(snapshot);
+        assertArrayEquals(original, buffer.toByteArray());
+
+        // 恢复后与快照互不影响
+        snapshot.putPrg(0x00000, (byte) 0x77);
+        assertArrayEquals(original, buffer.toByteArray());
+        buffer.putPrg(0x00001, (byte) 0x77);
+        assertEquals(original[0x00011], snapshot.getPrg(0x00001));
+    }
+
+    @Test
+    void mappedSave() throws Exception {
+        for (boolean incremental : new boolean[]{false, true}) {
+            var path = Files.createTempFile("metalmaxre", ".nes");
+            try {
+                Files.write(path, ResourceManager.getAsBytes(RomVersion.getChinese().getPath()));
+                var buffer = new RomBuffer(RomVersion.getChinese(), path, RomBuffer.StorageType.MAPPED);
+                var original = buffer.toByteArray();
+
+                // 保存到映射的源文件后，快照和覆盖层依然读取保存前的数据
+                var snapshot = buffer.snapshot();
+                var overlay = buffer.overlay();
+                buffer.putPrg(0x04000, (byte) ~buffer.getPrg(0x04000));
+                buffer.putPrg(0x30000, (byte) ~buffer.getPrg(0x30000));
+                buffer.save(path, incremental);
+                assertArrayEquals(original, snapshot.toByteArray());
+                assertArrayEquals(original, overlay.toByteArray());
+                assertArrayEquals(buffer.toByteArray(), Files.readAllBytes(path));
+
+                // 再次保存
+                buffer.putPrg(0x04001, (byte) ~buffer.getPrg(0x04001));
+                buffer.save(path, incremental);
+                assertArrayEquals(original, snapshot.toByteArray());
+                assertArrayEquals(buffer.toByteArray(), Files.readAllBytes(path));
+                buffer.close();
+            } finally {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    void offHeapClose() throws Exception {
+        var buffer = new RomBuffer(RomVersion.getChinese(), (Path) null, RomBuffer.StorageType.OFF_HEAP);
+        var original = buffer.toByteArray();
+        var snapshot = buffer.snapshot();
+        buffer.putPrg(0x04000, (byte) ~buffer.getPrg(0x04000));
+        assertArrayEquals(original, snapshot.toByteArray());
+
+        // 关闭后共享堆外内存的快照也被释放，不能再读取和创建快照
+        buffer.close();
+        assertEquals(0, snapshot.getPrgRomPages().getPageCount());
+        assertEquals(0, snapshot.getChrRomPages().getPageCount());
+        assertThrows(IllegalStateException.class, buffer::snapshot);
+        assertThrows(IndexOutOfBoundsException.class, () -> snapshot.getPrg(0x04000));
+    }
+}
@@ -0,0 +1,184 @@
+package me.afoolslove.metalmaxre.editors;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按前置关系排序和执行编辑器
+ */
+public class EditorSchedulerTest {
+
+    public interface IA extends IRomEditor {
+    }
+
+    public interface IB extends IRomEditor {
+    }
+
+    public interface IC extends IRomEditor {
+    }
+
+    public interface ID extends IRomEditor {
+    }
+
+    public interface IX extends IRomEditor {
+    }
+
+    public interface IY extends IRomEditor {
+    }
+
+    public interface IZ extends IRomEditor {
+    }
+
+    public interface IP extends IRomEditor {
+    }
+
+    public interface IQ extends IRomEditor {
+    }
+
+    /**
+     * 参数中的编辑器为前置编辑器
+     */
+    public static class Methods {
+        public void a() {
+        }
+
+        public void b(IA a) {
+        }
+
+        public void c(IB b, IA a) {
+        }
+
+        public void d(@Editor.QuoteOnly IC c, IX x) {
+        }
+
+        public void x(IY y) {
+        }
+
+        public void y(IZ z) {
+        }
+
+        public void z(IX x) {
+        }
+
+        public void p(IQ q) {
+        }
+
+        public void q(IP p) {
+        }
+    }
+
+    private static Map<Class<? extends IRomEditor>, EditorInvoker> invokers(Class<?>... types) throws Exception {
+        Map<Class<? extends IRomEditor>, EditorInvoker> invokers = new HashMap<>();
+        for (Class<?> type : types) {
+            String name = type.getSimpleName().substring(1).toLowerCase(Locale.ROOT);
+            Method method = Arrays.stream(Methods.class.getMethods())
+                    .filter(m -> m.getName().equals(name))
+                    .findFirst().orElseThrow();
+            invokers.put(type.asSubclass(IRomEditor.class), EditorInvoker.of(method));
+        }
+        return invokers;
+    }
+
+    @SafeVarargs
+    private static EditorScheduler create(Class<? extends IRomEditor>... registered) throws Exception {
+        return new EditorScheduler(List.of(registered), invokers(registered));
+    }
+
+    /**
+     * 按顺序执行，记录每个编辑器开始时已完成的编辑器
+     */
+    private static Map<Class<? extends IRomEditor>, Set<Class<? extends IRomEditor>>> run(EditorScheduler scheduler, ExecutorService executor) throws Exception {
+        Set<Class<? extends IRomEditor>> finished = Collections.synchronizedSet(new HashSet<>());
+        Map<Class<? extends IRomEditor>, Set<Class<? extends IRomEditor>>> started = Collections.synchronizedMap(new HashMap<>());
+        scheduler.run(type -> {
+            synchronized (finished) {
+                started.put(type, new HashSet<>(finished));
+            }
+            finished.add(type);
+        }, executor).get(10, TimeUnit.SECONDS);
+        return started;
+    }
+
+    @Test
+    void order() throws Exception {
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            // 前置编辑器后注册
+            var scheduler = create(IC.class, IB.class, IA.class);
+            assertEquals(List.of(IA.class, IB.class, IC.class), scheduler.getOrder());
+            assertTrue(scheduler.isOrdered(IA.class, IC.class));
+            assertTrue(scheduler.isOrdered(IC.class, IB.class));
+
+            var started = run(scheduler, executor);
+            assertEquals(Set.of(), started.get(IA.class));
+            assertEquals(Set.of(IA.class), started.get(IB.class));
+            assertEquals(Set.of(IA.class, IB.class), started.get(IC.class));
+
+            // 只引用的编辑器和未注册的编辑器不是前置编辑器
+            scheduler = create(ID.class, IC.class, IB.class, IA.class);
+            assertFalse(scheduler.isOrdered(ID.class, IC.class));
+            assertFalse(scheduler.isOrdered(ID.class, IA.class));
+            assertEquals(List.of(ID.class, IA.class, IB.class, IC.class), scheduler.getOrder());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void cycle() throws Exception {
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            // 互为前置时忽略后注册的前置编辑器，按注册顺序进行
+            assertEquals(List.of(IP.class, IQ.class), create(IP.class, IQ.class).getOrder());
+            assertEquals(List.of(IQ.class, IP.class), create(IQ.class, IP.class).getOrder());
+
+            // X -> Y -> Z -> X，依次加入后注册的前置编辑器，形成循环的Y的前置Z被忽略
+            for (int round = 0; round < 0x10; round++) {
+                var scheduler = create(IX.class, IY.class, IZ.class);
+                assertEquals(List.of(IY.class, IX.class, IZ.class), scheduler.getOrder());
+                assertTrue(scheduler.isOrdered(IY.class, IZ.class));
+
+                var started = run(scheduler, executor);
+                assertEquals(Set.of(), started.get(IY.class));
+                assertEquals(Set.of(IY.class), started.get(IX.class));
+                assertEquals(Set.of(IY.class, IX.class), started.get(IZ.class));
+            }
+
+            // 注册顺序不同时，忽略的前置不同
+            assertEquals(List.of(IZ.class, IY.class, IX.class), create(IY.class, IZ.class, IX.class).getOrder());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void parallel() throws Exception {
+        var executor = Executors.newFixedThreadPool(2);
+        try {
+            // 没有先后顺序的编辑器同时执行
+            var scheduler = create(IA.class, IX.class, IY.class, IZ.class);
+            assertFalse(scheduler.isOrdered(IA.class, IX.class));
+            var latch = new CountDownLatch(2);
+            scheduler.run(type -> {
+                if (type == IA.class || type == IX.class) {
+                    latch.countDown();
+                    try {
+                        assertTrue(latch.await(10, TimeUnit.SECONDS), type.getSimpleName());
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }, executor).get(20, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
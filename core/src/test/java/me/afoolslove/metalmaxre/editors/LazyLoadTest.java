@@ -0,0 +1,188 @@
+package me.afoolslove.metalmaxre.editors;
+
+import me.afoolslove.metalmaxre.MetalMaxRe;
+import me.afoolslove.metalmaxre.RomBuffer;
+import me.afoolslove.metalmaxre.RomVersion;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 多个线程同时延迟加载编辑器
+ */
+public class LazyLoadTest {
+    /**
+     * 每个编辑器的加载次数
+     */
+    private static final Map<Class<?>, AtomicInteger> LOADS = new ConcurrentHashMap<>();
+    /**
+     * 编辑器B开始加载
+     */
+    private static volatile CountDownLatch bLoading = new CountDownLatch(1);
+
+    private static void loaded(Class<?> type) {
+        LOADS.computeIfAbsent(type, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private static int loads(Class<?> type) {
+        var count = LOADS.get(type);
+        return count == null ? 0 : count.get();
+    }
+
+    public interface IA extends IRomEditor {
+    }
+
+    public interface IB extends IRomEditor {
+    }
+
+    public interface IC extends IRomEditor {
+    }
+
+    public interface ID extends IRomEditor {
+    }
+
+    public static class A extends AbstractEditor implements IA {
+        public A(MetalMaxRe metalMaxRe) {
+            super(metalMaxRe);
+        }
+
+        @Editor.Load
+        public void onLoad() throws InterruptedException {
+            // 等待无关的编辑器B同时加载
+            if (!bLoading.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("B is not loading");
+            }
+            loaded(IA.class);
+        }
+
+        @Editor.Apply
+        public void onApply() {
+        }
+    }
+
+    public static class B extends AbstractEditor implements IB {
+        public B(MetalMaxRe metalMaxRe) {
+            super(metalMaxRe);
+        }
+
+        @Editor.Load
+        public void onLoad() {
+            bLoading.countDown();
+            loaded(IB.class);
+        }
+
+        @Editor.Apply
+        public void onApply() {
+        }
+    }
+
+    /**
+     * 与D互为前置
+     */
+    public static class C extends AbstractEditor implements IC {
+        public C(MetalMaxRe metalMaxRe) {
+            super(metalMaxRe);
+        }
+
+        @Editor.Load
+        public void onLoad(ID d) throws InterruptedException {
+            Thread.sleep(5);
+            loaded(IC.class);
+        }
+
+        @Editor.Apply
+        public void onApply() {
+        }
+    }
+
+    public static class D extends AbstractEditor implements ID {
+        public D(MetalMaxRe metalMaxRe) {
+            super(metalMaxRe);
+        }
+
+        @Editor.Load
+        public void onLoad(IC c) throws InterruptedException {
+            Thread.sleep(5);
+            loaded(ID.class);
+        }
+
+        @Editor.Apply
+        public void onApply() {
+        }
+    }
+
+    private static EditorManagerImpl create() throws Exception {
+        var metalMaxRe = new MetalMaxRe(new RomBuffer(RomVersion.getChinese(), (Path) null));
+        var editorManager = new EditorManagerImpl(metalMaxRe);
+        metalMaxRe.setEditorManager(editorManager);
+        editorManager.setLazyLoad(true);
+        editorManager.register(IA.class, A.class);
+        editorManager.register(IB.class, B.class);
+        editorManager.register(IC.class, C.class);
+        editorManager.register(ID.class, D.class);
+        return editorManager;
+    }
+
+    @Test
+    void unrelated() throws Exception {
+        LOADS.clear();
+        bLoading = new CountDownLatch(1);
+        var editorManager = create();
+        var executor = Executors.newFixedThreadPool(2);
+        try {
+            // A加载时等待B开始加载，两个编辑器需要同时加载
+            var a = executor.submit(() -> editorManager.getEditor(IA.class));
+            var b = executor.submit(() -> {
+                Thread.sleep(50);
+                return editorManager.getEditor(IB.class);
+            });
+            assertNotNull(a.get(20, TimeUnit.SECONDS));
+            assertNotNull(b.get(20, TimeUnit.SECONDS));
+            assertEquals(1, loads(IA.class));
+            assertEquals(1, loads(IB.class));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrent() throws Exception {
+        LOADS.clear();
+        bLoading = new CountDownLatch(1);
+        bLoading.countDown();
+        var editorManager = create();
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 20; round++) {
+                LOADS.clear();
+                editorManager.loadEditors().get();
+
+                // 互为前置的编辑器在不同的线程中同时加载，不会互相等待
+                var start = new CyclicBarrier(8);
+                List<Future<IRomEditor>> futures = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    Class<? extends IRomEditor> type = List.of(IA.class, IB.class, IC.class, ID.class).get(i % 4);
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        return editorManager.getEditor(type);
+                    }));
+                }
+                for (Future<IRomEditor> future : futures) {
+                    assertNotNull(future.get(20, TimeUnit.SECONDS));
+                }
+                for (Class<?> type : List.of(IA.class, IB.class, IC.class, ID.class)) {
+                    assertEquals(1, loads(type));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
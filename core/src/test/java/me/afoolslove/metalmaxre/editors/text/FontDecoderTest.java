@@ -0,0 +1,59 @@
+package me.afoolslove.metalmaxre.editors.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 解码表与逐个查找 {@link WordBank#ALL_FONTS} 的结果相同
+ */
+public class FontDecoderTest {
+
+    /**
+     * 按 {@link WordBank#ALL_FONTS} 的顺序逐个查找，靠前的优先
+     */
+    private static int scan(byte[] bytes, int position) {
+        for (Map.Entry<Character, ?> entry : WordBank.ALL_FONTS) {
+            if (entry.getValue() instanceof byte[] bs) {
+                // 多字节文字后面至少还需要一个字节
+                if (bs.length == 0 || bytes.length - 1 - position < bs.length) {
+                    continue;
+                }
+                if (Arrays.equals(bytes, position, position + bs.length, bs, 0, bs.length)) {
+                    return (bs.length << 16) | entry.getKey();
+                }
+            } else if (Objects.equals(entry.getValue(), bytes[position])) {
+                return entry.getKey();
+            }
+        }
+        return FontDecoder.NONE;
+    }
+
+    @Test
+    void match() {
+        // 所有文字都不超过两个字节
+        for (int first = 0x00; first <= 0xFF; first++) {
+            for (int second = 0x00; second <= 0xFF; second++) {
+                byte[] bytes = {(byte) first, (byte) second, 0x00};
+                assertEquals(scan(bytes, 0), FontDecoder.INSTANCE.match(bytes, 0));
+
+                // 末尾的字节不能匹配多字节文字
+                bytes = new byte[]{(byte) first, (byte) second};
+                assertEquals(scan(bytes, 0), FontDecoder.INSTANCE.match(bytes, 0));
+                assertEquals(scan(bytes, 1), FontDecoder.INSTANCE.match(bytes, 1));
+            }
+        }
+    }
+
+    @Test
+    void opcodeLength() {
+        for (int b = 0x00; b <= 0xFF; b++) {
+            int length = WordBank.OPCODES.getOrDefault((byte) b, FontDecoder.NONE);
+            assertEquals(length, FontDecoder.INSTANCE.getOpcodeLength((byte) b));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package me.afoolslove.metalmaxre.editors.text;
+
+import me.afoolslove.metalmaxre.MetalMaxRe;
+import me.afoolslove.metalmaxre.RomBuffer;
+import me.afoolslove.metalmaxre.RomVersion;
+import me.afoolslove.metalmaxre.editors.EditorManagerImpl;
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 编码表与 {@link WordBank} 中的文字对应的字节相同
+ */
+public class FontEncoderTest {
+
+    @Test
+    void chars() {
+        for (int ch = 0x0000; ch <= 0xFFFF; ch++) {
+            if (ch == '[') {
+                continue;
+            }
+            Object value = WordBank.getValue((char) ch);
+            byte[] expected;
+            if (value == null) {
+                expected = new byte[0];
+            } else if (value instanceof byte[] bytes) {
+                expected = bytes;
+            } else {
+                expected = new byte[]{(Byte) value};
+            }
+            assertEquals(expected.length, FontEncoder.INSTANCE.getLength((char) ch));
+            if (value != null) {
+                assertArrayEquals(expected, WordBank.toBytes(String.valueOf((char) ch)));
+            }
+        }
+    }
+
+    @Test
+    void hex() {
+        assertArrayEquals(new byte[]{0x0A}, WordBank.toBytes("[0A]"));
+        assertArrayEquals(new byte[]{0x0A}, WordBank.toBytes("[A]"));
+        assertArrayEquals(new byte[]{0x0A, 0x1B}, WordBank.toBytes("[0a 1B]"));
+        assertArrayEquals(new byte[]{0x0A, 0x1B}, WordBank.toBytes("[0A1B]"));
+        assertArrayEquals(new byte[]{(byte) 0xF6, (byte) 0x9E, 0x03, 0x63}, WordBank.toBytes("[F6 9E03 63]"));
+        // 没有结束符时写入已读取的字节
+        assertArrayEquals(new byte[]{0x0A, 0x01}, WordBank.toBytes("[0A 1"));
+    }
+
+    @Test
+    void buffers() {
+        var text = "[F7]" + WordBank.ALL_FONTS.get(0).getKey() + "[0A 1B]" + WordBank.ALL_FONTS.get(WordBank.ALL_FONTS.size() - 1).getKey();
+        byte[] expected = WordBank.toBytes(text);
+        assertEquals(expected.length, WordBank.getLength(text));
+        assertEquals(expected.length, WordBank.getLength(new StringBuilder(text)));
+
+        byte[] dest = new byte[expected.length + 2];
+        assertEquals(expected.length, WordBank.toBytes(text, dest, 2));
+        assertArrayEquals(expected, Arrays.copyOfRange(dest, 2, dest.length));
+
+        for (ByteBuffer buffer : List.of(ByteBuffer.allocate(expected.length + 1), ByteBuffer.allocateDirect(expected.length + 1))) {
+            buffer.position(1);
+            assertEquals(expected.length, WordBank.toBytes(text, buffer));
+            assertEquals(expected.length + 1, buffer.position());
+            byte[] written = new byte[expected.length];
+            buffer.get(1, written);
+            assertArrayEquals(expected, written);
+
+            // 剩余空间不足时不会写入任何数据
+            buffer.position(2);
+            assertThrows(BufferOverflowException.class, () -> WordBank.toBytes(text, buffer));
+            assertEquals(2, buffer.position());
+        }
+    }
+
+    @Test
+    void roundTrip() throws Exception {
+        // 解码后再编码，与ROM中的文本相同
+        var metalMaxRe = new MetalMaxRe(new RomBuffer(RomVersion.getChinese(), (Path) null));
+        var editorManager = new EditorManagerImpl(metalMaxRe);
+        metalMaxRe.setEditorManager(editorManager);
+        editorManager.registerDefaultEditors();
+        editorManager.loadEditors().get();
+
+        ITextEditor textEditor = editorManager.getEditor(ITextEditor.class);
+        for (Map.Entry<Integer, List<TextBuilder>> entry : textEditor.getPages().entrySet()) {
+            for (TextBuilder textBuilder : entry.getValue()) {
+                var encoded = new TextBuilder(new Text(textBuilder.toText()), textBuilder.has9F());
+                assertArrayEquals(textBuilder.toByteArray(), encoded.toByteArray(), textBuilder.toText());
+                assertEquals(textBuilder.length(), encoded.length());
+            }
+        }
+    }
+}
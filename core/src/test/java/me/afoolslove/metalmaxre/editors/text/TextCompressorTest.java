@@ -0,0 +1,100 @@
+package me.afoolslove.metalmaxre.editors.text;
+
+import me.afoolslove.metalmaxre.MetalMaxRe;
+import me.afoolslove.metalmaxre.RomBuffer;
+import me.afoolslove.metalmaxre.RomVersion;
+import me.afoolslove.metalmaxre.editors.EditorManagerImpl;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 应用时的文本字典压缩
+ */
+public class TextCompressorTest {
+    private static final Pattern REFERENCE = Pattern.compile("\\[F7([0-9A-F]{2})([0-9A-F]{2})]");
+
+    private static EditorManagerImpl load(RomBuffer buffer) throws Exception {
+        var metalMaxRe = new MetalMaxRe(buffer);
+        var editorManager = new EditorManagerImpl(metalMaxRe);
+        metalMaxRe.setEditorManager(editorManager);
+        editorManager.registerDefaultEditors();
+        editorManager.loadEditors().get();
+        return editorManager;
+    }
+
+    /**
+     * 将引用字典的 [F7 文本段 页] 替换为字典的文本
+     *
+     * @param sizes 压缩前每页的文本数量，之后的文本段为字典
+     */
+    private static String expand(String text, ITextEditor textEditor, Map<Integer, Integer> sizes) {
+        Matcher matcher = REFERENCE.matcher(text);
+        StringBuilder builder = new StringBuilder();
+        while (matcher.find()) {
+            int row = Integer.parseInt(matcher.group(1), 16);
+            int page = Integer.parseInt(matcher.group(2), 16);
+            if (sizes.containsKey(page) && row >= sizes.get(page) && row < textEditor.getPage(page).size()) {
+                matcher.appendReplacement(builder, Matcher.quoteReplacement(textEditor.getPage(page).get(row).toText()));
+            } else {
+                matcher.appendReplacement(builder, Matcher.quoteReplacement(matcher.group()));
+            }
+        }
+        matcher.appendTail(builder);
+        return builder.toString();
+    }
+
+    @Test
+    void compress() throws Exception {
+        var buffer = new RomBuffer(RomVersion.getChinese(), (Path) null);
+        var editorManager = load(buffer);
+        ITextEditor textEditor = editorManager.getEditor(ITextEditor.class);
+
+        Map<Integer, List<String>> original = new HashMap<>();
+        for (Map.Entry<Integer, List<TextBuilder>> entry : textEditor.getPages().entrySet()) {
+            List<String> texts = new ArrayList<>();
+            for (TextBuilder textBuilder : entry.getValue()) {
+                texts.add(textBuilder.toText());
+            }
+            original.put(entry.getKey(), texts);
+        }
+        Map<Integer, Integer> sizes = new HashMap<>();
+        original.forEach((page, texts) -> sizes.put(page, texts.size()));
+
+        var textCompressor = new TextCompressor();
+        textEditor.setTextCompressor(textCompressor);
+        editorManager.applyEditor(ITextEditor.class).get();
+        assertTrue(textCompressor.getSaved().values().stream().mapToInt(Integer::intValue).sum() > 0);
+
+        // 编辑器中的文本不变
+        for (Map.Entry<Integer, List<String>> entry : original.entrySet()) {
+            List<TextBuilder> texts = textEditor.getPage(entry.getKey());
+            assertEquals(entry.getValue().size(), texts.size());
+            for (int row = 0; row < texts.size(); row++) {
+                assertEquals(entry.getValue().get(row), texts.get(row).toText());
+            }
+        }
+
+        // 展开引用后与压缩前的文本相同
+        // 原本就包含的 F7 可能是数据，指向的文本段可能在压缩后成为字典，所以同样展开
+        ITextEditor reloaded = load(new RomBuffer(RomVersion.getChinese(), buffer.toByteArray())).getEditor(ITextEditor.class);
+        for (Map.Entry<Integer, List<String>> entry : original.entrySet()) {
+            for (int row = 0; row < entry.getValue().size(); row++) {
+                assertEquals(expand(entry.getValue().get(row), reloaded, sizes),
+                        expand(reloaded.getPage(entry.getKey()).get(row).toText(), reloaded, sizes));
+            }
+        }
+
+        // 再次应用不会再压缩已经压缩过的文本，页不会增长
+        var slack = textEditor.getPageSlack();
+        var bytes = buffer.toByteArray();
+        editorManager.applyEditor(ITextEditor.class).get();
+        assertEquals(slack, textEditor.getPageSlack());
+        assertArrayEquals(bytes, buffer.toByteArray());
+    }
+}
@@ -0,0 +1,122 @@
+package me.afoolslove.metalmaxre.editors.text;
+
+import me.afoolslove.metalmaxre.MetalMaxRe;
+import me.afoolslove.metalmaxre.RomBuffer;
+import me.afoolslove.metalmaxre.RomVersion;
+import me.afoolslove.metalmaxre.editors.EditorManagerImpl;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 应用时将溢出的文本转移到其它有剩余空间的页
+ */
+public class TextRelocationTest {
+    private static final Pattern REFERENCE = Pattern.compile("\\[F7([0-9A-F]{2})([0-9A-F]{2})]");
+    private static final String LONG_TEXT = "测试".repeat(0x0C);
+
+    private static EditorManagerImpl load(RomBuffer buffer) throws Exception {
+        var metalMaxRe = new MetalMaxRe(buffer);
+        var editorManager = new EditorManagerImpl(metalMaxRe);
+        metalMaxRe.setEditorManager(editorManager);
+        editorManager.registerDefaultEditors();
+        editorManager.loadEditors().get();
+        return editorManager;
+    }
+
+    /**
+     * 缩短第0x0A和0x12页的文本，加长第0x05和0x07页的文本
+     *
+     * @return 修改后的所有文本
+     */
+    private static Map<Integer, List<String>> overflow(ITextEditor textEditor) {
+        List<TextBuilder> page0A = textEditor.getPage(0x0A);
+        for (int row = 0x10; row < 0x20; row++) {
+            page0A.set(row, new TextBuilder(new Text("A"), true));
+        }
+        List<TextBuilder> page12 = textEditor.getPage(0x12);
+        for (int row = 0x00; row < 0x06; row++) {
+            page12.set(row, new TextBuilder(new Text("B"), true));
+        }
+        List<TextBuilder> page05 = textEditor.getPage(0x05);
+        page05.set(0x00, new TextBuilder(new Text(page05.get(0x00).toText() + LONG_TEXT), true));
+        List<TextBuilder> page07 = textEditor.getPage(0x07);
+        page07.set(0x01, new TextBuilder(new Text(page07.get(0x01).toText() + LONG_TEXT + LONG_TEXT), true));
+
+        Map<Integer, List<String>> texts = new HashMap<>();
+        for (Map.Entry<Integer, List<TextBuilder>> entry : textEditor.getPages().entrySet()) {
+            List<String> page = new ArrayList<>();
+            for (TextBuilder textBuilder : entry.getValue()) {
+                page.add(textBuilder.toText());
+            }
+            texts.put(entry.getKey(), page);
+        }
+        return texts;
+    }
+
+    @Test
+    void relocate() throws Exception {
+        var buffer = new RomBuffer(RomVersion.getChinese(), (Path) null);
+        var editorManager = load(buffer);
+        ITextEditor textEditor = editorManager.getEditor(ITextEditor.class);
+        var expected = overflow(textEditor);
+
+        editorManager.applyEditor(ITextEditor.class).get();
+        // 所有页都没有溢出
+        for (Map.Entry<Integer, Integer> entry : textEditor.getPageSlack().entrySet()) {
+            assertTrue(entry.getValue() >= 0, String.format("%02X: %d", entry.getKey(), entry.getValue()));
+        }
+        // 编辑器中的文本不变
+        for (Map.Entry<Integer, List<String>> entry : expected.entrySet()) {
+            List<TextBuilder> texts = textEditor.getPage(entry.getKey());
+            assertEquals(entry.getValue().size(), texts.size());
+            for (int row = 0; row < texts.size(); row++) {
+                assertEquals(entry.getValue().get(row), texts.get(row).toText());
+            }
+        }
+        // 再次应用的结果相同
+        var applied = buffer.toByteArray();
+        editorManager.applyEditor(ITextEditor.class).get();
+        assertArrayEquals(applied, buffer.toByteArray());
+
+        // 重新读取，转移的文本替换为引用，引用的文本与修改后的文本相同
+        ITextEditor reloaded = load(new RomBuffer(RomVersion.getChinese(), applied)).getEditor(ITextEditor.class);
+        int relocated = 0;
+        for (Map.Entry<Integer, List<String>> entry : expected.entrySet()) {
+            for (int row = 0; row < entry.getValue().size(); row++) {
+                String text = reloaded.getPage(entry.getKey()).get(row).toText();
+                if (text.equals(entry.getValue().get(row))) {
+                    continue;
+                }
+                Matcher matcher = REFERENCE.matcher(text);
+                assertTrue(matcher.matches(), String.format("%02X/%02X: %s", entry.getKey(), row, text));
+                int targetRow = Integer.parseInt(matcher.group(1), 16);
+                int targetPage = Integer.parseInt(matcher.group(2), 16);
+                assertEquals(entry.getValue().get(row), reloaded.getPage(targetPage).get(targetRow).toText());
+                relocated++;
+            }
+        }
+        assertTrue(relocated > 0);
+    }
+
+    @Test
+    void disabled() throws Exception {
+        var buffer = new RomBuffer(RomVersion.getChinese(), (Path) null);
+        var editorManager = load(buffer);
+        ITextEditor textEditor = editorManager.getEditor(ITextEditor.class);
+        overflow(textEditor);
+
+        // 不转移时溢出的部分不会写入
+        textEditor.setRelocateOverflow(false);
+        editorManager.applyEditor(ITextEditor.class).get();
+        assertTrue(textEditor.getPageSlack().get(0x05) < 0);
+        assertTrue(textEditor.getPageSlack().get(0x07) < 0);
+        assertTrue(textEditor.getPageSlack().get(0x0A) > 0);
+        assertTrue(textEditor.getPageSlack().get(0x12) > 0);
+    }
+}
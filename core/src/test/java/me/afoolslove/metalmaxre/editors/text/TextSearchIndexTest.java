@@ -0,0 +1,152 @@
+package me.afoolslove.metalmaxre.editors.text;
+
+import me.afoolslove.metalmaxre.MetalMaxRe;
+import me.afoolslove.metalmaxre.RomBuffer;
+import me.afoolslove.metalmaxre.RomVersion;
+import me.afoolslove.metalmaxre.editors.EditorManagerImpl;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 全文索引的查找结果与逐个比较所有文本的结果相同
+ */
+public class TextSearchIndexTest {
+
+    private static ITextEditor load() throws Exception {
+        var metalMaxRe = new MetalMaxRe(new RomBuffer(RomVersion.getChinese(), (Path) null));
+        var editorManager = new EditorManagerImpl(metalMaxRe);
+        metalMaxRe.setEditorManager(editorManager);
+        editorManager.registerDefaultEditors();
+        editorManager.loadEditors().get();
+        return editorManager.getEditor(ITextEditor.class);
+    }
+
+    /**
+     * 逐个比较所有文本
+     */
+    private static List<TextSearchIndex.Hit> scan(ITextEditor textEditor, Predicate<String> predicate) {
+        List<TextSearchIndex.Hit> hits = new ArrayList<>();
+        for (Map.Entry<Integer, List<TextBuilder>> entry : textEditor.getPages().entrySet()) {
+            for (int row = 0; row < entry.getValue().size(); row++) {
+                if (predicate.test(entry.getValue().get(row).toText())) {
+                    hits.add(new TextSearchIndex.Hit(entry.getKey(), row));
+                }
+            }
+        }
+        Collections.sort(hits);
+        return hits;
+    }
+
+    @Test
+    void requiredLiteral() {
+        assertEquals("战车", TextSearchIndex.requiredLiteral(Pattern.compile("战车")));
+        assertEquals("战车", TextSearchIndex.requiredLiteral(Pattern.compile("战车.*修")));
+        assertEquals("战", TextSearchIndex.requiredLiteral(Pattern.compile("战车?")));
+        assertEquals("[E8]", TextSearchIndex.requiredLiteral(Pattern.compile("[E8]", Pattern.LITERAL)));
+        assertNull(TextSearchIndex.requiredLiteral(Pattern.compile("战|车")));
+        assertNull(TextSearchIndex.requiredLiteral(Pattern.compile("战车", Pattern.CASE_INSENSITIVE)));
+
+        // 转义表示的字
+        assertEquals("ABC", TextSearchIndex.requiredLiteral(Pattern.compile("\\x41BC")));
+        assertEquals("战车", TextSearchIndex.requiredLiteral(Pattern.compile("\\u6218\\u8F66")));
+        assertEquals("战车", TextSearchIndex.requiredLiteral(Pattern.compile("\\x{6218}车")));
+        assertEquals("AB", TextSearchIndex.requiredLiteral(Pattern.compile("\\0101B")));
+        assertEquals("战", TextSearchIndex.requiredLiteral(Pattern.compile("战\\u8F66?")));
+
+        // 转义的参数不是必须出现的文字
+        assertEquals("车", TextSearchIndex.requiredLiteral(Pattern.compile("\\p{IsHan}车")));
+        assertEquals("车", TextSearchIndex.requiredLiteral(Pattern.compile("\\pL车")));
+        assertEquals("车", TextSearchIndex.requiredLiteral(Pattern.compile("\\cA车")));
+        assertEquals("车", TextSearchIndex.requiredLiteral(Pattern.compile("(?<a>战)\\k<a>车")));
+        assertEquals("车", TextSearchIndex.requiredLiteral(Pattern.compile("\\N{LATIN SMALL LETTER A}车")));
+        assertEquals("车", TextSearchIndex.requiredLiteral(Pattern.compile("(战)\\1车")));
+    }
+
+    @Test
+    void search() throws Exception {
+        ITextEditor textEditor = load();
+        TextSearchIndex searchIndex = textEditor.getSearchIndex();
+
+        // 从文本中随机截取
+        List<String> texts = new ArrayList<>();
+        for (List<TextBuilder> page : textEditor.getPages().values()) {
+            for (TextBuilder textBuilder : page) {
+                texts.add(textBuilder.toText());
+            }
+        }
+        Random random = new Random(0);
+        Set<String> queries = new LinkedHashSet<>(List.of("战车", "不存在的文字", "[E8]"));
+        while (queries.size() < 200) {
+            String text = texts.get(random.nextInt(texts.size()));
+            if (text.isEmpty()) {
+                continue;
+            }
+            int start = random.nextInt(text.length());
+            queries.add(text.substring(start, Math.min(text.length(), start + 1 + random.nextInt(5))));
+        }
+        for (String query : queries) {
+            assertEquals(scan(textEditor, text -> text.contains(query)), searchIndex.search(query), query);
+        }
+        assertFalse(searchIndex.search("战车").isEmpty());
+    }
+
+    @Test
+    void searchPattern() throws Exception {
+        ITextEditor textEditor = load();
+        TextSearchIndex searchIndex = textEditor.getSearchIndex();
+
+        for (String regex : List.of("战车.*修", "[0-9]+G", "你(好|们)", "^\\[E6\\]", "镇.?子", "\\[F7..0A\\]",
+                "\\u6218\\u8F66", "\\x{6218}车", "\\p{IsHan}车", "战\\u8F66?", "战|车")) {
+            Pattern pattern = Pattern.compile(regex);
+            assertEquals(scan(textEditor, text -> pattern.matcher(text).find()), searchIndex.search(pattern), regex);
+        }
+        assertEquals(searchIndex.search("战车"), searchIndex.search(Pattern.compile("\\u6218\\u8F66")));
+    }
+
+    @Test
+    void searchToken() throws Exception {
+        ITextEditor textEditor = load();
+        TextSearchIndex searchIndex = textEditor.getSearchIndex();
+
+        for (String token : List.of("战车", "[E8]", "[F7]", "G")) {
+            assertEquals(scan(textEditor, text -> TextSearchIndex.tokenize(text).contains(token)), searchIndex.searchToken(token), token);
+        }
+        // [] 控制码不区分大小写和空格
+        assertEquals(searchIndex.searchToken("[E8]"), searchIndex.searchToken("[e8]"));
+
+        for (String prefix : List.of("战", "[F7", "1")) {
+            assertEquals(scan(textEditor, text -> TextSearchIndex.tokenize(text).stream().anyMatch(token -> token.startsWith(prefix))),
+                    searchIndex.searchPrefix(prefix), prefix);
+        }
+        assertFalse(searchIndex.searchPrefix("战").isEmpty());
+    }
+
+    @Test
+    void refresh() throws Exception {
+        ITextEditor textEditor = load();
+        TextSearchIndex searchIndex = textEditor.getSearchIndex();
+        assertTrue(searchIndex.search("独一无二").isEmpty());
+
+        // 修改、替换、增加和移除文本后重新索引
+        textEditor.getText(0x05, 0x03).add(new Text("独一无二的测试"));
+        assertEquals(List.of(new TextSearchIndex.Hit(0x05, 0x03)), searchIndex.search("独一无二"));
+
+        textEditor.getPage(0x07).set(0x02, new TextBuilder(new Text("替换的文本"), true));
+        assertEquals(List.of(new TextSearchIndex.Hit(0x07, 0x02)), searchIndex.searchToken("替换的文本"));
+
+        var page = textEditor.getPage(0x07);
+        page.add(new TextBuilder(new Text("追加的文本"), true));
+        assertEquals(List.of(new TextSearchIndex.Hit(0x07, page.size() - 1)), searchIndex.searchPrefix("追加"));
+
+        textEditor.getPage(0x04).remove(0x00);
+        for (String query : List.of("独一无二", "的文本", "战车")) {
+            assertEquals(scan(textEditor, text -> text.contains(query)), searchIndex.search(query), query);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package me.afoolslove.metalmaxre.event;
+
+import me.afoolslove.metalmaxre.MetalMaxRe;
+import me.afoolslove.metalmaxre.RomBuffer;
+import me.afoolslove.metalmaxre.RomVersion;
+import me.afoolslove.metalmaxre.editors.Editor;
+import me.afoolslove.metalmaxre.editors.EditorManagerImpl;
+import me.afoolslove.metalmaxre.editors.IRomEditor;
+import me.afoolslove.metalmaxre.editors.items.IItemEditor;
+import me.afoolslove.metalmaxre.editors.text.ITextEditor;
+import me.afoolslove.metalmaxre.event.editors.editor.EditorLoadEvent;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 事件的调用表和异步通知
+ */
+public class EventHandlerTest {
+
+    public static class TestEvent extends Event {
+        final int value;
+
+        public TestEvent(MetalMaxRe metalMaxRe, int value) {
+            super(metalMaxRe);
+            this.value = value;
+        }
+    }
+
+    public static class SubEvent extends TestEvent {
+
+        public SubEvent(MetalMaxRe metalMaxRe, int value) {
+            super(metalMaxRe, value);
+        }
+    }
+
+    public static class Listener implements EventListener {
+        private static int staticReceived = 0;
+
+        final List<String> received = Collections.synchronizedList(new ArrayList<>());
+
+        public void onEvent(Event event) {
+            received.add("event");
+        }
+
+        public void onTest(TestEvent event) {
+            received.add("test" + event.value);
+        }
+
+        private void onSub(SubEvent event) {
+            received.add("sub" + event.value);
+        }
+
+        public static void onStatic(SubEvent event) {
+            staticReceived++;
+        }
+
+        public void onItemLoad(@Editor.TargetEditor(IItemEditor.class) EditorLoadEvent.Post event) {
+            received.add("item");
+        }
+    }
+
+    /**
+     * 只记录测试事件的监听器
+     */
+    public static class Recorder implements EventListener {
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        final List<IRomEditor> loaded = Collections.synchronizedList(new ArrayList<>());
+
+        public void onTest(TestEvent event) {
+            received.add(event.value);
+        }
+
+        public void onLoad(EditorLoadEvent.Pre event) {
+            loaded.add(event.getEditor());
+        }
+    }
+
+    /**
+     * 手动执行任务的线程池
+     */
+    private static class ManualExecutor implements Executor {
+        private final Deque<Runnable> tasks = new ArrayDeque<>();
+        private boolean shutdown;
+
+        @Override
+        public synchronized void execute(Runnable command) {
+            if (shutdown) {
+                throw new RejectedExecutionException();
+            }
+            tasks.add(command);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = poll()) != null) {
+                task.run();
+            }
+        }
+
+        private synchronized Runnable poll() {
+            return tasks.poll();
+        }
+    }
+
+    private static MetalMaxRe create() throws Exception {
+        var metalMaxRe = new MetalMaxRe(new RomBuffer(RomVersion.getChinese(), (Path) null));
+        var editorManager = new EditorManagerImpl(metalMaxRe);
+        metalMaxRe.setEditorManager(editorManager);
+        editorManager.registerDefaultEditors();
+        return metalMaxRe;
+    }
+
+    private static void sort(List<String> list) {
+        synchronized (list) {
+            Collections.sort(list);
+        }
+    }
+
+    @Test
+    void dispatch() throws Exception {
+        var metalMaxRe = create();
+        var eventHandler = metalMaxRe.getEventHandler();
+        var listener = new Listener();
+        eventHandler.register(listener);
+        Listener.staticReceived = 0;
+
+        // 父类事件的监听方法同样接受事件
+        eventHandler.callEvent(new SubEvent(metalMaxRe, 1));
+        eventHandler.callEvent(new TestEvent(metalMaxRe, 2));
+        eventHandler.callEvent(new Event(metalMaxRe));
+        sort(listener.received);
+        assertEquals(List.of("event", "event", "event", "sub1", "test1", "test2"), listener.received);
+        assertEquals(1, Listener.staticReceived);
+
+        // 只接受指定编辑器的事件
+        listener.received.clear();
+        IRomEditor itemEditor = metalMaxRe.getEditorManager().getEditor(IItemEditor.class);
+        IRomEditor textEditor = metalMaxRe.getEditorManager().getEditor(ITextEditor.class);
+        eventHandler.callEvent(new EditorLoadEvent.Post(metalMaxRe, itemEditor, false));
+        eventHandler.callEvent(new EditorLoadEvent.Post(metalMaxRe, textEditor, false));
+        sort(listener.received);
+        assertEquals(List.of("event", "event", "item"), listener.received);
+
+        // 注册后重新生成调用表
+        var recorder = new Recorder();
+        eventHandler.register(recorder);
+        eventHandler.callEvent(new SubEvent(metalMaxRe, 3));
+        assertEquals(List.of(3), recorder.received);
+
+        // 注销后不再接受事件
+        listener.received.clear();
+        eventHandler.unregister(listener);
+        eventHandler.callEvent(new SubEvent(metalMaxRe, 4));
+        assertTrue(listener.received.isEmpty());
+        assertEquals(List.of(3, 4), recorder.received);
+        assertEquals(2, Listener.staticReceived);
+    }
+
+    @Test
+    void async() throws Exception {
+        var metalMaxRe = create();
+        var eventHandler = metalMaxRe.getEventHandler();
+        var recorder = new Recorder();
+        eventHandler.register(recorder);
+        eventHandler.setAsyncMode(new EventHandler.AsyncMode(0x10, false, EventHandler.BackPressure.BLOCK));
+
+        // 每个监听器按顺序通知
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 0x400; i++) {
+            eventHandler.callEvent(new TestEvent(metalMaxRe, i));
+            expected.add(i);
+        }
+        assertTrue(eventHandler.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(expected, recorder.received);
+        assertEquals(0L, eventHandler.getDroppedEvents());
+    }
+
+    @Test
+    void backPressure() throws Exception {
+        var metalMaxRe = create();
+        var eventHandler = metalMaxRe.getEventHandler();
+        for (EventHandler.BackPressure backPressure : List.of(EventHandler.BackPressure.DROP_NEWEST, EventHandler.BackPressure.DROP_OLDEST)) {
+            var recorder = new Recorder();
+            eventHandler.register(recorder);
+            var executor = new ManualExecutor();
+            long dropped = eventHandler.getDroppedEvents();
+            eventHandler.setAsyncMode(new EventHandler.AsyncMode(2, false, backPressure, executor));
+            for (int i = 0; i < 5; i++) {
+                eventHandler.callEvent(new TestEvent(metalMaxRe, i));
+            }
+            assertFalse(eventHandler.awaitIdle(0, TimeUnit.SECONDS));
+            executor.runAll();
+            assertTrue(eventHandler.awaitIdle(0, TimeUnit.SECONDS));
+            assertEquals(backPressure == EventHandler.BackPressure.DROP_NEWEST ? List.of(0, 1) : List.of(3, 4), recorder.received);
+            assertEquals(3L, eventHandler.getDroppedEvents() - dropped);
+            eventHandler.unregister(recorder);
+        }
+    }
+
+    @Test
+    void coalesce() throws Exception {
+        var metalMaxRe = create();
+        var eventHandler = metalMaxRe.getEventHandler();
+        var recorder = new Recorder();
+        eventHandler.register(recorder);
+        var executor = new ManualExecutor();
+        eventHandler.setAsyncMode(new EventHandler.AsyncMode(0x10, true, EventHandler.BackPressure.BLOCK, executor));
+
+        // 同一个编辑器的同类事件只保留最新的一个
+        IRomEditor itemEditor = metalMaxRe.getEditorManager().getEditor(IItemEditor.class);
+        IRomEditor textEditor = metalMaxRe.getEditorManager().getEditor(ITextEditor.class);
+        eventHandler.callEvent(new EditorLoadEvent.Pre(metalMaxRe, itemEditor, false));
+        eventHandler.callEvent(new EditorLoadEvent.Pre(metalMaxRe, textEditor, false));
+        eventHandler.callEvent(new EditorLoadEvent.Pre(metalMaxRe, itemEditor, true));
+        // 其它事件不合并
+        eventHandler.callEvent(new TestEvent(metalMaxRe, 1));
+        eventHandler.callEvent(new TestEvent(metalMaxRe, 1));
+        executor.runAll();
+        assertEquals(List.of(textEditor, itemEditor), recorder.loaded);
+        assertEquals(List.of(1, 1), recorder.received);
+    }
+
+    @Test
+    void rejected() throws Exception {
+        var metalMaxRe = create();
+        var eventHandler = metalMaxRe.getEventHandler();
+        var recorder = new Recorder();
+        eventHandler.register(recorder);
+        var executor = new ManualExecutor();
+        eventHandler.setAsyncMode(new EventHandler.AsyncMode(0x200, false, EventHandler.BackPressure.BLOCK, executor));
+
+        // 提交时被拒绝
+        executor.shutdown = true;
+        assertThrows(RejectedExecutionException.class, () -> eventHandler.callEvent(new TestEvent(metalMaxRe, 0)));
+        assertEquals(1L, eventHandler.getDroppedEvents());
+        assertTrue(eventHandler.awaitIdle(0, TimeUnit.SECONDS));
+
+        // 一次通知不完，再次提交时被拒绝
+        executor.shutdown = false;
+        for (int i = 0; i < 0x101; i++) {
+            eventHandler.callEvent(new TestEvent(metalMaxRe, i));
+        }
+        executor.shutdown = true;
+        executor.runAll();
+        assertEquals(0x100, recorder.received.size());
+        assertEquals(2L, eventHandler.getDroppedEvents());
+        assertTrue(eventHandler.awaitIdle(0, TimeUnit.SECONDS));
+
+        // 之后的事件重新提交
+        executor.shutdown = false;
+        eventHandler.callEvent(new TestEvent(metalMaxRe, 0x200));
+        executor.runAll();
+        assertEquals(0x200, recorder.received.get(recorder.received.size() - 1).intValue());
+        assertTrue(eventHandler.awaitIdle(0, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,97 @@
+package me.afoolslove.metalmaxre.io;
+
+import me.afoolslove.metalmaxre.RomBuffer;
+import me.afoolslove.metalmaxre.RomVersion;
+import me.afoolslove.metalmaxre.utils.DataAddress;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IPS和BPS补丁的导出和应用
+ */
+public class PatchTest {
+
+    /**
+     * 修改ROM的数据，包括分散的修改、超过一条IPS记录长度的修改和重复的数据
+     */
+    private static void modify(RomBuffer buffer) {
+        var random = new Random(0x4D4D);
+        for (int i = 0; i < 0x200; i++) {
+            byte[] bytes = new byte[1 + random.nextInt(0x20)];
+            random.nextBytes(bytes);
+            buffer.putPrg(random.nextInt(buffer.getHeader().getPrgRomLength() - bytes.length), bytes);
+        }
+        byte[] large = new byte[0x12000];
+        random.nextBytes(large);
+        buffer.putPrg(0x20000, large);
+
+        byte[] repeated = new byte[0x300];
+        Arrays.fill(repeated, (byte) 0xA5);
+        buffer.putPrg(0x08000, repeated);
+
+        buffer.put(DataAddress.fromCHR(0x00000), new byte[]{0x01, 0x02, 0x03, 0x04});
+        buffer.put(DataAddress.fromCHR(0x1FFFC), new byte[]{0x05, 0x06, 0x07, 0x08});
+    }
+
+    @Test
+    void ipsRoundTrip() throws Exception {
+        var modified = new RomBuffer(RomVersion.getChinese(), (Path) null);
+        modify(modified);
+        var patch = new ByteArrayOutputStream();
+        modified.exportIps(patch);
+
+        var patched = new RomBuffer(RomVersion.getChinese(), (Path) null);
+        patched.applyIps(new ByteArrayInputStream(patch.toByteArray()));
+        assertArrayEquals(modified.toByteArray(), patched.toByteArray());
+    }
+
+    @Test
+    void bpsRoundTrip() throws Exception {
+        var modified = new RomBuffer(RomVersion.getChinese(), (Path) null);
+        modify(modified);
+        var patch = new ByteArrayOutputStream();
+        modified.exportBps(patch);
+
+        var patched = new RomBuffer(RomVersion.getChinese(), (Path) null);
+        patched.applyBps(new ByteArrayInputStream(patch.toByteArray()));
+        assertArrayEquals(modified.toByteArray(), patched.toByteArray());
+    }
+
+    @Test
+    void unmodified() throws Exception {
+        var buffer = new RomBuffer(RomVersion.getChinese(), (Path) null);
+        var ips = new ByteArrayOutputStream();
+        buffer.exportIps(ips);
+        // 只有"PATCH"和"EOF"
+        assertEquals(IpsPatch.HEADER.length + IpsPatch.FOOTER.length, ips.size());
+
+        var bps = new ByteArrayOutputStream();
+        buffer.exportBps(bps);
+        var original = buffer.toByteArray();
+        buffer.applyBps(new ByteArrayInputStream(bps.toByteArray()));
+        assertArrayEquals(original, buffer.toByteArray());
+    }
+
+    @Test
+    void bpsSourceMismatch() throws Exception {
+        var modified = new RomBuffer(RomVersion.getChinese(), (Path) null);
+        modify(modified);
+        var patch = new ByteArrayOutputStream();
+        modified.exportBps(patch);
+
+        // 源ROM不同时不能应用，并且不会修改ROM
+        var other = new RomBuffer(RomVersion.getChinese(), (Path) null);
+        other.putPrg(0x00000, (byte) ~other.getPrg(0x00000));
+        var original = other.toByteArray();
+        assertThrows(IOException.class, () -> other.applyBps(new ByteArrayInputStream(patch.toByteArray())));
+        assertArrayEquals(original, other.toByteArray());
+    }
+}